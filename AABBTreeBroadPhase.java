@@ -0,0 +1,143 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broad phase that stores a fat bounding box for each object in a dynamic AABB tree. Fat boxes are grown in the
+ * direction the object is moving, so an object is only re-inserted into the tree once it leaves its fat box. Pairs are
+ * found by descending the tree against itself, and then filtered with each object's exact bounding box.
+ */
+class AABBTreeBroadPhase implements BroadPhase {
+
+    private final static float FAT_MARGIN = 2.0f; // Amount a fat box is grown by in every direction
+    private final static float DISPLACEMENT_MULTIPLIER = 4.0f; // Number of updates of movement to grow a fat box by
+    private final static float SHRINK_MARGIN = 4.0f * FAT_MARGIN; // Fat boxes larger than needed by this much are
+                                                                 // shrunk back down
+
+    private DynamicAABBTree tree = new DynamicAABBTree();
+    private Map<PhysicsObject, Integer> proxies = new HashMap<>();
+    private List<PhysicsObject> objects = new ArrayList<>();
+    private Map<PhysicsObject, AABB> bounds = new HashMap<>(); // Exact bounds of each object as of the last update
+
+    private AABB fatBox = new AABB(); // Scratch boxes
+    private AABB hugeBox = new AABB();
+
+    private List<BroadPair> out; // List being filled by queryPairs()
+
+    /**
+     * Adds an object to the tree
+     * @param object
+     */
+    @Override
+    public void insert(PhysicsObject object)
+    {
+        if(proxies.containsKey(object)) return;
+
+        AABB objectBounds = new AABB();
+        object.findBounds(objectBounds);
+        bounds.put(object, objectBounds);
+        objects.add(object);
+
+        findFatBox(object, objectBounds, fatBox);
+        proxies.put(object, tree.createProxy(fatBox, object));
+    }
+
+    /**
+     * Removes an object from the tree
+     * @param object
+     */
+    @Override
+    public void remove(PhysicsObject object)
+    {
+        Integer proxy = proxies.remove(object);
+        if(proxy == null) return;
+
+        tree.destroyProxy(proxy);
+        bounds.remove(object);
+        objects.remove(object);
+    }
+
+    /**
+     * Removes every object
+     */
+    @Override
+    public void clear()
+    {
+        tree.clear();
+        proxies.clear();
+        bounds.clear();
+        objects.clear();
+    }
+
+    /**
+     * Refreshes the bounds of every object, re-inserting those that have left their fat boxes
+     */
+    @Override
+    public void update()
+    {
+        for(int i=0; i<objects.size(); i++)
+        {
+            PhysicsObject object = objects.get(i);
+            AABB objectBounds = bounds.get(object);
+            object.findBounds(objectBounds);
+
+            int proxy = proxies.get(object);
+            AABB treeBox = tree.getBox(proxy);
+            if(treeBox.contains(objectBounds))
+            {
+                // Still inside its fat box, but re-insert anyway if the fat box has become far larger than needed
+                findFatBox(object, objectBounds, fatBox);
+                hugeBox.set(fatBox).expand(SHRINK_MARGIN);
+                if(hugeBox.contains(treeBox)) continue;
+            }
+            else
+            {
+                findFatBox(object, objectBounds, fatBox);
+            }
+            tree.moveProxy(proxy, fatBox);
+        }
+    }
+
+    /**
+     * Adds every pair whose fat boxes overlap, and whose exact boxes overlap too
+     * @param out list to add each potential collision to
+     */
+    @Override
+    public void queryPairs(List<BroadPair> out)
+    {
+        this.out = out;
+        tree.findOverlappingLeaves(this::addIfColliding);
+        this.out = null;
+    }
+
+    private void addIfColliding(int proxy1, int proxy2)
+    {
+        PhysicsObject o1 = tree.getObject(proxy1);
+        PhysicsObject o2 = tree.getObject(proxy2);
+
+        if(PhysicsWorld.ignoresCollision(o1, o2)) return;
+        if(!bounds.get(o1).overlaps(bounds.get(o2))) return;
+
+        // Keep the older object first so pairs are checked in the same order as the object list
+        out.add(o1.idNumber < o2.idNumber ? new BroadPair(o1, o2) : new BroadPair(o2, o1));
+    }
+
+    /**
+     * Grows an object's bounds by a margin, and then by how far it is expected to move over the next few updates
+     * @param object
+     * @param objectBounds the exact bounds of the object
+     * @param fat box to store the result in
+     */
+    private void findFatBox(PhysicsObject object, AABB objectBounds, AABB fat)
+    {
+        float time = object.worldSettings.getScaledTimeStep() * DISPLACEMENT_MULTIPLIER;
+        fat.set(objectBounds).expand(FAT_MARGIN).extend(object.xvelocity * time, object.yvelocity * time);
+    }
+
+    DynamicAABBTree getTree(){ return tree; }
+}
@@ -0,0 +1,227 @@
+package physicsEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Broad phase that picks between the other broad phases based on how they perform in the current scene. Every so often
+ * (or when the scene changes noticeably) each broad phase is run for a few updates while measuring the time it takes,
+ * how many pairs it finds, and how many of those pairs turn out not to be colliding. The one with the lowest cost is
+ * then used until the next trial.
+ */
+class AdaptiveBroadPhase implements BroadPhase {
+
+    private final static int WARM_UP_UPDATES = 2; // Updates not measured after switching, while a broad phase settles
+    private final static int SAMPLE_UPDATES = 8; // Updates measured for each sample
+    private final static int TRIAL_INTERVAL = 1200; // Updates between trials while the scene is steady
+    private final static int MIN_TRIAL_INTERVAL = 120; // Updates between trials even if the scene keeps changing
+    private final static float SWITCH_MARGIN = 0.9f; // A broad phase must cost less than this portion of the one in use
+                                                    // to replace it, so similar broad phases are not swapped constantly
+    private final static float SCENE_CHANGE_RATIO = 1.5f; // Change in pairs per object or cost that starts a new trial
+
+    private BroadPhase[] strategies;
+    private List<PhysicsObject> objects = new ArrayList<>();
+
+    private int current = 0; // Index of the broad phase in use
+    private int chosen = 0; // Index of the broad phase picked by the last trial
+    private int trialIndex = -1; // Index of the broad phase being measured in a trial, or -1 if not in a trial
+    private float[] trialCosts;
+    private float[] trialPairsPerObject;
+    private int updatesSinceTrial = MIN_TRIAL_INTERVAL; // Allows the first trial to start right away
+
+    // Measurements of the broad phase in use, accumulated over the current sample
+    private long broadPhaseStart;
+    private long lastBroadPhaseNanos;
+    private int warmUpLeft = 0;
+    private int numSamples = 0;
+    private long broadPhaseNanos = 0;
+    private long narrowPhaseNanos = 0;
+    private long numPairs = 0;
+    private long numCollisions = 0;
+
+    // Measurements at the end of the last trial, used to notice when the scene has changed
+    private float chosenCost = 0;
+    private float chosenPairsPerObject = 0;
+
+    AdaptiveBroadPhase(WorldSettings worldSettings)
+    {
+        strategies = new BroadPhase[]{
+                new SpatialHashGrid(worldSettings),
+                new SweepAndPrune(),
+                new AABBTreeBroadPhase(),
+                new LooseQuadtree(worldSettings)
+        };
+        trialCosts = new float[strategies.length];
+        trialPairsPerObject = new float[strategies.length];
+    }
+
+    @Override
+    public void insert(PhysicsObject object)
+    {
+        objects.add(object);
+        strategies[current].insert(object);
+    }
+
+    @Override
+    public void remove(PhysicsObject object)
+    {
+        objects.remove(object);
+        strategies[current].remove(object);
+    }
+
+    @Override
+    public void clear()
+    {
+        objects.clear();
+        strategies[current].clear();
+    }
+
+    @Override
+    public void update()
+    {
+        broadPhaseStart = System.nanoTime();
+        strategies[current].update();
+    }
+
+    @Override
+    public void queryPairs(List<BroadPair> pairs)
+    {
+        strategies[current].queryPairs(pairs);
+        lastBroadPhaseNanos = System.nanoTime() - broadPhaseStart;
+    }
+
+    @Override
+    public void recordNarrowPhase(int pairs, int collisions, long nanos)
+    {
+        if(trialIndex < 0) updatesSinceTrial++;
+
+        if(warmUpLeft > 0)
+        {
+            warmUpLeft--;
+        }
+        else
+        {
+            numSamples++;
+            broadPhaseNanos += lastBroadPhaseNanos;
+            narrowPhaseNanos += nanos;
+            numPairs += pairs;
+            numCollisions += collisions;
+        }
+
+        if(numSamples < SAMPLE_UPDATES) return;
+
+        if(trialIndex >= 0)
+        {
+            // Record this broad phase's cost and move on to the next one, or pick the best if all have been measured
+            trialCosts[trialIndex] = findCost();
+            trialPairsPerObject[trialIndex] = findPairsPerObject();
+            trialIndex++;
+            if(trialIndex < strategies.length)
+            {
+                switchTo(trialIndex);
+            }
+            else
+            {
+                finishTrial();
+            }
+        }
+        else
+        {
+            if(updatesSinceTrial >= TRIAL_INTERVAL || (updatesSinceTrial >= MIN_TRIAL_INTERVAL && hasSceneChanged()))
+            {
+                startTrial();
+            }
+            else
+            {
+                resetSample();
+            }
+        }
+    }
+
+    /**
+     * Finds the average cost of an update over the current sample. This is the time spent in the broad phase, plus the
+     * time the narrow phase spent on pairs that were not colliding.
+     * @return the cost in nanoseconds
+     */
+    private float findCost()
+    {
+        float narrowNanosPerPair = numPairs == 0 ? 0 : (float)narrowPhaseNanos / numPairs;
+        float falsePositives = numPairs - numCollisions;
+        return (broadPhaseNanos + (falsePositives * narrowNanosPerPair)) / numSamples;
+    }
+
+    /**
+     * Checks whether the current sample looks different enough from the last trial to be worth running a new one
+     * @return true if the pairs per object or the cost has changed by a large ratio
+     */
+    private boolean hasSceneChanged()
+    {
+        return hasChangedByRatio(findCost(), chosenCost) ||
+                hasChangedByRatio(findPairsPerObject(), chosenPairsPerObject);
+    }
+
+    private float findPairsPerObject()
+    {
+        return objects.isEmpty() ? 0 : (float)numPairs / numSamples / objects.size();
+    }
+
+    private static boolean hasChangedByRatio(float value, float previous)
+    {
+        if(previous <= 0) return value > 0;
+        return value > previous * SCENE_CHANGE_RATIO || value * SCENE_CHANGE_RATIO < previous;
+    }
+
+    private void startTrial()
+    {
+        trialIndex = 0;
+        switchTo(0);
+    }
+
+    private void finishTrial()
+    {
+        // Stay with the last choice unless another broad phase is clearly cheaper
+        int best = chosen;
+        for(int i=0; i<strategies.length; i++)
+        {
+            if(trialCosts[i] < trialCosts[best] * SWITCH_MARGIN)
+            {
+                best = i;
+            }
+        }
+
+        chosen = best;
+        chosenCost = trialCosts[best];
+        chosenPairsPerObject = trialPairsPerObject[best];
+        trialIndex = -1;
+        updatesSinceTrial = 0;
+        switchTo(best);
+    }
+
+    /**
+     * Moves every object over to the broad phase at the given index
+     * @param index
+     */
+    private void switchTo(int index)
+    {
+        if(index != current)
+        {
+            strategies[current].clear();
+            current = index;
+            for(PhysicsObject object: objects)
+            {
+                strategies[current].insert(object);
+            }
+            warmUpLeft = WARM_UP_UPDATES;
+        }
+        resetSample();
+    }
+
+    private void resetSample()
+    {
+        numSamples = 0;
+        broadPhaseNanos = 0;
+        narrowPhaseNanos = 0;
+        numPairs = 0;
+        numCollisions = 0;
+    }
+}
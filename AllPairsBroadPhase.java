@@ -0,0 +1,52 @@
+package physicsEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Broad phase that checks every object against every other object
+ */
+class AllPairsBroadPhase implements BroadPhase {
+
+    private List<PhysicsObject> objects = new ArrayList<>();
+
+    @Override
+    public void insert(PhysicsObject object)
+    {
+        objects.add(object);
+    }
+
+    @Override
+    public void remove(PhysicsObject object)
+    {
+        objects.remove(object);
+    }
+
+    @Override
+    public void clear()
+    {
+        objects.clear();
+    }
+
+    @Override
+    public void update(){}
+
+    @Override
+    public void queryPairs(List<BroadPair> pairs)
+    {
+        // Check each collision pair using a circle around the entire shape. If the circles collide, save it as a
+        // potential collision to check
+        for(int i=0; i<objects.size(); i++)
+        {
+            PhysicsObject o1 = objects.get(i);
+            // Have each polygon check against each polygon further down the list
+            for(int j=i+1; j<objects.size(); j++)
+            {
+                PhysicsObject o2 = objects.get(j);
+                if(PhysicsWorld.broadCheck(o1, o2)){
+                    pairs.add(new BroadPair(o1, o2));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+
+import java.util.Arrays;
+
+/**
+ * A bounding volume hierarchy over a set of boxes that never move relative to each other, such as the segments of an
+ * edge chain or the parts of a compound body. The tree is built once from the top down and stored in flat arrays, with
+ * each node's first child directly after it. Only needs rebuilding if the boxes change.
+ */
+class BoxTree {
+
+    // Node data, indexed by node. A node's first child is always the next node
+    private float[] minX = new float[0];
+    private float[] minY = new float[0];
+    private float[] maxX = new float[0];
+    private float[] maxY = new float[0];
+    private int[] secondChild = new int[0]; // Index of the second child, or -1 for a leaf
+    private int[] firstItem = new int[0]; // Leaves only, the position in the item order of the first item
+    private int[] itemCount = new int[0]; // Leaves only, the number of items in the leaf
+    private int numNodes = 0;
+    private int maxLeafItems = 1; // Most items stored in a single leaf
+
+    private int[] order = new int[0]; // Item indices, ordered so that each leaf's items are together
+
+    // Box around each item, used while building
+    private float[] itemMinX, itemMinY, itemMaxX, itemMaxY;
+
+    private int[] stack = new int[16]; // Used for traversing the tree without recursion
+    private int[] results = new int[16]; // Items found by the last query
+    private int numResults = 0;
+
+    /**
+     * Builds the tree around a set of boxes, one for each item. The arrays are only read while building
+     * @param boxMinX smallest x coordinate of each item's box
+     * @param boxMinY smallest y coordinate of each item's box
+     * @param boxMaxX largest x coordinate of each item's box
+     * @param boxMaxY largest y coordinate of each item's box
+     * @param numItems number of items
+     * @param maxLeafItems most items to store in a single leaf. Larger leaves make a smaller tree, but check more items
+     *                     that do not overlap the query
+     */
+    void build(float[] boxMinX, float[] boxMinY, float[] boxMaxX, float[] boxMaxY, int numItems, int maxLeafItems)
+    {
+        itemMinX = boxMinX;
+        itemMinY = boxMinY;
+        itemMaxX = boxMaxX;
+        itemMaxY = boxMaxY;
+        this.maxLeafItems = Math.max(1, maxLeafItems);
+        order = new int[numItems];
+        for(int i=0; i<numItems; i++)
+        {
+            order[i] = i;
+        }
+
+        // A binary tree with at least one item per leaf has fewer than twice as many nodes as items
+        int capacity = Math.max(1, 2 * numItems);
+        minX = new float[capacity];
+        minY = new float[capacity];
+        maxX = new float[capacity];
+        maxY = new float[capacity];
+        secondChild = new int[capacity];
+        firstItem = new int[capacity];
+        itemCount = new int[capacity];
+        numNodes = 0;
+        if(numItems > 0)
+        {
+            buildNode(0, numItems);
+        }
+
+        itemMinX = itemMinY = itemMaxX = itemMaxY = null;
+    }
+
+    /**
+     * Builds the node holding a range of the item order, and everything below it
+     * @param start position in the item order of the first item in the node
+     * @param end position in the item order after the last item in the node
+     * @return the index of the node
+     */
+    private int buildNode(int start, int end)
+    {
+        int node = numNodes++;
+
+        float boxMinX = Float.MAX_VALUE, boxMinY = Float.MAX_VALUE;
+        float boxMaxX = -Float.MAX_VALUE, boxMaxY = -Float.MAX_VALUE;
+        for(int i=start; i<end; i++)
+        {
+            int item = order[i];
+            boxMinX = Math.min(boxMinX, itemMinX[item]);
+            boxMinY = Math.min(boxMinY, itemMinY[item]);
+            boxMaxX = Math.max(boxMaxX, itemMaxX[item]);
+            boxMaxY = Math.max(boxMaxY, itemMaxY[item]);
+        }
+        minX[node] = boxMinX;
+        minY[node] = boxMinY;
+        maxX[node] = boxMaxX;
+        maxY[node] = boxMaxY;
+
+        if(end - start <= maxLeafItems)
+        {
+            secondChild[node] = -1;
+            firstItem[node] = start;
+            itemCount[node] = end - start;
+            return node;
+        }
+
+        // Split the items in half by their centers along the longer side of the box
+        int middle = (start + end) >>> 1;
+        partitionAround(start, end, middle, boxMaxX - boxMinX >= boxMaxY - boxMinY);
+        buildNode(start, middle);
+        secondChild[node] = buildNode(middle, end);
+        return node;
+    }
+
+    /**
+     * Reorders a range of the item order so that the item at the middle position is the one that would be there if the
+     * range were sorted by the center of each item's box, with no item before it further along and no item after it
+     * less far along. Only partitions as much as needed, so it takes linear time on average
+     * @param alongX true to compare along the x axis, false to compare along the y axis
+     */
+    private void partitionAround(int start, int end, int middle, boolean alongX)
+    {
+        int low = start;
+        int high = end - 1;
+        while(low < high)
+        {
+            float pivot = center(order[(low + high) >>> 1], alongX);
+            int i = low;
+            int j = high;
+            while(i <= j)
+            {
+                while(center(order[i], alongX) < pivot) i++;
+                while(center(order[j], alongX) > pivot) j--;
+                if(i <= j)
+                {
+                    int temp = order[i];
+                    order[i] = order[j];
+                    order[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+
+            // Carry on in whichever side holds the middle position
+            if(middle <= j)
+            {
+                high = j;
+            }
+            else if(middle >= i)
+            {
+                low = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    private float center(int item, boolean alongX)
+    {
+        return alongX ? itemMinX[item] + itemMaxX[item] : itemMinY[item] + itemMaxY[item];
+    }
+
+    /**
+     * Finds every item whose box overlaps the given box. The items found are read back with getResult()
+     * @param box
+     * @return the number of items found
+     */
+    int query(AABB box)
+    {
+        numResults = 0;
+        if(numNodes == 0) return 0;
+
+        int top = 0;
+        stack[top++] = 0;
+        while(top > 0)
+        {
+            int node = stack[--top];
+            if(minX[node] > box.maxX || box.minX > maxX[node] || minY[node] > box.maxY || box.minY > maxY[node])
+            {
+                continue;
+            }
+
+            if(secondChild[node] < 0)
+            {
+                int end = firstItem[node] + itemCount[node];
+                for(int i=firstItem[node]; i<end; i++)
+                {
+                    if(numResults == results.length)
+                    {
+                        results = Arrays.copyOf(results, results.length * 2);
+                    }
+                    results[numResults++] = order[i];
+                }
+            }
+            else
+            {
+                if(top + 2 > stack.length)
+                {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = secondChild[node];
+                stack[top++] = node + 1;
+            }
+        }
+        return numResults;
+    }
+
+    /**
+     * @param i index of the result, less than the number returned by the last query
+     * @return the index of an item found by the last query
+     */
+    int getResult(int i){ return results[i]; }
+
+    /**
+     * Stores the box around every item in the tree in the given box
+     * @param bounds box to store the result in
+     */
+    void findBounds(AABB bounds)
+    {
+        if(numNodes == 0)
+        {
+            bounds.set(0, 0, 0, 0);
+            return;
+        }
+        bounds.set(minX[0], minY[0], maxX[0], maxY[0]);
+    }
+}
@@ -0,0 +1,28 @@
+package physicsEngine;
+
+/**
+ * Class for holding a pair of objects that passed the broad phase and may be colliding
+ */
+class BroadPair {
+    PhysicsObject object1;
+    PhysicsObject object2;
+
+    BroadPair(PhysicsObject object1, PhysicsObject object2)
+    {
+        this.object1 = object1;
+        this.object2 = object2;
+    }
+
+    /**
+     * Creates a key unique to a pair of objects, regardless of the order they are given in
+     * @param o1
+     * @param o2
+     * @return the key for the pair
+     */
+    static long key(PhysicsObject o1, PhysicsObject o2)
+    {
+        int low = Math.min(o1.idNumber, o2.idNumber);
+        int high = Math.max(o1.idNumber, o2.idNumber);
+        return ((long)low << 32) | (high & 0xFFFFFFFFL);
+    }
+}
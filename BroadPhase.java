@@ -0,0 +1,46 @@
+package physicsEngine;
+
+import java.util.List;
+
+/**
+ * Interface for a method of finding which objects are near enough to each other to possibly be colliding
+ */
+interface BroadPhase {
+
+    /**
+     * Starts tracking an object
+     * @param object
+     */
+    void insert(PhysicsObject object);
+
+    /**
+     * Stops tracking an object
+     * @param object
+     */
+    void remove(PhysicsObject object);
+
+    /**
+     * Stops tracking every object
+     */
+    void clear();
+
+    /**
+     * Refreshes any information kept about the objects after they have moved
+     */
+    void update();
+
+    /**
+     * Adds every pair of objects that may be colliding
+     * NOTE update() should be called first
+     * @param pairs list to add each potential collision to
+     */
+    void queryPairs(List<BroadPair> pairs);
+
+    /**
+     * Records how the pairs from the last query fared in the narrow phase. Used by broad phases that tune themselves
+     * @param numPairs number of pairs checked
+     * @param numCollisions number of pairs that were actually colliding
+     * @param nanos time taken to check every pair
+     */
+    default void recordNarrowPhase(int numPairs, int numCollisions, long nanos){}
+}
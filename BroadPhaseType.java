@@ -0,0 +1,14 @@
+package physicsEngine;
+
+/**
+ * The methods available for finding which objects are near enough to each other to possibly be colliding
+ */
+public enum BroadPhaseType {
+    ALL_PAIRS,          // Checks every object against every other object
+    SPATIAL_GRID,       // Bins objects into a uniform grid and only checks objects sharing a cell
+    PARALLEL_SPATIAL_GRID, // Same as SPATIAL_GRID, but searches for pairs on several threads at once
+    SWEEP_AND_PRUNE,    // Keeps object bounds sorted between updates and tracks when pairs start or stop overlapping
+    AABB_TREE,          // Keeps a tree of boxes around each object, using exact boxes rather than bounding circles
+    QUADTREE,           // Stores objects in a loose quadtree at the depth fitting their size, for mixed object sizes
+    ADAPTIVE            // Measures the single threaded methods above (except ALL_PAIRS) and uses the cheapest
+}
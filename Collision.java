@@ -1,19 +1,25 @@
 package physicsEngine;
 
-import physicsEngine.math.Formulas;
 import physicsEngine.math.Point;
 import physicsEngine.math.Vec2;
 import javafx.scene.paint.Color;
 
 /**
- * Class for resolving the impulse between two physics objects
+ * Class for resolving the impulse between two physics objects. The impulse applied at each contact point is built up
+ * over every iteration of the solver and kept with the contact point, so a collision that carries on into the next update
+ * can start from the impulse that was needed last time (warm starting) instead of from nothing
  */
 class Collision {
 
     private final static float POSITION_CORRECTION_PERCENT = 0.2f; // the percent to use when correcting the position
                                                                    // of overlapped objects
     private final static float MIN_POSITION_CORRECTION = 0.1f; // Minimum position correction to use
+    private final static float RESTITUTION_THRESHOLD = 1.0f; // Slowest closing speed that bounces. Anything slower is
+                                                             // treated as resting contact so stacks do not jitter
+    private final static float MAX_CONDITION_NUMBER = 1000; // Two contact points closer to each other than this allows
+                                                            // are solved one at a time instead of together
     private final static short MAX_CONTACT_POINTS = 2;
+    private final static int FLIPPED_FEATURE = 1 << 31; // Set on feature IDs whose features belong to the other objects
 
     private final static boolean ENABLE_ROTATION = true;
     private final static boolean ENABLE_FRICTION = true;
@@ -27,6 +33,34 @@ class Collision {
     float penetration;
     Point[] contactPoints;
     short numContactPoints;
+    // Another collision between the same two objects, for objects made of several parts (such as the segments of an
+    // edge chain) that can touch the other object in more than one place at once
+    Collision next = null;
+    // Identifies which parts of the two objects formed this collision, so contact points are only matched between
+    // updates to contact points formed by the same parts
+    int partId = 0;
+
+    // Identifies the features (such as a face and a corner) that formed each contact point, used to find the same contact
+    // point in the next update
+    int[] featureIds = new int[MAX_CONTACT_POINTS];
+    // Impulse built up at each contact point along the normal and along the tangent (friction)
+    float[] normalImpulses = new float[MAX_CONTACT_POINTS];
+    float[] tangentImpulses = new float[MAX_CONTACT_POINTS];
+
+    // Values that stay the same for every iteration of the solver, found once per update by prepare()
+    private float[] contactAX = new float[MAX_CONTACT_POINTS]; // Contact points relative to each object's center
+    private float[] contactAY = new float[MAX_CONTACT_POINTS];
+    private float[] contactBX = new float[MAX_CONTACT_POINTS];
+    private float[] contactBY = new float[MAX_CONTACT_POINTS];
+    private float[] normalMasses = new float[MAX_CONTACT_POINTS];
+    private float[] tangentMasses = new float[MAX_CONTACT_POINTS];
+    private float[] velocityBiases = new float[MAX_CONTACT_POINTS]; // Speed to separate at due to restitution
+    private float muStatic;
+    private float muDynamic;
+    // Matrix relating the normal impulses at two contact points to the closing speeds at both, and its inverse
+    private boolean solveAsBlock;
+    private float k11, k12, k22;
+    private float invK11, invK12, invK22;
 
     Collision(PhysicsObject o1, PhysicsObject o2, Vec2 normal, float penetration)
     {
@@ -34,18 +68,31 @@ class Collision {
         this.o2 = o2;
         this.normal = normal;
         this.penetration = penetration;
-        this.contactPoints = new Point[2];
+        this.contactPoints = new Point[MAX_CONTACT_POINTS];
         this.numContactPoints = 0;
     }
 
     void addContactPoint(Point p)
     {
-        if(numContactPoints > MAX_CONTACT_POINTS)
+        addContactPoint(p, 0);
+    }
+
+    /**
+     * Adds a contact point
+     * @param p the point of contact
+     * @param featureId value identifying the features of each object that formed the contact point
+     */
+    void addContactPoint(Point p, int featureId)
+    {
+        if(numContactPoints >= MAX_CONTACT_POINTS)
         {
             System.err.println("TOO MANY CONTACT POINTS.");
             return;
         }
         contactPoints[numContactPoints] = p;
+        featureIds[numContactPoints] = featureId;
+        normalImpulses[numContactPoints] = 0;
+        tangentImpulses[numContactPoints] = 0;
         numContactPoints++;
 
         if(o1.worldSettings.canDebug())
@@ -55,10 +102,61 @@ class Collision {
     }
 
     /**
-     * Calculates the impulse generated from the collision and applies it to both objects involved
-     * @return the impulse vector, which should be applied inverted to object 1 and normally to object 2
+     * Builds a feature ID from the features of a polygon collision
+     * @param referenceFace index of the face on the reference polygon
+     * @param incidentPoint index of the point on the incident polygon
+     * @return the feature ID
      */
-    void applyImpulse() {
+    static int featureId(int referenceFace, int incidentPoint)
+    {
+        return ((referenceFace & 0x7FFF) << 16) | (incidentPoint & 0xFFFF);
+    }
+
+    /**
+     * Carries the impulses built up by the same pair of objects in the last update over to any contact point formed by
+     * the same features, across every part of both collisions
+     * @param previous the collision found between the same objects in the last update
+     */
+    void matchContacts(Collision previous)
+    {
+        for(Collision part = this; part != null; part = part.next)
+        {
+            for(Collision previousPart = previous; previousPart != null; previousPart = previousPart.next)
+            {
+                part.matchPartContacts(previousPart);
+            }
+        }
+    }
+
+    /**
+     * Carries the impulses from a single part of the last update's collision over to this part
+     * @param previous a part of the collision found between the same objects in the last update
+     */
+    private void matchPartContacts(Collision previous)
+    {
+        // If the objects swapped places the normal is reversed, so none of the old impulses apply
+        if(previous == this || previous.o1 != o1 || previous.partId != partId) return;
+
+        for(int i=0; i<numContactPoints; i++)
+        {
+            for(int j=0; j<previous.numContactPoints; j++)
+            {
+                if(featureIds[i] == previous.featureIds[j])
+                {
+                    normalImpulses[i] = previous.normalImpulses[j];
+                    tangentImpulses[i] = previous.tangentImpulses[j];
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the objects apart and finds the values used by every iteration of the solver. Must be called once per update
+     * before warmStart() and applyImpulse()
+     */
+    void prepare()
+    {
         // If both objects have infinite mass, neither will be affected since they are immovable
         if (o1.getInvertedMass() + o2.getInvertedMass() == 0) return; // Two infinite mass objects cannot move
 
@@ -73,93 +171,236 @@ class Collision {
         // Use the average restitution
         float e = o2.getRestitution() + o1.getRestitution() / 2.0f;
         // get the coefficient of friction to use for this collision
-        float muStatic = (o1.getStaticFriction() + o2.getStaticFriction()) / 2.0f;
-        float muDynamic = (o1.getDynamicFriction() + o2.getDynamicFriction()) / 2.0f;
-
-        float crossA;
-        float crossB;
-        Vec2 contactA;
-        Vec2 contactB;
-        for (int i = 0; i < numContactPoints; i++) {
-
-            contactA = new Vec2(contactPoints[i].getX() - o1.getX(), contactPoints[i].getY() - o1.getY());
-            contactB = new Vec2(contactPoints[i].getX() - o2.getX(), contactPoints[i].getY() - o2.getY());
-
-            // Get the vector formed by the two circles' velocities
-            Vec2 pointAAngularVelocity = Formulas.cross(o1.getAngularVelocity(), contactA);
-            Vec2 pointBAngularVelocity = Formulas.cross(o2.getAngularVelocity(), contactB);
-            Vec2 relativeVelocity = new Vec2(o2.getXVelocity() + pointBAngularVelocity.x - o1.getXVelocity() - pointAAngularVelocity.x,
-                    o2.getYVelocity() + pointBAngularVelocity.y - o1.getYVelocity() - pointAAngularVelocity.y);
-            // Get the relative velocity along the normal vector
-            float normalVelocity = Formulas.dotProduct(normal, relativeVelocity);
-
-            // If the relative velocity along the normal is positive, the objects are already moving apart, do nothing
-            if (normalVelocity >= 0) return;
-
-            crossA = Formulas.cross(contactA, normal);
-            crossB = Formulas.cross(contactB, normal);
-
-            crossA *= crossA;
-            crossB *= crossB;
-
-            // Get the impulse scalar from the normal velocity, the restitution, and the inverted masses
-            // j times normal is normal force
-            float j = -(1.0f + e) * normalVelocity;
-            float inverseMassSum = o1.getInvertedMass() + o2.getInvertedMass();
-            if (ENABLE_ROTATION) {
-                inverseMassSum += (crossA * o1.getInvertedInertia()) + (crossB * o2.getInvertedInertia());
-            }
-            j /= inverseMassSum;
-            //j /= numContactPoints;
-
-            // Distribute the impulse across the normal of the collision
-            Vec2 resolutionVec = Formulas.vecMult(normal, j);
+        muStatic = (o1.getStaticFriction() + o2.getStaticFriction()) / 2.0f;
+        muDynamic = (o1.getDynamicFriction() + o2.getDynamicFriction()) / 2.0f;
 
-            Vec2 oppositeImpulse = resolutionVec.copy().mult(-1.0f);
-            if(!ENABLE_FRICTION) {
-                if (ENABLE_ROTATION)
-                {
-                    o1.applyImpulse(oppositeImpulse, contactA);
-                    o2.applyImpulse(resolutionVec, contactB);
-                } else {
-                    o1.applyImpulse(oppositeImpulse, new Vec2(0, 0));
-                    o2.applyImpulse(resolutionVec, new Vec2(0, 0));
-                }
+        float tangentX = normal.y;
+        float tangentY = -normal.x;
+        for (int i = 0; i < numContactPoints; i++)
+        {
+            float ax = 0, ay = 0, bx = 0, by = 0;
+            if (ENABLE_ROTATION)
+            {
+                ax = contactPoints[i].getX() - o1.getX();
+                ay = contactPoints[i].getY() - o1.getY();
+                bx = contactPoints[i].getX() - o2.getX();
+                by = contactPoints[i].getY() - o2.getY();
+            }
+            contactAX[i] = ax;
+            contactAY[i] = ay;
+            contactBX[i] = bx;
+            contactBY[i] = by;
+
+            // The mass felt along the normal and tangent at the contact point, including the resistance to rotation
+            float crossA = (ax * normal.y) - (ay * normal.x);
+            float crossB = (bx * normal.y) - (by * normal.x);
+            float inverseMassSum = o1.getInvertedMass() + o2.getInvertedMass() +
+                    (crossA * crossA * o1.getInvertedInertia()) + (crossB * crossB * o2.getInvertedInertia());
+            normalMasses[i] = 1.0f / inverseMassSum;
+
+            crossA = (ax * tangentY) - (ay * tangentX);
+            crossB = (bx * tangentY) - (by * tangentX);
+            inverseMassSum = o1.getInvertedMass() + o2.getInvertedMass() +
+                    (crossA * crossA * o1.getInvertedInertia()) + (crossB * crossB * o2.getInvertedInertia());
+            tangentMasses[i] = 1.0f / inverseMassSum;
+
+            // Objects closing quickly bounce apart, based on their closing speed before any impulses are applied
+            float normalVelocity = normalVelocity(i);
+            velocityBiases[i] = normalVelocity < -RESTITUTION_THRESHOLD ? -e * normalVelocity : 0;
+        }
 
-                return;
+        // Two contact points are solved together, since solving them one at a time leaves the split of the impulse
+        // between them (and so the rotation of each object) a little off every iteration, which makes stacks sway
+        solveAsBlock = false;
+        if (numContactPoints == 2)
+        {
+            float cross1A = (contactAX[0] * normal.y) - (contactAY[0] * normal.x);
+            float cross1B = (contactBX[0] * normal.y) - (contactBY[0] * normal.x);
+            float cross2A = (contactAX[1] * normal.y) - (contactAY[1] * normal.x);
+            float cross2B = (contactBX[1] * normal.y) - (contactBY[1] * normal.x);
+            k11 = 1.0f / normalMasses[0];
+            k22 = 1.0f / normalMasses[1];
+            k12 = o1.getInvertedMass() + o2.getInvertedMass() +
+                    (cross1A * cross2A * o1.getInvertedInertia()) + (cross1B * cross2B * o2.getInvertedInertia());
+
+            // Points nearly on top of each other cannot be solved together
+            float determinant = (k11 * k22) - (k12 * k12);
+            if (k11 * k11 < MAX_CONDITION_NUMBER * determinant)
+            {
+                solveAsBlock = true;
+                invK11 = k22 / determinant;
+                invK12 = -k12 / determinant;
+                invK22 = k11 / determinant;
             }
+        }
+    }
 
-            Vec2 tangent = Formulas.vecMult(normal, -1.0f * Formulas.dotProduct(relativeVelocity, normal));
-            tangent = Formulas.vecAdd(relativeVelocity, tangent);
-            tangent.normalize();
+    /**
+     * Applies the impulses carried over from the last update, so the solver starts from them instead of from nothing.
+     * Must be called after prepare() has been called on every collision, since the closing speeds used for restitution
+     * should not include these impulses
+     */
+    void warmStart()
+    {
+        if (o1.getInvertedMass() + o2.getInvertedMass() == 0) return;
 
-            // Recalculate j but using the tangent of the collision normal
-            float jF = -1.0f * Formulas.dotProduct(relativeVelocity, tangent);
-            jF /= inverseMassSum;
-            //jF /= numContactPoints;
+        float tangentX = normal.y;
+        float tangentY = -normal.x;
+        for (int i = 0; i < numContactPoints; i++)
+        {
+            applyImpulse(i, (normalImpulses[i] * normal.x) + (tangentImpulses[i] * tangentX),
+                    (normalImpulses[i] * normal.y) + (tangentImpulses[i] * tangentY));
+        }
+    }
 
-            // If the the absolute value of jF is less than the static coefficient times j
-            Vec2 frictionVec;
-            if (Math.abs(jF) < muStatic * j) {
-                frictionVec = tangent.mult(jF);
+    /**
+     * Runs one iteration of the solver, finding the change in impulse at each contact point needed to stop the objects
+     * moving into each other and applying it to both objects. The total impulse at each point is kept from pulling the
+     * objects together, and friction is kept within what the normal impulse allows
+     */
+    void applyImpulse() {
+        // If both objects have infinite mass, neither will be affected since they are immovable
+        if (o1.getInvertedMass() + o2.getInvertedMass() == 0) return; // Two infinite mass objects cannot move
+
+        // Solve friction first, since keeping the objects apart matters more and should have the last say
+        if (ENABLE_FRICTION)
+        {
+            for (int i = 0; i < numContactPoints; i++)
+            {
+                applyFrictionImpulse(i);
             }
-            // Otherwise use j and dynamic friction
-            else {
-                frictionVec = tangent.mult(-1.0f * j * muDynamic);
+        }
+
+        if (solveAsBlock)
+        {
+            applyNormalImpulses();
+        }
+        else
+        {
+            for (int i = 0; i < numContactPoints; i++)
+            {
+                applyNormalImpulse(i);
             }
+        }
+    }
+
+    /**
+     * Finds and applies the change in friction impulse at a contact point
+     */
+    private void applyFrictionImpulse(int i)
+    {
+        float tangentX = normal.y;
+        float tangentY = -normal.x;
+
+        // Find the impulse needed to stop the objects sliding along each other
+        float tangentVelocity = (relativeVelocityX(i) * tangentX) + (relativeVelocityY(i) * tangentY);
+        float jF = -tangentMasses[i] * tangentVelocity;
+
+        // If the total friction is within what static friction can hold, the objects stick. Otherwise they slide and
+        // are slowed by dynamic friction
+        float oldImpulse = tangentImpulses[i];
+        float newImpulse = oldImpulse + jF;
+        float maxFriction = muStatic * normalImpulses[i];
+        if (newImpulse > maxFriction || newImpulse < -maxFriction)
+        {
+            maxFriction = muDynamic * normalImpulses[i];
+            newImpulse = Math.max(-maxFriction, Math.min(newImpulse, maxFriction));
+        }
+        tangentImpulses[i] = newImpulse;
+        jF = newImpulse - oldImpulse;
+        applyImpulse(i, tangentX * jF, tangentY * jF);
+    }
 
-            oppositeImpulse.add(Formulas.vecMult(frictionVec, -1.0f));
-            resolutionVec.add(frictionVec);
+    /**
+     * Finds and applies the change in normal impulse at a single contact point
+     */
+    private void applyNormalImpulse(int i)
+    {
+        // Find the impulse needed to stop the objects closing, but only ever let the total impulse push them apart
+        float j = normalMasses[i] * (-normalVelocity(i) + velocityBiases[i]);
+        float oldImpulse = normalImpulses[i];
+        normalImpulses[i] = Math.max(oldImpulse + j, 0);
+        j = normalImpulses[i] - oldImpulse;
+        applyImpulse(i, normal.x * j, normal.y * j);
+    }
 
-            if (ENABLE_ROTATION) {
-                o1.applyImpulse(oppositeImpulse, contactA);
-                o2.applyImpulse(resolutionVec, contactB);
-            } else {
-                o1.applyImpulse(oppositeImpulse, new Vec2(0, 0));
-                o2.applyImpulse(resolutionVec, new Vec2(0, 0));
+    /**
+     * Finds and applies the change in normal impulse at both contact points at once. The new total impulses must both
+     * push the objects apart, and must leave neither point closing, so each combination of points pushing is tried in
+     * turn until one works
+     */
+    private void applyNormalImpulses()
+    {
+        float oldImpulse1 = normalImpulses[0];
+        float oldImpulse2 = normalImpulses[1];
+
+        // Closing speed at each point if the impulses already applied were taken back out
+        float b1 = normalVelocity(0) - velocityBiases[0] - ((k11 * oldImpulse1) + (k12 * oldImpulse2));
+        float b2 = normalVelocity(1) - velocityBiases[1] - ((k12 * oldImpulse1) + (k22 * oldImpulse2));
+
+        // Both points pushing, and both left with no closing speed
+        float x1 = -((invK11 * b1) + (invK12 * b2));
+        float x2 = -((invK12 * b1) + (invK22 * b2));
+        if (x1 < 0 || x2 < 0)
+        {
+            // Only the first point pushing, and the second separating
+            x1 = -normalMasses[0] * b1;
+            x2 = 0;
+            if (x1 < 0 || (k12 * x1) + b2 < 0)
+            {
+                // Only the second point pushing, and the first separating
+                x1 = 0;
+                x2 = -normalMasses[1] * b2;
+                if (x2 < 0 || (k12 * x2) + b1 < 0)
+                {
+                    // Neither point pushing, and both separating
+                    x2 = 0;
+                    if (b1 < 0 || b2 < 0) return;
+                }
             }
         }
 
+        normalImpulses[0] = x1;
+        normalImpulses[1] = x2;
+        float j1 = x1 - oldImpulse1;
+        float j2 = x2 - oldImpulse2;
+        applyImpulse(0, normal.x * j1, normal.y * j1);
+        applyImpulse(1, normal.x * j2, normal.y * j2);
+    }
+
+    /**
+     * @return the velocity of object 2 relative to object 1 along the normal at a contact point
+     */
+    private float normalVelocity(int i)
+    {
+        return (relativeVelocityX(i) * normal.x) + (relativeVelocityY(i) * normal.y);
+    }
+
+    /**
+     * Applies an impulse at a contact point, inverted to object 1 and normally to object 2
+     */
+    private void applyImpulse(int i, float impulseX, float impulseY)
+    {
+        o1.applyImpulse(-impulseX, -impulseY, contactAX[i], contactAY[i]);
+        o2.applyImpulse(impulseX, impulseY, contactBX[i], contactBY[i]);
+    }
+
+    /**
+     * @return the x component of the velocity of object 2 relative to object 1 at a contact point
+     */
+    private float relativeVelocityX(int i)
+    {
+        return o2.getXVelocity() - (o2.getAngularVelocity() * contactBY[i]) -
+                o1.getXVelocity() + (o1.getAngularVelocity() * contactAY[i]);
+    }
+
+    /**
+     * @return the y component of the velocity of object 2 relative to object 1 at a contact point
+     */
+    private float relativeVelocityY(int i)
+    {
+        return o2.getYVelocity() + (o2.getAngularVelocity() * contactBX[i]) -
+                o1.getYVelocity() - (o1.getAngularVelocity() * contactAX[i]);
     }
 
     /**
@@ -193,5 +434,11 @@ class Collision {
         o1 = o2;
         o2 = temp;
         normal.mult(-1.0f);
+
+        // The features each contact point came from now belong to the other object
+        for(int i=0; i<numContactPoints; i++)
+        {
+            featureIds[i] ^= FLIPPED_FEATURE;
+        }
     }
 }
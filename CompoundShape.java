@@ -0,0 +1,113 @@
+package physicsEngine;
+
+import physicsEngine.math.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for describing the shape of a compound body, made of several circles and convex polygons joined together (such
+ * as an L shaped crate made of two boxes). Each part is given in the body's own coordinates. The same shape can be used
+ * to create any number of bodies through PhysicsWorld.addCompound()
+ */
+public class CompoundShape {
+
+    private List<Part> parts = new ArrayList<>();
+
+    /**
+     * Adds a circular part
+     * @param x x coordinate of the circle's center
+     * @param y y coordinate of the circle's center
+     * @param radius
+     */
+    public void addCircle(float x, float y, float radius)
+    {
+        if(radius <= 0)
+        {
+            System.err.println("Cannot add a circle with a radius of 0 or less to a compound shape.");
+            return;
+        }
+        parts.add(new Part(x, y, radius, null));
+    }
+
+    /**
+     * Adds a rectangular part
+     * @param centerx x coordinate of the rectangle's center
+     * @param centery y coordinate of the rectangle's center
+     * @param width
+     * @param height
+     */
+    public void addBox(float centerx, float centery, float width, float height)
+    {
+        float halfWidth = width / 2.0f;
+        float halfHeight = height / 2.0f;
+        addPolygon(new float[]{
+                centerx - halfWidth, centery - halfHeight,
+                centerx + halfWidth, centery - halfHeight,
+                centerx + halfWidth, centery + halfHeight,
+                centerx - halfWidth, centery + halfHeight
+        });
+    }
+
+    /**
+     * Adds a convex polygon part
+     * @param points the points of the polygon in order, in the body's coordinates
+     */
+    public void addPolygon(Point[] points)
+    {
+        float[] coordinates = new float[points.length * 2];
+        for(int i=0; i<points.length; i++)
+        {
+            coordinates[2*i] = points[i].getX();
+            coordinates[2*i+1] = points[i].getY();
+        }
+        addPolygon(coordinates);
+    }
+
+    /**
+     * Adds a convex polygon part
+     * @param points the x and y coordinate of each point of the polygon in order, as x1, y1, x2, y2... in the body's
+     *               coordinates
+     */
+    public void addPolygon(float[] points)
+    {
+        if(points.length % 2 != 0 || points.length < 6)
+        {
+            System.err.println("ERROR: Points do not form a valid polygon.");
+            return;
+        }
+
+        // Polygons are centered on the average of their points, so that is where the part sits in the body
+        float xsum = 0;
+        float ysum = 0;
+        for(int i=0; i<points.length; i+=2)
+        {
+            xsum += points[i];
+            ysum += points[i+1];
+        }
+        int numPoints = points.length / 2;
+        parts.add(new Part(xsum / numPoints, ysum / numPoints, 0, points.clone()));
+    }
+
+    public int getNumParts(){ return parts.size(); }
+
+    List<Part> getParts(){ return parts; }
+
+    /**
+     * A single part of the shape. Polygons keep their points, since each body needs its own copy of the polygon
+     */
+    static class Part {
+        final float x; // Center of the part in the body's coordinates
+        final float y;
+        final float radius; // Circles only
+        final float[] points; // Polygons only, or null for a circle
+
+        Part(float x, float y, float radius, float[] points)
+        {
+            this.x = x;
+            this.y = y;
+            this.radius = radius;
+            this.points = points;
+        }
+    }
+}
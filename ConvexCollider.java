@@ -0,0 +1,624 @@
+package physicsEngine;
+
+import physicsEngine.math.Point;
+import physicsEngine.math.Vec2;
+
+/**
+ * Class for colliding any two convex shapes using only their support functions. GJK finds the closest points between
+ * the shapes, or finds that they overlap, in which case EPA finds the direction and depth of the overlap. Both work on
+ * the Minkowski difference of the shapes (every point of B minus every point of A), which contains the origin exactly
+ * when the shapes overlap.
+ * Circles and polygons have faster routines for colliding with each other, so this is only used for other shapes.
+ * Keeps its working space between checks, so only one check can be made at a time.
+ */
+class ConvexCollider {
+
+    private final static int MAX_GJK_ITERATIONS = 20;
+    private final static int MAX_EPA_ITERATIONS = 32;
+    private final static int MAX_POLYTOPE_POINTS = MAX_EPA_ITERATIONS + 3;
+    private final static float TOLERANCE = 0.001f; // Progress small enough to consider the search finished
+    private final static float TINY_DISTANCE_SQUARED = 1e-10f; // Distances small enough to treat as touching
+    private final static float FEATURE_ANGLE = 0.1f; // Angle either side of the normal to look for a flat side at
+    private final static float FEATURE_COS = (float)Math.cos(FEATURE_ANGLE);
+    private final static float FEATURE_SIN = (float)Math.sin(FEATURE_ANGLE);
+    private final static float FLAT_SLOPE = 0.01f; // Most a side can slope away from the normal and still be flat.
+                                                   // Curved sides (circles) slope at about a quarter of FEATURE_ANGLE
+
+    // Simplex of up to 3 points of the Minkowski difference, along with the point on each shape that formed each one
+    private float[] simplexX = new float[3];
+    private float[] simplexY = new float[3];
+    private float[] simplexAX = new float[3];
+    private float[] simplexAY = new float[3];
+    private float[] simplexBX = new float[3];
+    private float[] simplexBY = new float[3];
+    private float[] weights = new float[3]; // Amount of each simplex point making up the closest point to the origin
+    private int simplexSize;
+
+    // Polygon grown by EPA, wound counter clockwise
+    private float[] polytopeX = new float[MAX_POLYTOPE_POINTS];
+    private float[] polytopeY = new float[MAX_POLYTOPE_POINTS];
+    private float[] polytopeAX = new float[MAX_POLYTOPE_POINTS];
+    private float[] polytopeAY = new float[MAX_POLYTOPE_POINTS];
+    private float[] polytopeBX = new float[MAX_POLYTOPE_POINTS];
+    private float[] polytopeBY = new float[MAX_POLYTOPE_POINTS];
+    private int polytopeSize;
+
+    // Last support point found, and the point on each shape that formed it
+    // Ends of the flat side of each shape facing the other, as x1, y1, x2, y2
+    private float[] featureA = new float[4];
+    private float[] featureB = new float[4];
+
+    private float[] supportA = new float[2];
+    private float[] supportB = new float[2];
+    private float supportX, supportY;
+
+    // Result of the last check
+    private float normalX, normalY; // Direction from shape A to shape B
+    private float distance; // Distance between the shapes, negative if overlapping
+    private float witnessAX, witnessAY; // Closest (or deepest) points on each shape
+    private float witnessBX, witnessBY;
+
+    /**
+     * Checks for a collision between two convex shapes
+     * @param a the first object, which must be a ConvexShape
+     * @param b the second object, which must be a ConvexShape
+     * @param margin distance apart the shapes can be and still be counted as colliding
+     * @return the collision, or null if the shapes are further apart than the margin
+     */
+    Collision checkCollision(PhysicsObject a, PhysicsObject b, float margin)
+    {
+        return checkCollision(a, (ConvexShape)a, b, (ConvexShape)b, b.getX() - a.getX(), b.getY() - a.getY(), margin);
+    }
+
+    /**
+     * Checks for a collision between two convex shapes that may each be only a part of their object, such as a single
+     * segment of an edge chain
+     * @param a the object the first shape belongs to
+     * @param shapeA the first shape
+     * @param b the object the second shape belongs to
+     * @param shapeB the second shape
+     * @param directionX x component of a rough direction from the first shape to the second, to start searching in
+     * @param directionY y component of a rough direction from the first shape to the second, to start searching in
+     * @param margin distance apart the shapes can be and still be counted as colliding
+     * @return the collision, or null if the shapes are further apart than the margin
+     */
+    Collision checkCollision(PhysicsObject a, ConvexShape shapeA, PhysicsObject b, ConvexShape shapeB,
+                             float directionX, float directionY, float margin)
+    {
+        if(!findSeparation(shapeA, shapeB, directionX, directionY)) return null;
+        if(distance > margin) return null;
+
+        Collision collision = new Collision(a, b, new Vec2(normalX, normalY), -distance);
+        if(!addFlatContactPoints(collision, shapeA, shapeB, margin))
+        {
+            // Use the point halfway between the closest (or deepest) point of each shape
+            collision.addContactPoint(new Point((witnessAX + witnessBX) / 2.0f, (witnessAY + witnessBY) / 2.0f));
+        }
+        return collision;
+    }
+
+    /**
+     * Adds two contact points when both shapes meet along flat sides, such as a capsule lying on a box. A single contact
+     * point would push on only one end of the side, tipping the object over every time it lands
+     * @param collision collision to add the contact points to
+     * @param margin distance apart the sides can be at a contact point and still be counted as colliding
+     * @return false if either side is not flat or the sides do not overlap, in which case no points were added
+     */
+    private boolean addFlatContactPoints(Collision collision, ConvexShape shapeA, ConvexShape shapeB, float margin)
+    {
+        if(!findFlatFeature(shapeA, normalX, normalY, featureA)) return false;
+        if(!findFlatFeature(shapeB, -normalX, -normalY, featureB)) return false;
+
+        // Clip the sides to the range along the tangent where they overlap
+        float tangentX = -normalY;
+        float tangentY = normalX;
+        float a1 = (featureA[0] * tangentX) + (featureA[1] * tangentY);
+        float a2 = (featureA[2] * tangentX) + (featureA[3] * tangentY);
+        float b1 = (featureB[0] * tangentX) + (featureB[1] * tangentY);
+        float b2 = (featureB[2] * tangentX) + (featureB[3] * tangentY);
+        float start = Math.max(Math.min(a1, a2), Math.min(b1, b2));
+        float end = Math.min(Math.max(a1, a2), Math.max(b1, b2));
+        if(end - start < TOLERANCE) return false;
+
+        int numAdded = 0;
+        for(int i=0; i<2; i++)
+        {
+            float t = i == 0 ? start : end;
+            float fractionA = (t - a1) / (a2 - a1);
+            float fractionB = (t - b1) / (b2 - b1);
+            float pointAX = featureA[0] + (fractionA * (featureA[2] - featureA[0]));
+            float pointAY = featureA[1] + (fractionA * (featureA[3] - featureA[1]));
+            float pointBX = featureB[0] + (fractionB * (featureB[2] - featureB[0]));
+            float pointBY = featureB[1] + (fractionB * (featureB[3] - featureB[1]));
+
+            float separation = ((pointBX - pointAX) * normalX) + ((pointBY - pointAY) * normalY);
+            if(separation <= margin)
+            {
+                // Ids follow the order along the tangent, so the same end keeps the same id between updates
+                collision.addContactPoint(new Point((pointAX + pointBX) / 2.0f, (pointAY + pointBY) / 2.0f), i + 1);
+                numAdded++;
+            }
+        }
+        return numAdded > 0;
+    }
+
+    /**
+     * Finds the flat side of a shape facing a direction, by finding the shape's support points a little to either side
+     * of that direction. On a flat side these are the two ends of the side, while on a curved side they are two nearby
+     * points that slope away from the direction
+     * @param feature array to store the two ends of the side in
+     * @return true if the shape has a flat side facing the direction
+     */
+    private boolean findFlatFeature(ConvexShape shape, float directionX, float directionY, float[] feature)
+    {
+        shape.findSupportPoint((directionX * FEATURE_COS) - (directionY * FEATURE_SIN),
+                (directionX * FEATURE_SIN) + (directionY * FEATURE_COS), supportA);
+        feature[0] = supportA[0];
+        feature[1] = supportA[1];
+        shape.findSupportPoint((directionX * FEATURE_COS) + (directionY * FEATURE_SIN),
+                (directionY * FEATURE_COS) - (directionX * FEATURE_SIN), supportA);
+        feature[2] = supportA[0];
+        feature[3] = supportA[1];
+
+        float sideX = feature[2] - feature[0];
+        float sideY = feature[3] - feature[1];
+        float length = (float)Math.sqrt((sideX * sideX) + (sideY * sideY));
+        if(length < TOLERANCE) return false;
+
+        float slope = ((sideX * directionX) + (sideY * directionY)) / length;
+        return Math.abs(slope) <= FLAT_SLOPE;
+    }
+
+    /**
+     * Checks if two convex shapes are touching
+     * @param a the first object, which must be a ConvexShape
+     * @param b the second object, which must be a ConvexShape
+     * @param margin distance apart the shapes can be and still be counted as touching
+     * @return true if the shapes are overlapping or no further apart than the margin
+     */
+    boolean isTouching(PhysicsObject a, PhysicsObject b, float margin)
+    {
+        return findSeparation((ConvexShape)a, (ConvexShape)b, b.getX() - a.getX(), b.getY() - a.getY()) &&
+                distance <= margin;
+    }
+
+    /**
+     * Finds the distance between two shapes, along with the direction and the closest points, using GJK. If the shapes
+     * overlap, EPA is used to find the depth and direction of the overlap instead
+     * @param directionX x component of a rough direction from A to B (such as between their centers) to start searching
+     * @param directionY y component of a rough direction from A to B (such as between their centers) to start searching
+     * @return false if the shapes are too thin to find a direction to separate them in
+     */
+    private boolean findSeparation(ConvexShape shapeA, ConvexShape shapeB, float directionX, float directionY)
+    {
+        if(directionX == 0 && directionY == 0)
+        {
+            directionX = 1;
+        }
+        findSupport(shapeA, shapeB, directionX, directionY);
+        simplexSize = 0;
+        addToSimplex();
+
+        boolean overlapping = false;
+        for(int i=0; i<MAX_GJK_ITERATIONS; i++)
+        {
+            // Reduce the simplex to the points closest to the origin
+            solveSimplex();
+            if(simplexSize == 3)
+            {
+                overlapping = true;
+                break;
+            }
+
+            // Search towards the origin from the simplex
+            if(simplexSize == 1)
+            {
+                directionX = -simplexX[0];
+                directionY = -simplexY[0];
+            }
+            else
+            {
+                // Use the perpendicular of the segment facing the origin, which is more accurate than the closest point
+                float edgeX = simplexX[1] - simplexX[0];
+                float edgeY = simplexY[1] - simplexY[0];
+                float side = cross(edgeX, edgeY, -simplexX[0], -simplexY[0]);
+
+                // The origin is on the segment, so the shapes are just touching
+                if(side * side <= TOLERANCE * TOLERANCE * ((edgeX * edgeX) + (edgeY * edgeY)))
+                {
+                    overlapping = true;
+                    break;
+                }
+
+                if(side > 0)
+                {
+                    directionX = -edgeY;
+                    directionY = edgeX;
+                }
+                else
+                {
+                    directionX = edgeY;
+                    directionY = -edgeX;
+                }
+            }
+
+            // The origin is on the simplex, so the shapes are just touching
+            if((directionX * directionX) + (directionY * directionY) < TINY_DISTANCE_SQUARED)
+            {
+                overlapping = true;
+                break;
+            }
+
+            // Stop once the new point gets no closer to the origin than the simplex already is
+            findSupport(shapeA, shapeB, directionX, directionY);
+            float directionLength = (float)Math.sqrt((directionX * directionX) + (directionY * directionY));
+            float progress = (supportX * directionX) + (supportY * directionY);
+            float best = -Float.MAX_VALUE;
+            for(int j=0; j<simplexSize; j++)
+            {
+                best = Math.max(best, (simplexX[j] * directionX) + (simplexY[j] * directionY));
+            }
+            if(progress - best <= TOLERANCE * directionLength) break;
+
+            addToSimplex();
+        }
+
+        if(overlapping)
+        {
+            return findPenetration(shapeA, shapeB);
+        }
+
+        // The closest point of the difference to the origin is the vector between the closest points of the shapes
+        float closestX = 0, closestY = 0;
+        witnessAX = witnessAY = witnessBX = witnessBY = 0;
+        for(int i=0; i<simplexSize; i++)
+        {
+            closestX += weights[i] * simplexX[i];
+            closestY += weights[i] * simplexY[i];
+            witnessAX += weights[i] * simplexAX[i];
+            witnessAY += weights[i] * simplexAY[i];
+            witnessBX += weights[i] * simplexBX[i];
+            witnessBY += weights[i] * simplexBY[i];
+        }
+        distance = (float)Math.sqrt((closestX * closestX) + (closestY * closestY));
+        if(distance * distance < TINY_DISTANCE_SQUARED)
+        {
+            return findPenetration(shapeA, shapeB);
+        }
+        normalX = closestX / distance;
+        normalY = closestY / distance;
+        return true;
+    }
+
+    /**
+     * Reduces the simplex to the smallest set of its points whose closest point to the origin is the same as the whole
+     * simplex, and finds the weight of each remaining point in that closest point
+     */
+    private void solveSimplex()
+    {
+        if(simplexSize == 1)
+        {
+            weights[0] = 1;
+        }
+        else if(simplexSize == 2)
+        {
+            solveSegment();
+        }
+        else
+        {
+            solveTriangle();
+        }
+    }
+
+    private void solveSegment()
+    {
+        float edgeX = simplexX[1] - simplexX[0];
+        float edgeY = simplexY[1] - simplexY[0];
+
+        // Origin is past the first point
+        float weight2 = -((simplexX[0] * edgeX) + (simplexY[0] * edgeY));
+        if(weight2 <= 0)
+        {
+            weights[0] = 1;
+            simplexSize = 1;
+            return;
+        }
+
+        // Origin is past the second point
+        float weight1 = (simplexX[1] * edgeX) + (simplexY[1] * edgeY);
+        if(weight1 <= 0)
+        {
+            copySimplexPoint(1, 0);
+            weights[0] = 1;
+            simplexSize = 1;
+            return;
+        }
+
+        // Origin is beside the segment
+        float total = weight1 + weight2;
+        weights[0] = weight1 / total;
+        weights[1] = weight2 / total;
+    }
+
+    private void solveTriangle()
+    {
+        float x1 = simplexX[0], y1 = simplexY[0];
+        float x2 = simplexX[1], y2 = simplexY[1];
+        float x3 = simplexX[2], y3 = simplexY[2];
+
+        // Weights of the origin's projection onto each edge
+        float edge12X = x2 - x1, edge12Y = y2 - y1;
+        float d12_1 = (x2 * edge12X) + (y2 * edge12Y);
+        float d12_2 = -((x1 * edge12X) + (y1 * edge12Y));
+
+        float edge13X = x3 - x1, edge13Y = y3 - y1;
+        float d13_1 = (x3 * edge13X) + (y3 * edge13Y);
+        float d13_2 = -((x1 * edge13X) + (y1 * edge13Y));
+
+        float edge23X = x3 - x2, edge23Y = y3 - y2;
+        float d23_1 = (x3 * edge23X) + (y3 * edge23Y);
+        float d23_2 = -((x2 * edge23X) + (y2 * edge23Y));
+
+        // Weights of the origin inside the triangle
+        float area = cross(edge12X, edge12Y, edge13X, edge13Y);
+        float d123_1 = area * cross(x2, y2, x3, y3);
+        float d123_2 = area * cross(x3, y3, x1, y1);
+        float d123_3 = area * cross(x1, y1, x2, y2);
+
+        // Closest to point 1
+        if(d12_2 <= 0 && d13_2 <= 0)
+        {
+            weights[0] = 1;
+            simplexSize = 1;
+            return;
+        }
+
+        // Closest to edge 1-2
+        if(d12_1 > 0 && d12_2 > 0 && d123_3 <= 0)
+        {
+            float total = d12_1 + d12_2;
+            weights[0] = d12_1 / total;
+            weights[1] = d12_2 / total;
+            simplexSize = 2;
+            return;
+        }
+
+        // Closest to edge 1-3
+        if(d13_1 > 0 && d13_2 > 0 && d123_2 <= 0)
+        {
+            float total = d13_1 + d13_2;
+            weights[0] = d13_1 / total;
+            weights[1] = d13_2 / total;
+            copySimplexPoint(2, 1);
+            simplexSize = 2;
+            return;
+        }
+
+        // Closest to point 2
+        if(d12_1 <= 0 && d23_2 <= 0)
+        {
+            copySimplexPoint(1, 0);
+            weights[0] = 1;
+            simplexSize = 1;
+            return;
+        }
+
+        // Closest to point 3
+        if(d13_1 <= 0 && d23_1 <= 0)
+        {
+            copySimplexPoint(2, 0);
+            weights[0] = 1;
+            simplexSize = 1;
+            return;
+        }
+
+        // Closest to edge 2-3
+        if(d23_1 > 0 && d23_2 > 0 && d123_1 <= 0)
+        {
+            float total = d23_1 + d23_2;
+            copySimplexPoint(2, 0);
+            weights[0] = d23_2 / total;
+            weights[1] = d23_1 / total;
+            simplexSize = 2;
+            return;
+        }
+
+        // Origin is inside the triangle
+        float total = d123_1 + d123_2 + d123_3;
+        weights[0] = d123_1 / total;
+        weights[1] = d123_2 / total;
+        weights[2] = d123_3 / total;
+    }
+
+    /**
+     * Finds the depth and direction of the overlap of two shapes using EPA, starting from the simplex left by GJK. The
+     * simplex is grown into a polygon inside the Minkowski difference, always pushing out its edge closest to the origin,
+     * until that edge is on the boundary of the difference
+     * @return false if the shapes are too thin to find a direction to separate them in
+     */
+    private boolean findPenetration(ConvexShape shapeA, ConvexShape shapeB)
+    {
+        if(!fillTriangle(shapeA, shapeB)) return false;
+
+        polytopeSize = 0;
+        for(int i=0; i<3; i++)
+        {
+            polytopeX[i] = simplexX[i];
+            polytopeY[i] = simplexY[i];
+            polytopeAX[i] = simplexAX[i];
+            polytopeAY[i] = simplexAY[i];
+            polytopeBX[i] = simplexBX[i];
+            polytopeBY[i] = simplexBY[i];
+        }
+        polytopeSize = 3;
+
+        // Wind the triangle counter clockwise so each edge's outward normal is on its right
+        if(cross(polytopeX[1] - polytopeX[0], polytopeY[1] - polytopeY[0],
+                polytopeX[2] - polytopeX[0], polytopeY[2] - polytopeY[0]) < 0)
+        {
+            swapPolytopePoints(1, 2);
+        }
+
+        int closestEdge = 0;
+        float edgeNormalX = 0, edgeNormalY = 0, edgeDistance = 0;
+        for(int iteration=0; iteration<MAX_EPA_ITERATIONS; iteration++)
+        {
+            // Find the edge closest to the origin
+            edgeDistance = Float.MAX_VALUE;
+            for(int i=0; i<polytopeSize; i++)
+            {
+                int j = i+1 == polytopeSize ? 0 : i+1;
+                float edgeX = polytopeX[j] - polytopeX[i];
+                float edgeY = polytopeY[j] - polytopeY[i];
+                float length = (float)Math.sqrt((edgeX * edgeX) + (edgeY * edgeY));
+                if(length == 0) continue;
+
+                float nx = edgeY / length;
+                float ny = -edgeX / length;
+                float dist = (nx * polytopeX[i]) + (ny * polytopeY[i]);
+                if(dist < edgeDistance)
+                {
+                    edgeDistance = dist;
+                    edgeNormalX = nx;
+                    edgeNormalY = ny;
+                    closestEdge = i;
+                }
+            }
+
+            // If the difference reaches no further out than the edge, the edge is on its boundary
+            findSupport(shapeA, shapeB, edgeNormalX, edgeNormalY);
+            float supportDistance = (supportX * edgeNormalX) + (supportY * edgeNormalY);
+            if(supportDistance - edgeDistance <= TOLERANCE || polytopeSize == MAX_POLYTOPE_POINTS) break;
+
+            insertIntoPolytope(closestEdge + 1);
+        }
+
+        // Moving B back against the edge's normal by the edge's distance separates the shapes
+        normalX = -edgeNormalX;
+        normalY = -edgeNormalY;
+        distance = -edgeDistance;
+
+        // The deepest points on each shape are found from where the origin projects onto the edge
+        int i = closestEdge;
+        int j = i+1 == polytopeSize ? 0 : i+1;
+        float edgeX = polytopeX[j] - polytopeX[i];
+        float edgeY = polytopeY[j] - polytopeY[i];
+        float lengthSquared = (edgeX * edgeX) + (edgeY * edgeY);
+        float t = lengthSquared == 0 ? 0 : -((polytopeX[i] * edgeX) + (polytopeY[i] * edgeY)) / lengthSquared;
+        t = Math.max(0, Math.min(t, 1));
+        witnessAX = polytopeAX[i] + (t * (polytopeAX[j] - polytopeAX[i]));
+        witnessAY = polytopeAY[i] + (t * (polytopeAY[j] - polytopeAY[i]));
+        witnessBX = polytopeBX[i] + (t * (polytopeBX[j] - polytopeBX[i]));
+        witnessBY = polytopeBY[i] + (t * (polytopeBY[j] - polytopeBY[i]));
+        return true;
+    }
+
+    /**
+     * Grows the simplex into a triangle with some area, which EPA needs to start from when GJK stopped with the origin on
+     * a point or a segment
+     * @return false if no triangle with any area fits in the Minkowski difference
+     */
+    private boolean fillTriangle(ConvexShape shapeA, ConvexShape shapeB)
+    {
+        if(simplexSize == 1)
+        {
+            // Any direction will do, but try the opposite if it finds the same point
+            findSupport(shapeA, shapeB, 1, 0);
+            if(Math.abs(supportX - simplexX[0]) + Math.abs(supportY - simplexY[0]) < TOLERANCE)
+            {
+                findSupport(shapeA, shapeB, -1, 0);
+            }
+            addToSimplex();
+        }
+
+        if(simplexSize == 2)
+        {
+            // Search to either side of the segment, and keep whichever gives the larger triangle
+            float edgeX = simplexX[1] - simplexX[0];
+            float edgeY = simplexY[1] - simplexY[0];
+            findSupport(shapeA, shapeB, -edgeY, edgeX);
+            float area1 = Math.abs(cross(edgeX, edgeY, supportX - simplexX[0], supportY - simplexY[0]));
+            addToSimplex();
+            findSupport(shapeA, shapeB, edgeY, -edgeX);
+            float area2 = Math.abs(cross(edgeX, edgeY, supportX - simplexX[0], supportY - simplexY[0]));
+            if(area2 > area1)
+            {
+                simplexSize = 2;
+                addToSimplex();
+            }
+        }
+
+        float area = cross(simplexX[1] - simplexX[0], simplexY[1] - simplexY[0],
+                simplexX[2] - simplexX[0], simplexY[2] - simplexY[0]);
+        return Math.abs(area) > TINY_DISTANCE_SQUARED;
+    }
+
+    /**
+     * Finds the point of the Minkowski difference furthest in a direction, which is the point of B furthest in that
+     * direction minus the point of A furthest in the opposite direction
+     */
+    private void findSupport(ConvexShape shapeA, ConvexShape shapeB, float directionX, float directionY)
+    {
+        shapeA.findSupportPoint(-directionX, -directionY, supportA);
+        shapeB.findSupportPoint(directionX, directionY, supportB);
+        supportX = supportB[0] - supportA[0];
+        supportY = supportB[1] - supportA[1];
+    }
+
+    private void addToSimplex()
+    {
+        int i = simplexSize++;
+        simplexX[i] = supportX;
+        simplexY[i] = supportY;
+        simplexAX[i] = supportA[0];
+        simplexAY[i] = supportA[1];
+        simplexBX[i] = supportB[0];
+        simplexBY[i] = supportB[1];
+    }
+
+    private void copySimplexPoint(int from, int to)
+    {
+        simplexX[to] = simplexX[from];
+        simplexY[to] = simplexY[from];
+        simplexAX[to] = simplexAX[from];
+        simplexAY[to] = simplexAY[from];
+        simplexBX[to] = simplexBX[from];
+        simplexBY[to] = simplexBY[from];
+    }
+
+    private void insertIntoPolytope(int index)
+    {
+        for(int i=polytopeSize; i>index; i--)
+        {
+            polytopeX[i] = polytopeX[i-1];
+            polytopeY[i] = polytopeY[i-1];
+            polytopeAX[i] = polytopeAX[i-1];
+            polytopeAY[i] = polytopeAY[i-1];
+            polytopeBX[i] = polytopeBX[i-1];
+            polytopeBY[i] = polytopeBY[i-1];
+        }
+        polytopeX[index] = supportX;
+        polytopeY[index] = supportY;
+        polytopeAX[index] = supportA[0];
+        polytopeAY[index] = supportA[1];
+        polytopeBX[index] = supportB[0];
+        polytopeBY[index] = supportB[1];
+        polytopeSize++;
+    }
+
+    private void swapPolytopePoints(int i, int j)
+    {
+        float temp;
+        temp = polytopeX[i]; polytopeX[i] = polytopeX[j]; polytopeX[j] = temp;
+        temp = polytopeY[i]; polytopeY[i] = polytopeY[j]; polytopeY[j] = temp;
+        temp = polytopeAX[i]; polytopeAX[i] = polytopeAX[j]; polytopeAX[j] = temp;
+        temp = polytopeAY[i]; polytopeAY[i] = polytopeAY[j]; polytopeAY[j] = temp;
+        temp = polytopeBX[i]; polytopeBX[i] = polytopeBX[j]; polytopeBX[j] = temp;
+        temp = polytopeBY[i]; polytopeBY[i] = polytopeBY[j]; polytopeBY[j] = temp;
+    }
+
+    private static float cross(float x1, float y1, float x2, float y2)
+    {
+        return (x1 * y2) - (y1 * x2);
+    }
+}
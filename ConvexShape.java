@@ -0,0 +1,17 @@
+package physicsEngine;
+
+/**
+ * Interface for a convex shape described by its support function (the point of the shape furthest in any direction).
+ * Any two convex shapes can be collided through their support functions by a ConvexCollider, so a new shape only needs
+ * to describe itself instead of needing a collision routine for every other shape.
+ */
+interface ConvexShape {
+
+    /**
+     * Finds the point of the shape furthest in a given direction, in world coordinates
+     * @param directionX x component of the direction, which does not need to be of unit length
+     * @param directionY y component of the direction, which does not need to be of unit length
+     * @param point array to store the x and y of the point in
+     */
+    void findSupportPoint(float directionX, float directionY, float[] point);
+}
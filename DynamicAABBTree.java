@@ -0,0 +1,433 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+
+import java.util.Arrays;
+
+/**
+ * A bounding volume hierarchy of axis aligned boxes that can be changed as objects move. Each leaf holds an enlarged
+ * ("fat") box around an object so that the object only has to be re-inserted once it moves out of it. The tree is
+ * kept balanced with rotations as leaves are inserted and removed.
+ */
+class DynamicAABBTree {
+
+    final static int NULL_NODE = -1;
+    private final static int INITIAL_CAPACITY = 16;
+
+    // Node data, indexed by node ID
+    private AABB[] boxes = new AABB[INITIAL_CAPACITY];
+    private PhysicsObject[] objects = new PhysicsObject[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY]; // Also used as the next free node when a node is not in use
+    private int[] children1 = new int[INITIAL_CAPACITY];
+    private int[] children2 = new int[INITIAL_CAPACITY];
+    private int[] heights = new int[INITIAL_CAPACITY]; // Leaves are 0, free nodes are -1
+
+    private int root = NULL_NODE;
+    private int freeList = NULL_NODE;
+    private int nodeCount = 0;
+    private int nodeCapacityUsed = 0;
+
+    private int[] stack = new int[INITIAL_CAPACITY]; // Used for traversing the tree without recursion
+    private AABB combined = new AABB(); // Scratch box
+
+    /**
+     * Adds a leaf to the tree
+     * @param box the box to store for the leaf (copied)
+     * @param object the object the leaf belongs to
+     * @return the ID of the new leaf
+     */
+    int createProxy(AABB box, PhysicsObject object)
+    {
+        int node = allocateNode();
+        boxes[node].set(box);
+        objects[node] = object;
+        heights[node] = 0;
+        insertLeaf(node);
+        return node;
+    }
+
+    /**
+     * Removes a leaf from the tree
+     * @param proxy ID of the leaf
+     */
+    void destroyProxy(int proxy)
+    {
+        removeLeaf(proxy);
+        freeNode(proxy);
+    }
+
+    /**
+     * Moves a leaf to a new box by removing and re-inserting it
+     * @param proxy ID of the leaf
+     * @param box the new box for the leaf (copied)
+     */
+    void moveProxy(int proxy, AABB box)
+    {
+        removeLeaf(proxy);
+        boxes[proxy].set(box);
+        insertLeaf(proxy);
+    }
+
+    /**
+     * Removes every leaf
+     */
+    void clear()
+    {
+        root = NULL_NODE;
+        freeList = NULL_NODE;
+        nodeCount = 0;
+        nodeCapacityUsed = 0;
+        Arrays.fill(objects, null);
+    }
+
+    AABB getBox(int proxy){ return boxes[proxy]; }
+    PhysicsObject getObject(int proxy){ return objects[proxy]; }
+    int getRoot(){ return root; }
+    int getHeight(){ return root == NULL_NODE ? 0 : heights[root]; }
+    boolean isLeaf(int node){ return children1[node] == NULL_NODE; }
+    int getChild1(int node){ return children1[node]; }
+    int getChild2(int node){ return children2[node]; }
+
+    /**
+     * Finds every pair of leaves whose boxes overlap by descending the tree against itself
+     * @param callback called once for each overlapping pair of leaves
+     */
+    void findOverlappingLeaves(LeafPairCallback callback)
+    {
+        if(root == NULL_NODE) return;
+
+        // The stack holds pairs of nodes whose subtrees still need to be checked against each other
+        int top = 0;
+        stack = ensureStack(stack, 2);
+        stack[top++] = root;
+        stack[top++] = root;
+        while(top > 0)
+        {
+            int b = stack[--top];
+            int a = stack[--top];
+            stack = ensureStack(stack, top + 6);
+
+            if(a == b)
+            {
+                // A subtree against itself is each child against itself, plus the two children against each other
+                if(isLeaf(a)) continue;
+                int c1 = children1[a];
+                int c2 = children2[a];
+                stack[top++] = c1; stack[top++] = c1;
+                stack[top++] = c2; stack[top++] = c2;
+                stack[top++] = c1; stack[top++] = c2;
+                continue;
+            }
+
+            if(!boxes[a].overlaps(boxes[b])) continue;
+
+            boolean aIsLeaf = isLeaf(a);
+            boolean bIsLeaf = isLeaf(b);
+            if(aIsLeaf && bIsLeaf)
+            {
+                callback.onPair(a, b);
+            }
+            // Descend into the larger of the two subtrees
+            else if(aIsLeaf || (!bIsLeaf && boxes[b].getPerimeter() > boxes[a].getPerimeter()))
+            {
+                stack[top++] = a; stack[top++] = children1[b];
+                stack[top++] = a; stack[top++] = children2[b];
+            }
+            else
+            {
+                stack[top++] = children1[a]; stack[top++] = b;
+                stack[top++] = children2[a]; stack[top++] = b;
+            }
+        }
+    }
+
+    /**
+     * Finds every leaf whose box overlaps the given box
+     * @param box
+     * @param callback called once for each overlapping leaf
+     */
+    void query(AABB box, LeafCallback callback)
+    {
+        if(root == NULL_NODE) return;
+
+        int top = 0;
+        stack[top++] = root;
+        while(top > 0)
+        {
+            int node = stack[--top];
+            if(!boxes[node].overlaps(box)) continue;
+
+            if(isLeaf(node))
+            {
+                callback.onLeaf(node);
+            }
+            else
+            {
+                stack = ensureStack(stack, top + 2);
+                stack[top++] = children1[node];
+                stack[top++] = children2[node];
+            }
+        }
+    }
+
+    private void insertLeaf(int leaf)
+    {
+        if(root == NULL_NODE)
+        {
+            root = leaf;
+            parents[root] = NULL_NODE;
+            return;
+        }
+
+        // Walk down the tree to find the sibling that adds the least total perimeter to the tree
+        AABB leafBox = boxes[leaf];
+        int index = root;
+        while(!isLeaf(index))
+        {
+            int child1 = children1[index];
+            int child2 = children2[index];
+
+            float perimeter = boxes[index].getPerimeter();
+            float combinedPerimeter = combined.combine(boxes[index], leafBox).getPerimeter();
+
+            // Cost of creating a new parent for this node and the new leaf
+            float cost = 2.0f * combinedPerimeter;
+            // Minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2.0f * (combinedPerimeter - perimeter);
+
+            float cost1 = descendCost(child1, leafBox) + inheritanceCost;
+            float cost2 = descendCost(child2, leafBox) + inheritanceCost;
+
+            if(cost < cost1 && cost < cost2) break;
+
+            index = cost1 < cost2 ? child1 : child2;
+        }
+        int sibling = index;
+
+        // Create a new parent for the sibling and the leaf
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        objects[newParent] = null;
+        boxes[newParent].combine(leafBox, boxes[sibling]);
+        heights[newParent] = heights[sibling] + 1;
+        children1[newParent] = sibling;
+        children2[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        if(oldParent != NULL_NODE)
+        {
+            if(children1[oldParent] == sibling) children1[oldParent] = newParent;
+            else children2[oldParent] = newParent;
+        }
+        else
+        {
+            root = newParent;
+        }
+
+        refitAncestors(parents[leaf]);
+    }
+
+    private void removeLeaf(int leaf)
+    {
+        if(leaf == root)
+        {
+            root = NULL_NODE;
+            return;
+        }
+
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+
+        if(grandParent != NULL_NODE)
+        {
+            // Replace the parent with the sibling
+            if(children1[grandParent] == parent) children1[grandParent] = sibling;
+            else children2[grandParent] = sibling;
+            parents[sibling] = grandParent;
+            freeNode(parent);
+
+            refitAncestors(grandParent);
+        }
+        else
+        {
+            root = sibling;
+            parents[sibling] = NULL_NODE;
+            freeNode(parent);
+        }
+    }
+
+    /**
+     * Walks up from a node to the root, balancing each node and fixing its box and height
+     * @param index
+     */
+    private void refitAncestors(int index)
+    {
+        while(index != NULL_NODE)
+        {
+            index = balance(index);
+
+            int child1 = children1[index];
+            int child2 = children2[index];
+            heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+            boxes[index].combine(boxes[child1], boxes[child2]);
+
+            index = parents[index];
+        }
+    }
+
+    /**
+     * If one child of a node is more than one level taller than the other, rotates the taller child up into the node's
+     * place
+     * @param a the node to balance
+     * @return the node now in a's place
+     */
+    private int balance(int a)
+    {
+        if(isLeaf(a) || heights[a] < 2) return a;
+
+        int b = children1[a];
+        int c = children2[a];
+        int heightDifference = heights[c] - heights[b];
+
+        if(heightDifference > 1)
+        {
+            return rotateUp(a, c, b);
+        }
+        if(heightDifference < -1)
+        {
+            return rotateUp(a, b, c);
+        }
+        return a;
+    }
+
+    /**
+     * Rotates the taller child of a node up to take its place
+     * @param a the node being rotated down
+     * @param tall the taller child of a, which takes a's place
+     * @param shortChild the other child of a
+     * @return the taller child, now in a's place
+     */
+    private int rotateUp(int a, int tall, int shortChild)
+    {
+        int f = children1[tall];
+        int g = children2[tall];
+
+        // Swap a and its tall child
+        children1[tall] = a;
+        parents[tall] = parents[a];
+        parents[a] = tall;
+
+        int parent = parents[tall];
+        if(parent != NULL_NODE)
+        {
+            if(children1[parent] == a) children1[parent] = tall;
+            else children2[parent] = tall;
+        }
+        else
+        {
+            root = tall;
+        }
+
+        // Keep the taller grandchild under the tall node, and give a the shorter one
+        int keep = heights[f] > heights[g] ? f : g;
+        int give = keep == f ? g : f;
+
+        children2[tall] = keep;
+        if(children1[a] == tall) children1[a] = give;
+        else children2[a] = give;
+        parents[give] = a;
+
+        boxes[a].combine(boxes[shortChild], boxes[give]);
+        boxes[tall].combine(boxes[a], boxes[keep]);
+        heights[a] = 1 + Math.max(heights[shortChild], heights[give]);
+        heights[tall] = 1 + Math.max(heights[a], heights[keep]);
+
+        return tall;
+    }
+
+    /**
+     * Finds the cost of pushing a leaf down into the given child
+     */
+    private float descendCost(int child, AABB leafBox)
+    {
+        float combinedPerimeter = combined.combine(leafBox, boxes[child]).getPerimeter();
+        if(isLeaf(child))
+        {
+            return combinedPerimeter;
+        }
+        return combinedPerimeter - boxes[child].getPerimeter();
+    }
+
+    private int allocateNode()
+    {
+        int node;
+        if(freeList != NULL_NODE)
+        {
+            node = freeList;
+            freeList = parents[node];
+        }
+        else
+        {
+            if(nodeCapacityUsed == boxes.length)
+            {
+                grow();
+            }
+            node = nodeCapacityUsed++;
+            if(boxes[node] == null)
+            {
+                boxes[node] = new AABB();
+            }
+        }
+
+        parents[node] = NULL_NODE;
+        children1[node] = NULL_NODE;
+        children2[node] = NULL_NODE;
+        heights[node] = 0;
+        objects[node] = null;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node)
+    {
+        parents[node] = freeList;
+        heights[node] = -1;
+        objects[node] = null;
+        freeList = node;
+        nodeCount--;
+    }
+
+    private void grow()
+    {
+        int capacity = boxes.length * 2;
+        boxes = Arrays.copyOf(boxes, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        children1 = Arrays.copyOf(children1, capacity);
+        children2 = Arrays.copyOf(children2, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+    }
+
+    private static int[] ensureStack(int[] stack, int size)
+    {
+        if(stack.length >= size) return stack;
+        return Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
+
+    /**
+     * Called for each pair of leaves found overlapping
+     */
+    interface LeafPairCallback {
+        void onPair(int proxy1, int proxy2);
+    }
+
+    /**
+     * Called for each leaf found overlapping a query
+     */
+    interface LeafCallback {
+        void onLeaf(int proxy);
+    }
+}
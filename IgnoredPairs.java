@@ -0,0 +1,159 @@
+package physicsEngine;
+
+import java.util.Arrays;
+
+/**
+ * Set of the objects each object is ignoring, stored as keys made of the ignoring object's ID followed by the ignored
+ * object's ID. Keys are kept in an open addressing hash table of primitive longs, so checking a pair is a single hash
+ * lookup without creating any objects.
+ */
+class IgnoredPairs {
+
+    private final static int INITIAL_CAPACITY = 16; // Must be a power of two
+    private final static long EMPTY = -1; // Never a valid key, since IDs are never negative
+    private final static float MAX_LOAD = 0.5f;
+
+    private long[] keys = newTable(INITIAL_CAPACITY);
+    private int size = 0;
+
+    /**
+     * Records that one object is ignoring another
+     * @param ignorer ID of the object doing the ignoring
+     * @param ignored ID of the object being ignored
+     * @return true if this was not already recorded
+     */
+    boolean add(int ignorer, int ignored)
+    {
+        if((size + 1) > keys.length * MAX_LOAD)
+        {
+            grow();
+        }
+
+        long key = key(ignorer, ignored);
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while(keys[i] != EMPTY)
+        {
+            if(keys[i] == key) return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the record of one object ignoring another
+     * @param ignorer ID of the object doing the ignoring
+     * @param ignored ID of the object being ignored
+     * @return true if it had been recorded
+     */
+    boolean remove(int ignorer, int ignored)
+    {
+        long key = key(ignorer, ignored);
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while(keys[i] != key)
+        {
+            if(keys[i] == EMPTY) return false;
+            i = (i + 1) & mask;
+        }
+
+        // Shift any later keys in the same run back into the gap so lookups never stop early at it
+        int gap = i;
+        int j = (i + 1) & mask;
+        while(keys[j] != EMPTY)
+        {
+            int home = hash(keys[j]) & mask;
+            if(((j - home) & mask) >= ((j - gap) & mask))
+            {
+                keys[gap] = keys[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks whether one object is ignoring another
+     * @param ignorer ID of the object doing the ignoring
+     * @param ignored ID of the object being ignored
+     * @return true if it is
+     */
+    boolean contains(int ignorer, int ignored)
+    {
+        if(size == 0) return false;
+
+        long key = key(ignorer, ignored);
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while(keys[i] != EMPTY)
+        {
+            if(keys[i] == key) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes every record involving an object, whether it is the one ignoring or the one being ignored
+     * @param id ID of the object
+     */
+    void removeAll(int id)
+    {
+        rebuild(keys.length, id);
+    }
+
+    private void grow()
+    {
+        rebuild(keys.length * 2, -1);
+    }
+
+    /**
+     * Moves every key into a new table of the given size
+     * @param capacity size of the new table, must be a power of two
+     * @param skippedId keys involving this ID are left out, or -1 to keep every key
+     */
+    private void rebuild(int capacity, int skippedId)
+    {
+        long[] old = keys;
+        keys = newTable(capacity);
+        size = 0;
+        int mask = keys.length - 1;
+        for(long key: old)
+        {
+            if(key == EMPTY) continue;
+            if(skippedId >= 0 && ((int)(key >>> 32) == skippedId || (int)key == skippedId)) continue;
+
+            int i = hash(key) & mask;
+            while(keys[i] != EMPTY)
+            {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            size++;
+        }
+    }
+
+    private static long[] newTable(int capacity)
+    {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static long key(int ignorer, int ignored)
+    {
+        return ((long)ignorer << 32) | (ignored & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key)
+    {
+        // Mix the bits so that sequential IDs spread across the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,555 @@
+package physicsEngine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broad phase that stores each object in a loose quadtree, at the depth whose cells fit the object's broad phase
+ * radius. Every node's bounds are twice the size of its cell, so an object only needs its center inside a cell to fit
+ * in that node, and large objects sit near the root while small ones sit deep in the tree. A node is only split once it
+ * holds more objects than the node capacity. Pairs are found by walking down from the root through only the nodes whose
+ * loose bounds an object reaches, so objects are never checked against distant parts of the tree.
+ */
+class LooseQuadtree implements BroadPhase {
+
+    private final static int NULL_NODE = -1;
+    private final static int INITIAL_CAPACITY = 64;
+    private final static float ROOT_MARGIN = 1.5f; // Root is made this much larger than the objects need when built
+    private final static float DEFAULT_ROOT_HALF_SIZE = 1024; // Used when there are no objects to size the root by
+
+    private WorldSettings worldSettings; // Holds the max depth and node capacity to use
+    private int maxDepth;
+    private int nodeCapacity;
+
+    // Data about each object, indexed by the object's proxy ID. Objects in the same node form a linked list
+    private Map<PhysicsObject, Integer> proxies = new HashMap<>();
+    private PhysicsObject[] proxyObjects = new PhysicsObject[INITIAL_CAPACITY];
+    private int[] proxyNodes = new int[INITIAL_CAPACITY];
+    private int[] proxyPrev = new int[INITIAL_CAPACITY];
+    private int[] proxyNext = new int[INITIAL_CAPACITY]; // Also used as the next free proxy when a proxy is not in use
+    private int freeProxy = NULL_NODE;
+    private int proxyCapacityUsed = 0;
+
+    // Node data, indexed by node ID. Children are allocated in blocks of four, in the order: top left, top right,
+    // bottom left, bottom right
+    private float[] centerX = new float[INITIAL_CAPACITY];
+    private float[] centerY = new float[INITIAL_CAPACITY];
+    private float[] halfSizes = new float[INITIAL_CAPACITY]; // Half the width of the node's cell
+    private int[] depths = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY]; // Also used as the next free block when a block is not in use
+    private int[] firstChildren = new int[INITIAL_CAPACITY]; // NULL_NODE if the node has not been split
+    private int[] firstProxies = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY]; // Objects in the node itself
+    private int[] subtreeCounts = new int[INITIAL_CAPACITY]; // Objects in the node and all of its descendants
+    private int freeBlock = NULL_NODE;
+    private int nodeCapacityUsed = 0;
+
+    private int root = NULL_NODE;
+    private boolean needsRebuild = false;
+
+    private int[] stack = new int[INITIAL_CAPACITY]; // Used for walking the tree without recursion
+
+    LooseQuadtree(WorldSettings worldSettings)
+    {
+        this.worldSettings = worldSettings;
+        this.maxDepth = worldSettings.getQuadtreeMaxDepth();
+        this.nodeCapacity = worldSettings.getQuadtreeNodeCapacity();
+    }
+
+    /**
+     * Adds an object. If the tree has not been built yet, it is placed during the next update
+     * @param object
+     */
+    @Override
+    public void insert(PhysicsObject object)
+    {
+        if(proxies.containsKey(object)) return;
+
+        int id = allocateProxy();
+        proxies.put(object, id);
+        proxyObjects[id] = object;
+        proxyNodes[id] = NULL_NODE;
+
+        if(root == NULL_NODE)
+        {
+            needsRebuild = true;
+        }
+        else
+        {
+            insertProxy(id);
+        }
+    }
+
+    /**
+     * Removes an object
+     * @param object
+     */
+    @Override
+    public void remove(PhysicsObject object)
+    {
+        Integer id = proxies.remove(object);
+        if(id == null) return;
+
+        if(proxyNodes[id] != NULL_NODE)
+        {
+            removeProxy(id);
+        }
+        proxyObjects[id] = null;
+        proxyNext[id] = freeProxy;
+        freeProxy = id;
+    }
+
+    /**
+     * Removes every object
+     */
+    @Override
+    public void clear()
+    {
+        proxies.clear();
+        Arrays.fill(proxyObjects, null);
+        freeProxy = NULL_NODE;
+        proxyCapacityUsed = 0;
+        clearNodes();
+        needsRebuild = false;
+    }
+
+    /**
+     * Moves every object that no longer fits its node to the node it fits in now. The tree is rebuilt around the objects
+     * if the settings have changed or too many objects have left the root's bounds
+     */
+    @Override
+    public void update()
+    {
+        if(maxDepth != worldSettings.getQuadtreeMaxDepth() || nodeCapacity != worldSettings.getQuadtreeNodeCapacity())
+        {
+            maxDepth = worldSettings.getQuadtreeMaxDepth();
+            nodeCapacity = worldSettings.getQuadtreeNodeCapacity();
+            needsRebuild = true;
+        }
+
+        if(needsRebuild)
+        {
+            rebuild();
+            return;
+        }
+
+        int numOutside = 0;
+        for(int id = 0; id < proxyCapacityUsed; id++)
+        {
+            if(proxyObjects[id] == null) continue;
+
+            if(!fitsRoot(proxyObjects[id]))
+            {
+                numOutside++;
+                if(proxyNodes[id] == root) continue;
+            }
+            else if(fitsNode(id, proxyNodes[id]))
+            {
+                continue;
+            }
+            removeProxy(id);
+            insertProxy(id);
+        }
+
+        // Objects outside the root are kept in the root and checked against everything, so only allow a few of them
+        if(numOutside > nodeCapacity)
+        {
+            rebuild();
+        }
+    }
+
+    /**
+     * Adds a pair for each two objects that may be colliding
+     * @param out list to add each potential collision to
+     */
+    @Override
+    public void queryPairs(List<BroadPair> out)
+    {
+        if(root == NULL_NODE || subtreeCounts[root] == 0) return;
+
+        for(int id = 0; id < proxyCapacityUsed; id++)
+        {
+            if(proxyObjects[id] != null)
+            {
+                findPairs(proxyObjects[id], out);
+            }
+        }
+    }
+
+    /**
+     * Walks down from the root through every node whose loose bounds the object reaches, which always includes the
+     * object's ancestors, and adds a pair for each newer object found that may be colliding with it. Since loose bounds
+     * overlap, this also visits neighbouring nodes, whose objects can reach into the object's node
+     * @param object
+     * @param out list to add each potential collision to
+     */
+    private void findPairs(PhysicsObject object, List<BroadPair> out)
+    {
+        int top = 0;
+        stack[top++] = root;
+        while(top > 0)
+        {
+            int node = stack[--top];
+            for(int id = firstProxies[node]; id != NULL_NODE; id = proxyNext[id])
+            {
+                PhysicsObject other = proxyObjects[id];
+                // Each pair is found from both objects, so only add it from the older one
+                if(object.idNumber < other.idNumber && PhysicsWorld.broadCheck(object, other))
+                {
+                    out.add(new BroadPair(object, other));
+                }
+            }
+
+            int firstChild = firstChildren[node];
+            if(firstChild == NULL_NODE) continue;
+
+            stack = ensureStack(stack, top + 4);
+            for(int child = firstChild; child < firstChild + 4; child++)
+            {
+                if(subtreeCounts[child] > 0 && reachesNode(object, child))
+                {
+                    stack[top++] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sizes the root around every object, and inserts every object again
+     */
+    private void rebuild()
+    {
+        needsRebuild = false;
+        clearNodes();
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for(int id = 0; id < proxyCapacityUsed; id++)
+        {
+            PhysicsObject object = proxyObjects[id];
+            if(object == null) continue;
+
+            float r = object.broadPhaseRadius;
+            minX = Math.min(minX, object.position.x - r);
+            minY = Math.min(minY, object.position.y - r);
+            maxX = Math.max(maxX, object.position.x + r);
+            maxY = Math.max(maxY, object.position.y + r);
+        }
+
+        root = allocateBlock();
+        if(proxies.isEmpty())
+        {
+            initNode(root, NULL_NODE, 0, 0, DEFAULT_ROOT_HALF_SIZE, 0);
+        }
+        else
+        {
+            float halfSize = Math.max(Math.max(maxX - minX, maxY - minY) * 0.5f * ROOT_MARGIN, 1.0f);
+            initNode(root, NULL_NODE, (minX + maxX) * 0.5f, (minY + maxY) * 0.5f, halfSize, 0);
+        }
+
+        for(int id = 0; id < proxyCapacityUsed; id++)
+        {
+            if(proxyObjects[id] != null)
+            {
+                insertProxy(id);
+            }
+        }
+    }
+
+    /**
+     * Places a proxy in the deepest existing node that fits it, splitting that node if it becomes too full. Objects that
+     * do not fit in the root are placed in the root anyway
+     * @param id
+     */
+    private void insertProxy(int id)
+    {
+        PhysicsObject object = proxyObjects[id];
+        if(!fitsRoot(object))
+        {
+            addToNode(root, id);
+            return;
+        }
+        insertBelow(root, id, findFitDepth(object.broadPhaseRadius));
+    }
+
+    private void insertBelow(int node, int id, int fitDepth)
+    {
+        PhysicsObject object = proxyObjects[id];
+        while(firstChildren[node] != NULL_NODE && depths[node] < fitDepth)
+        {
+            node = findChild(node, object.position.x, object.position.y);
+        }
+        addToNode(node, id);
+
+        if(firstChildren[node] == NULL_NODE && counts[node] > nodeCapacity && depths[node] < maxDepth)
+        {
+            split(node);
+        }
+    }
+
+    /**
+     * Removes a proxy from its node, merging the node's ancestors back together if they have become mostly empty
+     * @param id
+     */
+    private void removeProxy(int id)
+    {
+        int node = proxyNodes[id];
+        removeFromNode(node, id);
+
+        // Merge the highest split node above the proxy holding few enough objects to no longer need splitting
+        int mergeNode = NULL_NODE;
+        for(int n = node; n != NULL_NODE; n = parents[n])
+        {
+            if(firstChildren[n] != NULL_NODE && subtreeCounts[n] <= nodeCapacity / 2)
+            {
+                mergeNode = n;
+            }
+        }
+        if(mergeNode != NULL_NODE)
+        {
+            merge(mergeNode);
+        }
+    }
+
+    /**
+     * Gives a node four children, and moves each of its objects that fits deeper down into them
+     * @param node
+     */
+    private void split(int node)
+    {
+        int firstChild = allocateBlock();
+        float quarterSize = halfSizes[node] * 0.5f;
+        for(int i = 0; i < 4; i++)
+        {
+            float x = centerX[node] + ((i & 1) == 0 ? -quarterSize : quarterSize);
+            float y = centerY[node] + ((i & 2) == 0 ? -quarterSize : quarterSize);
+            initNode(firstChild + i, node, x, y, quarterSize, depths[node] + 1);
+        }
+        firstChildren[node] = firstChild;
+
+        int id = firstProxies[node];
+        while(id != NULL_NODE)
+        {
+            int next = proxyNext[id];
+            PhysicsObject object = proxyObjects[id];
+            int fitDepth = findFitDepth(object.broadPhaseRadius);
+            if(fitDepth > depths[node] && containsCenter(node, object))
+            {
+                removeFromNode(node, id);
+                insertBelow(node, id, fitDepth);
+            }
+            id = next;
+        }
+    }
+
+    /**
+     * Moves every object below a node up into the node, and frees all of its descendants
+     * @param node
+     */
+    private void merge(int node)
+    {
+        int firstChild = firstChildren[node];
+        for(int child = firstChild; child < firstChild + 4; child++)
+        {
+            if(firstChildren[child] != NULL_NODE)
+            {
+                merge(child);
+            }
+            int id = firstProxies[child];
+            while(id != NULL_NODE)
+            {
+                int next = proxyNext[id];
+                removeFromNode(child, id);
+                addToNode(node, id);
+                id = next;
+            }
+        }
+        firstChildren[node] = NULL_NODE;
+        freeBlock(firstChild);
+    }
+
+    private void addToNode(int node, int id)
+    {
+        proxyNodes[id] = node;
+        proxyPrev[id] = NULL_NODE;
+        proxyNext[id] = firstProxies[node];
+        if(firstProxies[node] != NULL_NODE)
+        {
+            proxyPrev[firstProxies[node]] = id;
+        }
+        firstProxies[node] = id;
+        counts[node]++;
+        for(int n = node; n != NULL_NODE; n = parents[n])
+        {
+            subtreeCounts[n]++;
+        }
+    }
+
+    private void removeFromNode(int node, int id)
+    {
+        if(proxyPrev[id] != NULL_NODE)
+        {
+            proxyNext[proxyPrev[id]] = proxyNext[id];
+        }
+        else
+        {
+            firstProxies[node] = proxyNext[id];
+        }
+        if(proxyNext[id] != NULL_NODE)
+        {
+            proxyPrev[proxyNext[id]] = proxyPrev[id];
+        }
+        proxyNodes[id] = NULL_NODE;
+        counts[node]--;
+        for(int n = node; n != NULL_NODE; n = parents[n])
+        {
+            subtreeCounts[n]--;
+        }
+    }
+
+    /**
+     * Checks whether a proxy is still in the right node: its center is inside the node's cell, it is not too big for the
+     * node, and it could not be moved further down into one of the node's children
+     */
+    private boolean fitsNode(int id, int node)
+    {
+        PhysicsObject object = proxyObjects[id];
+        if(!containsCenter(node, object)) return false;
+
+        int fitDepth = findFitDepth(object.broadPhaseRadius);
+        if(fitDepth < depths[node]) return false;
+        return firstChildren[node] == NULL_NODE || fitDepth == depths[node];
+    }
+
+    private boolean fitsRoot(PhysicsObject object)
+    {
+        return containsCenter(root, object) && object.broadPhaseRadius <= halfSizes[root];
+    }
+
+    /**
+     * Finds the deepest depth whose cells are at least as large as the given radius. Since a node's bounds are twice
+     * the size of its cell, an object of that radius centered anywhere in such a cell is inside the node's bounds
+     * @param radius
+     * @return the depth, at most the max depth
+     */
+    private int findFitDepth(float radius)
+    {
+        float halfSize = halfSizes[root];
+        int depth = 0;
+        while(depth < maxDepth && halfSize * 0.5f >= radius)
+        {
+            halfSize *= 0.5f;
+            depth++;
+        }
+        return depth;
+    }
+
+    private boolean containsCenter(int node, PhysicsObject object)
+    {
+        return Math.abs(object.position.x - centerX[node]) <= halfSizes[node] &&
+                Math.abs(object.position.y - centerY[node]) <= halfSizes[node];
+    }
+
+    /**
+     * Checks whether an object's bounds overlap a node's loose bounds, which are twice the size of its cell
+     */
+    private boolean reachesNode(PhysicsObject object, int node)
+    {
+        float reach = object.broadPhaseRadius + 2 * halfSizes[node];
+        return Math.abs(object.position.x - centerX[node]) <= reach &&
+                Math.abs(object.position.y - centerY[node]) <= reach;
+    }
+
+    private int findChild(int node, float x, float y)
+    {
+        return firstChildren[node] + (x >= centerX[node] ? 1 : 0) + (y >= centerY[node] ? 2 : 0);
+    }
+
+    private void initNode(int node, int parent, float x, float y, float halfSize, int depth)
+    {
+        centerX[node] = x;
+        centerY[node] = y;
+        halfSizes[node] = halfSize;
+        depths[node] = depth;
+        parents[node] = parent;
+        firstChildren[node] = NULL_NODE;
+        firstProxies[node] = NULL_NODE;
+        counts[node] = 0;
+        subtreeCounts[node] = 0;
+    }
+
+    private void clearNodes()
+    {
+        root = NULL_NODE;
+        freeBlock = NULL_NODE;
+        nodeCapacityUsed = 0;
+        for(int id = 0; id < proxyCapacityUsed; id++)
+        {
+            proxyNodes[id] = NULL_NODE;
+        }
+    }
+
+    private int allocateProxy()
+    {
+        if(freeProxy != NULL_NODE)
+        {
+            int id = freeProxy;
+            freeProxy = proxyNext[id];
+            return id;
+        }
+
+        if(proxyCapacityUsed == proxyObjects.length)
+        {
+            int capacity = proxyObjects.length * 2;
+            proxyObjects = Arrays.copyOf(proxyObjects, capacity);
+            proxyNodes = Arrays.copyOf(proxyNodes, capacity);
+            proxyPrev = Arrays.copyOf(proxyPrev, capacity);
+            proxyNext = Arrays.copyOf(proxyNext, capacity);
+        }
+        return proxyCapacityUsed++;
+    }
+
+    /**
+     * Allocates four nodes next to each other
+     * @return the ID of the first node
+     */
+    private int allocateBlock()
+    {
+        if(freeBlock != NULL_NODE)
+        {
+            int block = freeBlock;
+            freeBlock = parents[block];
+            return block;
+        }
+
+        if(nodeCapacityUsed + 4 > centerX.length)
+        {
+            int capacity = centerX.length * 2;
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            halfSizes = Arrays.copyOf(halfSizes, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            firstProxies = Arrays.copyOf(firstProxies, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            subtreeCounts = Arrays.copyOf(subtreeCounts, capacity);
+        }
+        int block = nodeCapacityUsed;
+        nodeCapacityUsed += 4;
+        return block;
+    }
+
+    private void freeBlock(int block)
+    {
+        parents[block] = freeBlock;
+        freeBlock = block;
+    }
+
+    private static int[] ensureStack(int[] stack, int size)
+    {
+        return stack.length >= size ? stack : Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
+}
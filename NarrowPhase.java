@@ -0,0 +1,178 @@
+package physicsEngine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class for checking the pairs found by the broad phase for collisions. Pairs of the same two shapes are checked
+ * together in a loop of their own, so each loop runs the same check for every pair instead of choosing the right check
+ * for each pair in turn. Pairs of circles are checked over plain arrays of their positions and sizes, and only the
+ * pairs found to overlap go on to create a collision.
+ */
+class NarrowPhase {
+
+    private final static int INITIAL_CAPACITY = 64; // Pairs of circles the arrays start with room for
+
+    // Pairs of circles being checked, with the distance between their centers along each axis, the squared distance
+    // between them, and the distance between them when touching
+    private PersistentPair[] circlePairs = new PersistentPair[INITIAL_CAPACITY];
+    private float[] distanceX = new float[INITIAL_CAPACITY];
+    private float[] distanceY = new float[INITIAL_CAPACITY];
+    private float[] distanceSquared = new float[INITIAL_CAPACITY];
+    private float[] radiusSum = new float[INITIAL_CAPACITY];
+
+    /**
+     * Checks every pair that has moved since it was last checked, storing the result in each pair
+     * @param pairManager the pairs found by the broad phase, sorted by the shapes in each
+     */
+    void run(PairManager pairManager)
+    {
+        checkCircles(pairManager.getPairs(PersistentPair.PairKind.CIRCLE_CIRCLE));
+        checkCirclePolygons(pairManager.getPairs(PersistentPair.PairKind.CIRCLE_POLYGON));
+        checkPolygonCircles(pairManager.getPairs(PersistentPair.PairKind.POLYGON_CIRCLE));
+        checkPolygons(pairManager.getPairs(PersistentPair.PairKind.POLYGON_POLYGON));
+        checkOthers(pairManager.getPairs(PersistentPair.PairKind.OTHER));
+    }
+
+    /**
+     * Checks pairs of circles. The positions and sizes of the pairs to check are first copied into plain arrays, the
+     * distance between each pair is then found in a single loop with no branches, and only the pairs closer than their
+     * touching distance create a collision
+     * @param pairs pairs of two circles
+     */
+    private void checkCircles(List<PersistentPair> pairs)
+    {
+        if(pairs.size() > circlePairs.length) grow(pairs.size());
+
+        int numChecked = 0;
+        for(int i=0; i<pairs.size(); i++)
+        {
+            PersistentPair pair = pairs.get(i);
+            if(pair.canReuseResult()) continue;
+
+            PhysicsObject circle1 = pair.object1;
+            PhysicsObject circle2 = pair.object2;
+            if(isImmovable(circle1, circle2))
+            {
+                pair.setCollision(null);
+                continue;
+            }
+
+            circlePairs[numChecked] = pair;
+            distanceX[numChecked] = circle1.position.x - circle2.position.x;
+            distanceY[numChecked] = circle1.position.y - circle2.position.y;
+            radiusSum[numChecked] = circle1.broadPhaseRadius + circle2.broadPhaseRadius;
+            numChecked++;
+        }
+
+        for(int i=0; i<numChecked; i++)
+        {
+            distanceSquared[i] = distanceX[i]*distanceX[i] + distanceY[i]*distanceY[i];
+        }
+
+        for(int i=0; i<numChecked; i++)
+        {
+            PersistentPair pair = circlePairs[i];
+            circlePairs[i] = null; // Don't keep removed objects alive through the array
+            if((radiusSum[i] * radiusSum[i]) > distanceSquared[i])
+            {
+                PhysicsCircle circle1 = (PhysicsCircle)pair.object1;
+                PhysicsCircle circle2 = (PhysicsCircle)pair.object2;
+                pair.setCollision(circle1.createCollision(circle2, distanceSquared[i], radiusSum[i]));
+            }
+            else
+            {
+                pair.setCollision(null);
+            }
+        }
+    }
+
+    /**
+     * Checks pairs of a circle and then a polygon
+     * @param pairs pairs of a circle and a polygon
+     */
+    private void checkCirclePolygons(List<PersistentPair> pairs)
+    {
+        for(int i=0; i<pairs.size(); i++)
+        {
+            PersistentPair pair = pairs.get(i);
+            if(pair.canReuseResult()) continue;
+
+            PhysicsCircle circle = (PhysicsCircle)pair.object1;
+            PhysicsPolygon polygon = (PhysicsPolygon)pair.object2;
+            pair.setCollision(isImmovable(circle, polygon) ? null : circle.checkCollision(polygon, 0));
+        }
+    }
+
+    /**
+     * Checks pairs of a polygon and then a circle
+     * @param pairs pairs of a polygon and a circle
+     */
+    private void checkPolygonCircles(List<PersistentPair> pairs)
+    {
+        for(int i=0; i<pairs.size(); i++)
+        {
+            PersistentPair pair = pairs.get(i);
+            if(pair.canReuseResult()) continue;
+
+            PhysicsPolygon polygon = (PhysicsPolygon)pair.object1;
+            PhysicsCircle circle = (PhysicsCircle)pair.object2;
+            pair.setCollision(isImmovable(polygon, circle) ? null : polygon.checkCollision(circle, 0));
+        }
+    }
+
+    /**
+     * Checks pairs of polygons, first trying the face that separated each pair in its last check
+     * @param pairs pairs of two polygons
+     */
+    private void checkPolygons(List<PersistentPair> pairs)
+    {
+        for(int i=0; i<pairs.size(); i++)
+        {
+            PersistentPair pair = pairs.get(i);
+            if(pair.canReuseResult()) continue;
+
+            if(pair.isStillSeparated())
+            {
+                pair.setSeparated();
+                continue;
+            }
+
+            PhysicsPolygon polygon1 = (PhysicsPolygon)pair.object1;
+            PhysicsPolygon polygon2 = (PhysicsPolygon)pair.object2;
+            pair.setCollision(isImmovable(polygon1, polygon2) ? null : polygon1.checkCollision(polygon2, 0));
+        }
+    }
+
+    /**
+     * Checks every other pair, such as those with a capsule, edge chain, compound body or tile map, through the general
+     * collision check
+     * @param pairs the pairs
+     */
+    private void checkOthers(List<PersistentPair> pairs)
+    {
+        for(int i=0; i<pairs.size(); i++)
+        {
+            pairs.get(i).findCollision();
+        }
+    }
+
+    private static boolean isImmovable(PhysicsObject object1, PhysicsObject object2)
+    {
+        return object1.invertedMass == 0 && object2.invertedMass == 0;
+    }
+
+    /**
+     * Makes room for more pairs of circles
+     * @param capacity number of pairs to make room for
+     */
+    private void grow(int capacity)
+    {
+        int newCapacity = Math.max(capacity, circlePairs.length * 2);
+        circlePairs = Arrays.copyOf(circlePairs, newCapacity);
+        distanceX = Arrays.copyOf(distanceX, newCapacity);
+        distanceY = Arrays.copyOf(distanceY, newCapacity);
+        distanceSquared = Arrays.copyOf(distanceSquared, newCapacity);
+        radiusSum = Arrays.copyOf(radiusSum, newCapacity);
+    }
+}
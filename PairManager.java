@@ -0,0 +1,97 @@
+package physicsEngine;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class for keeping track of the pairs found by the broad phase across updates, so information about each pair can be
+ * kept for as long as the two objects stay near each other
+ */
+class PairManager {
+
+    private Map<Long, PersistentPair> pairs = new HashMap<>();
+    private List<PersistentPair> activePairs = new ArrayList<>();
+    private Map<PersistentPair.PairKind, List<PersistentPair>> pairsByKind =
+            new EnumMap<>(PersistentPair.PairKind.class); // The same pairs sorted by the shapes in each
+    private int pass = 0;
+
+    PairManager()
+    {
+        for(PersistentPair.PairKind kind: PersistentPair.PairKind.values())
+        {
+            pairsByKind.put(kind, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Matches the pairs found by the broad phase to the pairs already being tracked, and stops tracking any pair that
+     * was not found
+     * @param broadPhase every pair found by the broad phase this update
+     */
+    void update(List<BroadPair> broadPhase)
+    {
+        pass++;
+        activePairs.clear();
+        for(List<PersistentPair> kindPairs: pairsByKind.values())
+        {
+            kindPairs.clear();
+        }
+
+        for(int i=0; i<broadPhase.size(); i++)
+        {
+            BroadPair broadPair = broadPhase.get(i);
+            long key = BroadPair.key(broadPair.object1, broadPair.object2);
+
+            PersistentPair pair = pairs.get(key);
+            if(pair == null)
+            {
+                pair = new PersistentPair(key, broadPair.object1, broadPair.object2);
+                pairs.put(key, pair);
+            }
+            pair.lastSeen = pass;
+            activePairs.add(pair);
+            pairsByKind.get(pair.kind).add(pair);
+        }
+
+        // Forget pairs that have left the broad phase
+        if(pairs.size() > activePairs.size())
+        {
+            Iterator<PersistentPair> it = pairs.values().iterator();
+            while(it.hasNext())
+            {
+                if(it.next().lastSeen != pass)
+                {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops tracking every pair
+     */
+    void clear()
+    {
+        pairs.clear();
+        activePairs.clear();
+        for(List<PersistentPair> kindPairs: pairsByKind.values())
+        {
+            kindPairs.clear();
+        }
+    }
+
+    /**
+     * @return every pair found by the broad phase in the last update, in the order the broad phase found them
+     */
+    List<PersistentPair> getActivePairs(){ return activePairs; }
+
+    /**
+     * @param kind the shapes of the two objects in each pair
+     * @return every pair of those shapes found by the broad phase in the last update
+     */
+    List<PersistentPair> getPairs(PersistentPair.PairKind kind){ return pairsByKind.get(kind); }
+}
@@ -0,0 +1,134 @@
+package physicsEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Broad phase that bins objects into the same grid as SpatialHashGrid, but splits the search for pairs across the
+ * threads of a ForkJoinPool. The object list is divided into chunks, each of which collects its pairs into its own list,
+ * and the lists are joined in chunk order afterwards so the pairs come out in exactly the same order as the single
+ * threaded grid.
+ */
+class ParallelSpatialHashGrid implements BroadPhase {
+
+    private final static int MIN_PARALLEL_OBJECTS = 512; // Below this many objects the work is not worth splitting
+    private final static int CHUNKS_PER_THREAD = 4; // Extra chunks so threads that finish early can take more work
+    private final static int MIN_CHUNK_SIZE = 64;
+
+    private SpatialHashGrid grid;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private List<Chunk> chunks = new ArrayList<>();
+
+    ParallelSpatialHashGrid(WorldSettings worldSettings)
+    {
+        grid = new SpatialHashGrid(worldSettings);
+    }
+
+    @Override
+    public void insert(PhysicsObject object)
+    {
+        grid.insert(object);
+    }
+
+    @Override
+    public void remove(PhysicsObject object)
+    {
+        grid.remove(object);
+    }
+
+    @Override
+    public void clear()
+    {
+        grid.clear();
+    }
+
+    /**
+     * Bins every object into the grid
+     */
+    @Override
+    public void update()
+    {
+        grid.update();
+    }
+
+    /**
+     * Adds a pair for each two objects sharing a cell that may be colliding, searching chunks of the object list in
+     * parallel
+     * @param pairs list to add each potential collision to
+     */
+    @Override
+    public void queryPairs(List<BroadPair> pairs)
+    {
+        int numObjects = grid.getNumObjects();
+        if(numObjects < MIN_PARALLEL_OBJECTS || pool.getParallelism() < 2)
+        {
+            grid.queryPairs(pairs);
+            return;
+        }
+
+        // Objects near the start of the list check against more objects further down, so chunks are kept small enough
+        // for the threads to even out the work between them
+        int numChunks = Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, numObjects / MIN_CHUNK_SIZE);
+        while(chunks.size() < numChunks)
+        {
+            chunks.add(new Chunk());
+        }
+        for(int c = 0; c < numChunks; c++)
+        {
+            Chunk chunk = chunks.get(c);
+            chunk.reinitialize();
+            chunk.start = (int)((long)numObjects * c / numChunks);
+            chunk.end = (int)((long)numObjects * (c + 1) / numChunks);
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute()
+            {
+                invokeAll(chunks.subList(0, numChunks));
+            }
+        });
+
+        // Join the results in chunk order, so they do not depend on which thread finished first
+        for(int c = 0; c < numChunks; c++)
+        {
+            pairs.addAll(chunks.get(c).pairs);
+        }
+    }
+
+    /**
+     * Task for finding the pairs of a range of objects in the object list, with its own list of pairs and its own stamp
+     * array for skipping objects already checked
+     */
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        int start;
+        int end;
+        List<BroadPair> pairs = new ArrayList<>();
+        int[] visited = new int[0];
+
+        @Override
+        protected void compute()
+        {
+            pairs.clear();
+            int numObjects = grid.getNumObjects();
+            if(visited.length < numObjects)
+            {
+                visited = new int[Math.max(numObjects, visited.length * 2)];
+            }
+            // Stamps are object indices, so old stamps must be cleared to not be mistaken for this update's
+            for(int j = start + 1; j < numObjects; j++)
+            {
+                visited[j] = -1;
+            }
+
+            for(int i = start; i < end; i++)
+            {
+                grid.findPairs(i, pairs, visited);
+            }
+        }
+    }
+}
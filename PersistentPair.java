@@ -0,0 +1,189 @@
+package physicsEngine;
+
+/**
+ * Class for a pair of objects that has stayed in the broad phase across updates. Remembers the result of the last
+ * collision check so that it can be reused while neither object has moved, and carries the impulses built up at each
+ * contact point over to the next collision between the pair. For two polygons that are apart, also remembers the face
+ * that separated them, since it usually still separates them in the next update.
+ */
+class PersistentPair {
+
+    private final static float TRANSFORM_TOLERANCE = 0.001f; // Movement or rotation small enough to reuse a result
+
+    final long key;
+    final PhysicsObject object1;
+    final PhysicsObject object2;
+    final PairKind kind; // Shapes of the two objects, for checking pairs of the same shapes together
+
+    int lastSeen; // Broad phase pass this pair was last found in
+
+    // Result of the last collision check, and the transforms of both objects when it was made
+    private boolean hasResult = false;
+    private Collision collision;
+    private float x1, y1, orientation1;
+    private float x2, y2, orientation2;
+
+    // Face found to separate a pair of polygons in the last check, and the polygon it belongs to
+    private PhysicsPolygon separatingPolygon = null;
+    private int separatingFace = -1;
+
+    PersistentPair(long key, PhysicsObject object1, PhysicsObject object2)
+    {
+        this.key = key;
+        this.object1 = object1;
+        this.object2 = object2;
+        this.kind = PairKind.of(object1, object2);
+    }
+
+    /**
+     * Checks for a collision between the pair, reusing the last result if neither object has moved since
+     * @return the collision, or null if the objects are not colliding
+     */
+    Collision findCollision()
+    {
+        if(canReuseResult()) return collision;
+
+        // Try the face that separated the polygons last time before doing a full check
+        if(isStillSeparated())
+        {
+            setSeparated();
+        }
+        else
+        {
+            setCollision(object1.checkCollision(object2, 0));
+        }
+        return collision;
+    }
+
+    /**
+     * Checks if the last result still holds because neither object has moved since it was found
+     * @return true if the last result can be used again
+     */
+    boolean canReuseResult()
+    {
+        // Debug drawing happens while finding a collision, so always recalculate when debugging
+        return hasResult && !object1.worldSettings.canDebug() &&
+                !hasMoved(object1, x1, y1, orientation1) && !hasMoved(object2, x2, y2, orientation2);
+    }
+
+    /**
+     * Checks if the face that separated a pair of polygons in the last check still separates them
+     * @return true if the polygons are still apart
+     */
+    boolean isStillSeparated()
+    {
+        return separatingPolygon != null &&
+                separatingPolygon.isSeparatedBy(separatingFace, otherPolygon(separatingPolygon));
+    }
+
+    /**
+     * Records that the pair is still apart, keeping the face that separates them
+     */
+    void setSeparated()
+    {
+        collision = null;
+        recordTransforms();
+    }
+
+    /**
+     * Records the result of a full collision check between the pair
+     * @param found the collision found, or null if the objects are not colliding
+     */
+    void setCollision(Collision found)
+    {
+        Collision previous = collision;
+        collision = found;
+        if(collision != null && previous != null)
+        {
+            collision.matchContacts(previous);
+        }
+        findSeparatingFace();
+        recordTransforms();
+    }
+
+    /**
+     * @return the result of the last collision check
+     */
+    Collision getCollision(){ return collision; }
+
+    private void recordTransforms()
+    {
+        hasResult = true;
+        x1 = object1.position.x;
+        y1 = object1.position.y;
+        orientation1 = object1.orientation;
+        x2 = object2.position.x;
+        y2 = object2.position.y;
+        orientation2 = object2.orientation;
+    }
+
+    /**
+     * Remembers the face that separated the pair in the check just made, if both objects are polygons that were found to
+     * be apart
+     */
+    private void findSeparatingFace()
+    {
+        separatingPolygon = null;
+        separatingFace = -1;
+        if(collision != null ||
+                object1.shapeType != PhysicsObject.ShapeType.POLYGON ||
+                object2.shapeType != PhysicsObject.ShapeType.POLYGON ||
+                object1.getInvertedMass() + object2.getInvertedMass() == 0) // Never checked, so there is no face to keep
+        {
+            return;
+        }
+
+        // The first polygon is always checked first, so the second's result is only from this check if the first's found
+        // no separating face
+        PhysicsPolygon polygon1 = (PhysicsPolygon)object1;
+        PhysicsPolygon polygon2 = (PhysicsPolygon)object2;
+        separatingFace = polygon1.getSeparatingFace();
+        if(separatingFace >= 0)
+        {
+            separatingPolygon = polygon1;
+            return;
+        }
+        separatingFace = polygon2.getSeparatingFace();
+        if(separatingFace >= 0)
+        {
+            separatingPolygon = polygon2;
+        }
+    }
+
+    private PhysicsPolygon otherPolygon(PhysicsPolygon polygon)
+    {
+        return (PhysicsPolygon)(polygon == object1 ? object2 : object1);
+    }
+
+    private static boolean hasMoved(PhysicsObject object, float x, float y, float orientation)
+    {
+        return Math.abs(object.position.x - x) > TRANSFORM_TOLERANCE ||
+                Math.abs(object.position.y - y) > TRANSFORM_TOLERANCE ||
+                Math.abs(object.orientation - orientation) > TRANSFORM_TOLERANCE;
+    }
+
+    /**
+     * The shapes of a pair of objects, in order. Pairs of circles and polygons have a check of their own in the
+     * narrow phase, while every other pair goes through PhysicsObject.checkCollision()
+     */
+    enum PairKind {
+        CIRCLE_CIRCLE,
+        CIRCLE_POLYGON,
+        POLYGON_CIRCLE,
+        POLYGON_POLYGON,
+        OTHER;
+
+        static PairKind of(PhysicsObject object1, PhysicsObject object2)
+        {
+            boolean circle1 = object1.shapeType == PhysicsObject.ShapeType.CIRCLE;
+            boolean circle2 = object2.shapeType == PhysicsObject.ShapeType.CIRCLE;
+            boolean polygon1 = object1.shapeType == PhysicsObject.ShapeType.POLYGON;
+            boolean polygon2 = object2.shapeType == PhysicsObject.ShapeType.POLYGON;
+            if(circle1 && circle2) return CIRCLE_CIRCLE;
+            if(circle1 && polygon2) return CIRCLE_POLYGON;
+            if(polygon1 && circle2) return POLYGON_CIRCLE;
+            if(polygon1 && polygon2) return POLYGON_POLYGON;
+            return OTHER;
+        }
+    }
+}
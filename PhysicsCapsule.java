@@ -0,0 +1,124 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+import physicsEngine.math.Vec2;
+
+/**
+ * Class for calculating collisions for a capsule, which is a line segment with a radius around it (a rectangle with
+ * round ends). It has no specialised collision routines of its own, and instead is collided through its support
+ * function by the world's ConvexCollider.
+ */
+class PhysicsCapsule extends PhysicsObject implements ConvexShape {
+
+    private float halfLength; // Distance from the center to the center of each round end
+    private float radius;
+
+    // CONSTRUCTORS ----------------------------------------------------------------------------------------------------
+    PhysicsCapsule(WorldSettings worldSettings, Vec2 p, float length, float radius)
+    {
+        super(worldSettings, p, Material.Wood, findVolume(length, radius));
+        commonInit(length, radius);
+    }
+
+    PhysicsCapsule(WorldSettings worldSettings, Vec2 p, float length, float radius, Material material)
+    {
+        super(worldSettings, p, material, findVolume(length, radius));
+        commonInit(length, radius);
+    }
+
+    /**
+     * Portion of the constructor common to each
+     * @param length distance between the centers of the two round ends
+     * @param radius radius of the round ends
+     */
+    private void commonInit(float length, float radius)
+    {
+        shapeType = ShapeType.CONVEX;
+        this.halfLength = length / 2.0f;
+        this.radius = radius;
+        broadPhaseRadius = findMaxRadius();
+
+        // Use the inertia of the rectangle around the capsule
+        float width = length + (2 * radius);
+        float height = 2 * radius;
+        setInertia(width * height * ((width * width) + (height * height)) / 12.0f);
+    }
+
+    private static float findVolume(float length, float radius)
+    {
+        return (float)((2 * radius * length) + (Math.PI * radius * radius));
+    }
+    // -----------------------------------------------------------------------------------------------------------------
+
+    @Override
+    Collision checkCollision(PhysicsCircle circle, float margin)
+    {
+        return worldSettings.getConvexCollider().checkCollision(this, circle, margin);
+    }
+
+    @Override
+    Collision checkCollision(PhysicsPolygon polygon, float margin)
+    {
+        return worldSettings.getConvexCollider().checkCollision(this, polygon, margin);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsCircle circle)
+    {
+        return worldSettings.getConvexCollider().isTouching(this, circle, TOUCHING_AMOUNT);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsPolygon polygon)
+    {
+        return worldSettings.getConvexCollider().isTouching(this, polygon, TOUCHING_AMOUNT);
+    }
+
+    /**
+     * Finds the point on the edge of the capsule furthest in a given direction, which is on the round end facing that
+     * direction
+     * @param directionX x component of the direction
+     * @param directionY y component of the direction
+     * @param point array to store the x and y of the point in
+     */
+    @Override
+    public void findSupportPoint(float directionX, float directionY, float[] point)
+    {
+        float axisX = cos * halfLength;
+        float axisY = sin * halfLength;
+        if((axisX * directionX) + (axisY * directionY) < 0)
+        {
+            axisX = -axisX;
+            axisY = -axisY;
+        }
+
+        float length = (float)Math.sqrt((directionX * directionX) + (directionY * directionY));
+        if(length == 0)
+        {
+            point[0] = position.x + axisX;
+            point[1] = position.y + axisY;
+            return;
+        }
+        point[0] = position.x + axisX + (directionX * radius / length);
+        point[1] = position.y + axisY + (directionY * radius / length);
+    }
+
+    /**
+     * Finds the smallest axis aligned box containing the capsule at its current position and orientation
+     * @param bounds box to store the result in
+     */
+    @Override
+    void findBounds(AABB bounds)
+    {
+        float axisX = Math.abs(cos * halfLength);
+        float axisY = Math.abs(sin * halfLength);
+        bounds.set(position.x - axisX - radius, position.y - axisY - radius,
+                position.x + axisX + radius, position.y + axisY + radius);
+    }
+
+    @Override
+    float findMaxRadius(){ return halfLength + radius; }
+
+    public float getLength(){ return halfLength * 2; }
+    public float getRadius(){ return radius; }
+}
@@ -6,7 +6,7 @@ import physicsEngine.math.Vec2;
 /**
  * Class for calculating collisions for a circle
  */
-class PhysicsCircle extends PhysicsObject {
+class PhysicsCircle extends PhysicsObject implements ConvexShape {
 
     // CONSTRUCTORS ----------------------------------------------------------------------------------------------------
     PhysicsCircle(WorldSettings worldSettings, Vec2 p, float r)
@@ -62,6 +62,18 @@ class PhysicsCircle extends PhysicsObject {
         // If no collision happened, do nothing
         if(!collided) return null;
 
+        return createCollision(circle, distanceSquared, radiusSum);
+    }
+
+    /**
+     * Creates the collision between this circle and another circle it is overlapping
+     * @param circle
+     * @param distanceSquared squared distance between the two centers
+     * @param radiusSum distance between the two centers when touching
+     * @return the collision
+     */
+    Collision createCollision(PhysicsCircle circle, float distanceSquared, float radiusSum)
+    {
         Collision collision;
         // If the distance is tiny, they are essentially in the same location, so just move the objects apart in any
         // direction
@@ -111,6 +123,26 @@ class PhysicsCircle extends PhysicsObject {
         return  (radiusSum * radiusSum - TOUCHING_AMOUNT) >= distanceSquared;
     }
 
+    /**
+     * Finds the point on the edge of the circle furthest in a given direction
+     * @param directionX x component of the direction
+     * @param directionY y component of the direction
+     * @param point array to store the x and y of the point in
+     */
+    @Override
+    public void findSupportPoint(float directionX, float directionY, float[] point)
+    {
+        float length = (float)Math.sqrt((directionX * directionX) + (directionY * directionY));
+        if(length == 0)
+        {
+            point[0] = position.x;
+            point[1] = position.y;
+            return;
+        }
+        point[0] = position.x + (directionX * broadPhaseRadius / length);
+        point[1] = position.y + (directionY * broadPhaseRadius / length);
+    }
+
     @Override
     float findMaxRadius(){ return  broadPhaseRadius; }
 
@@ -0,0 +1,325 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+import physicsEngine.math.MalformedPolygonException;
+import physicsEngine.math.Polygon;
+import physicsEngine.math.Vec2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for a single body made of several circles and convex polygons joined together. Each part is a circle or polygon
+ * of its own that is moved along with the body before any check, and every collision found for a part is applied to the
+ * body as a whole. The parts are kept in a small tree of boxes in the body's own coordinates, so only the parts that can
+ * be touching another object are checked against it.
+ */
+class PhysicsCompound extends PhysicsObject {
+
+    private final static int MAX_LEAF_PARTS = 1; // Most parts in each leaf of the body's tree
+
+    private PhysicsObject[] parts;
+    private float[] offsetX; // Center of each part relative to the body's center of mass, before rotation
+    private float[] offsetY;
+
+    private BoxTree tree = new BoxTree(); // Tree of the box around each part, in the body's unrotated coordinates
+    private AABB localBounds = new AABB(); // Box around every part, in the body's unrotated coordinates
+    private AABB box = new AABB(); // Scratch box
+
+    // CONSTRUCTORS ----------------------------------------------------------------------------------------------------
+    PhysicsCompound(WorldSettings worldSettings, Vec2 p, CompoundShape shape, Material material)
+    {
+        super(worldSettings, p, material, 0);
+        shapeType = ShapeType.COMPOUND;
+
+        // Build each part at the origin, they are moved to the body before every check
+        List<PhysicsObject> builtParts = new ArrayList<>();
+        List<CompoundShape.Part> builtShapes = new ArrayList<>();
+        for(CompoundShape.Part part: shape.getParts())
+        {
+            if(part.points == null)
+            {
+                builtParts.add(new PhysicsCircle(worldSettings, new Vec2(0, 0), part.radius, material));
+                builtShapes.add(part);
+                continue;
+            }
+
+            try
+            {
+                builtParts.add(new PhysicsPolygon(worldSettings, new Vec2(0, 0), new Polygon(part.points), material));
+                builtShapes.add(part);
+            }
+            catch (MalformedPolygonException e)
+            {
+                System.err.println("ERROR: Points do not form a valid polygon.");
+            }
+        }
+
+        int numParts = builtParts.size();
+        parts = builtParts.toArray(new PhysicsObject[numParts]);
+        offsetX = new float[numParts];
+        offsetY = new float[numParts];
+
+        // The body turns about its center of mass, so put its position there and measure each part from it
+        float totalVolume = 0;
+        float centerX = 0;
+        float centerY = 0;
+        for(int i=0; i<numParts; i++)
+        {
+            CompoundShape.Part part = builtShapes.get(i);
+            totalVolume += parts[i].volume;
+            centerX += parts[i].volume * part.x;
+            centerY += parts[i].volume * part.y;
+        }
+        if(totalVolume > 0)
+        {
+            centerX /= totalVolume;
+            centerY /= totalVolume;
+        }
+        for(int i=0; i<numParts; i++)
+        {
+            offsetX[i] = builtShapes.get(i).x - centerX;
+            offsetY[i] = builtShapes.get(i).y - centerY;
+        }
+        position.x += centerX;
+        position.y += centerY;
+
+        // Each part adds its own mass, and its own inertia moved out to its distance from the center of mass
+        volume = totalVolume;
+        setMass(volume * material.getDensity());
+        float totalInertia = 0;
+        for(int i=0; i<numParts; i++)
+        {
+            float distanceSquared = (offsetX[i] * offsetX[i]) + (offsetY[i] * offsetY[i]);
+            totalInertia += parts[i].inertia + (parts[i].mass * distanceSquared);
+        }
+        setInertia(totalInertia);
+
+        buildTree();
+        broadPhaseRadius = findMaxRadius();
+        updateParts();
+    }
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the tree of the box around each part, in the body's unrotated coordinates
+     */
+    private void buildTree()
+    {
+        int numParts = parts.length;
+        float[] partMinX = new float[numParts];
+        float[] partMinY = new float[numParts];
+        float[] partMaxX = new float[numParts];
+        float[] partMaxY = new float[numParts];
+        localBounds.set(0, 0, 0, 0);
+        for(int i=0; i<numParts; i++)
+        {
+            if(parts[i].shapeType == ShapeType.POLYGON)
+            {
+                Polygon polygon = ((PhysicsPolygon)parts[i]).getPolygon();
+                partMinX[i] = partMinY[i] = Float.MAX_VALUE;
+                partMaxX[i] = partMaxY[i] = -Float.MAX_VALUE;
+                for(int j=0; j<polygon.getNumPoints(); j++)
+                {
+                    partMinX[i] = Math.min(partMinX[i], offsetX[i] + polygon.getOriginX(j));
+                    partMinY[i] = Math.min(partMinY[i], offsetY[i] + polygon.getOriginY(j));
+                    partMaxX[i] = Math.max(partMaxX[i], offsetX[i] + polygon.getOriginX(j));
+                    partMaxY[i] = Math.max(partMaxY[i], offsetY[i] + polygon.getOriginY(j));
+                }
+            }
+            else
+            {
+                float radius = parts[i].broadPhaseRadius;
+                partMinX[i] = offsetX[i] - radius;
+                partMinY[i] = offsetY[i] - radius;
+                partMaxX[i] = offsetX[i] + radius;
+                partMaxY[i] = offsetY[i] + radius;
+            }
+
+            if(i == 0)
+            {
+                localBounds.set(partMinX[i], partMinY[i], partMaxX[i], partMaxY[i]);
+            }
+            else
+            {
+                localBounds.set(Math.min(localBounds.minX, partMinX[i]), Math.min(localBounds.minY, partMinY[i]),
+                        Math.max(localBounds.maxX, partMaxX[i]), Math.max(localBounds.maxY, partMaxY[i]));
+            }
+        }
+        tree.build(partMinX, partMinY, partMaxX, partMaxY, numParts, MAX_LEAF_PARTS);
+    }
+
+    /**
+     * Moves every part to its place on the body at the body's current position and rotation
+     */
+    private void updateParts()
+    {
+        for(int i=0; i<parts.length; i++)
+        {
+            PhysicsObject part = parts[i];
+            part.position.x = position.x + (offsetX[i] * cos) - (offsetY[i] * sin);
+            part.position.y = position.y + (offsetX[i] * sin) + (offsetY[i] * cos);
+            part.orientation = orientation;
+            part.cos = cos;
+            part.sin = sin;
+        }
+    }
+
+    /**
+     * Checks for a collision between each part of the body near an object and the object. Each collision found is
+     * moved from the part onto the body, and they are returned linked together
+     * @param object the other object
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @return the first collision, or null if no part is colliding with the object
+     */
+    Collision checkCompoundCollision(PhysicsObject object, float margin)
+    {
+        updateParts();
+        object.findBounds(box);
+        box.expand(margin);
+        toLocalBounds(box);
+
+        Collision first = null;
+        Collision last = null;
+        int numFound = tree.query(box);
+        for(int i=0; i<numFound; i++)
+        {
+            int partIndex = tree.getResult(i);
+            PhysicsObject part = parts[partIndex];
+            Collision collision = part.checkCollision(object, margin);
+            if(collision == null) continue;
+
+            if(first == null)
+            {
+                first = collision;
+            }
+            else
+            {
+                last.next = collision;
+            }
+
+            // The part may have touched the object in more than one place
+            for(; collision != null; collision = collision.next)
+            {
+                if(collision.o1 == part) collision.o1 = this;
+                if(collision.o2 == part) collision.o2 = this;
+                collision.partId = (collision.partId * parts.length) + partIndex + 1;
+                last = collision;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Checks if any part of the body is touching an object
+     * @param object the other object
+     * @return true if they are touching
+     */
+    boolean isTouchingCompound(PhysicsObject object)
+    {
+        updateParts();
+        object.findBounds(box);
+        box.expand(TOUCHING_AMOUNT);
+        toLocalBounds(box);
+
+        int numFound = tree.query(box);
+        for(int i=0; i<numFound; i++)
+        {
+            if(parts[tree.getResult(i)].isTouching(object)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replaces a box in world coordinates with the smallest box containing it in the body's unrotated coordinates
+     * @param bounds the box to change
+     */
+    private void toLocalBounds(AABB bounds)
+    {
+        float centerX = ((bounds.minX + bounds.maxX) / 2.0f) - position.x;
+        float centerY = ((bounds.minY + bounds.maxY) / 2.0f) - position.y;
+        float halfWidth = bounds.getWidth() / 2.0f;
+        float halfHeight = bounds.getHeight() / 2.0f;
+
+        float localX = (centerX * cos) + (centerY * sin);
+        float localY = (centerY * cos) - (centerX * sin);
+        float extentX = (Math.abs(cos) * halfWidth) + (Math.abs(sin) * halfHeight);
+        float extentY = (Math.abs(sin) * halfWidth) + (Math.abs(cos) * halfHeight);
+        bounds.set(localX - extentX, localY - extentY, localX + extentX, localY + extentY);
+    }
+
+    /**
+     * Finds an axis aligned box containing every part at the body's current position and orientation
+     * @param bounds box to store the result in
+     */
+    @Override
+    void findBounds(AABB bounds)
+    {
+        float centerX = (localBounds.minX + localBounds.maxX) / 2.0f;
+        float centerY = (localBounds.minY + localBounds.maxY) / 2.0f;
+        float halfWidth = localBounds.getWidth() / 2.0f;
+        float halfHeight = localBounds.getHeight() / 2.0f;
+
+        float worldX = position.x + (centerX * cos) - (centerY * sin);
+        float worldY = position.y + (centerX * sin) + (centerY * cos);
+        float extentX = (Math.abs(cos) * halfWidth) + (Math.abs(sin) * halfHeight);
+        float extentY = (Math.abs(sin) * halfWidth) + (Math.abs(cos) * halfHeight);
+        bounds.set(worldX - extentX, worldY - extentY, worldX + extentX, worldY + extentY);
+    }
+
+    /**
+     * Finds the distance from the body's center of mass to the point of any part furthest from it
+     * @return the distance of the furthest point
+     */
+    @Override
+    float findMaxRadius()
+    {
+        float greatestRadius = 0;
+        for(int i=0; i<parts.length; i++)
+        {
+            float distance = (float)Math.sqrt((offsetX[i] * offsetX[i]) + (offsetY[i] * offsetY[i]));
+            greatestRadius = Math.max(greatestRadius, distance + parts[i].broadPhaseRadius);
+        }
+        return greatestRadius;
+    }
+
+    @Override
+    Collision checkCollision(PhysicsCircle circle, float margin)
+    {
+        return checkCompoundCollision(circle, margin);
+    }
+
+    @Override
+    Collision checkCollision(PhysicsPolygon polygon, float margin)
+    {
+        return checkCompoundCollision(polygon, margin);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsCircle circle)
+    {
+        return isTouchingCompound(circle);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsPolygon polygon)
+    {
+        return isTouchingCompound(polygon);
+    }
+
+    /**
+     * Changes the material of the body and of every part, so the parts stay movable or immovable along with the body
+     * @param material
+     */
+    @Override
+    public void setMaterial(Material material)
+    {
+        super.setMaterial(material);
+        for(PhysicsObject part: parts)
+        {
+            part.setMaterial(material);
+        }
+    }
+
+    public int getNumParts(){ return parts.length; }
+}
@@ -0,0 +1,722 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+import physicsEngine.math.Point;
+import physicsEngine.math.Polygon;
+import physicsEngine.math.Vec2;
+
+import java.util.Arrays;
+
+/**
+ * Class for an immovable chain of connected segments, such as the ground of a level. A single chain replaces the many
+ * boxes otherwise needed to build terrain, with its points kept in plain arrays and its segments in a tree of their own
+ * so only the segments near an object are checked.
+ * Each segment only collides on the side its normal faces, and each segment knows the segments either side of it
+ * (its ghost vertices), so objects sliding across the join between two segments are never caught on the join.
+ */
+class PhysicsEdgeChain extends PhysicsObject {
+
+    private final static float SIN_TOLERANCE = 0.1f; // How far past a neighbouring segment's normal a collision normal
+                                                     // can lean before it belongs to that segment instead
+    private final static float REFERENCE_FACE_BIAS = 0.05f; // How much less a polygon's face must penetrate by to be
+                                                            // used instead of the segment
+
+    // Kinds of contact, stored in the low bits of each feature ID alongside the segment's index
+    private final static int START_CORNER_FEATURE = 1; // A circle touching the first point of the segment
+    private final static int END_CORNER_FEATURE = 2; // A circle touching the second point of the segment
+    private final static int SEGMENT_FACE_FEATURE = 0x400; // A polygon point against the segment
+    private final static int POLYGON_FACE_FEATURE = 0x800; // A point of the segment against a polygon face
+    private final static int CONVEX_FEATURE = 0xC00; // Any contact found through support functions
+    private final static int MAX_LEAF_SEGMENTS = 4; // Most segments in each leaf of the chain's tree
+
+    private boolean loop; // True if the last point joins back to the first
+    private int numSegments;
+
+    // Points relative to the chain's position, before rotation
+    private float[] localX;
+    private float[] localY;
+
+    // Points and the normal of each segment (from point i to point i+1) at the chain's current position and rotation
+    private float[] x;
+    private float[] y;
+    private float[] normalX;
+    private float[] normalY;
+    private boolean[] convexCorner; // True for each point where the chain bends away from the side objects are on
+
+    private BoxTree tree = new BoxTree(); // Tree of the bounds of each segment
+    private boolean pointsBuilt = false;
+    private float builtX, builtY, builtOrientation; // Transform the points and tree were last built at
+
+    private AABB box = new AABB(); // Scratch box
+    private SegmentShape segmentShape = new SegmentShape(); // Reused for colliding a single segment as a convex shape
+    private float clipX1, clipY1, clipX2, clipY2; // Scratch segment being clipped
+    private float[] supportPoint = new float[2]; // Scratch point
+
+    // CONSTRUCTORS ----------------------------------------------------------------------------------------------------
+    PhysicsEdgeChain(WorldSettings worldSettings, Vec2 p, float[] points, boolean loop, Material material)
+    {
+        super(worldSettings, p, material, 0);
+        shapeType = ShapeType.CHAIN;
+        this.loop = loop;
+
+        // Chains never move, whatever their material
+        invertedMass = 0;
+        invertedIntertia = 0;
+
+        // Drop any point repeating the one before it, since the segment between them would have no direction
+        int numPoints = 0;
+        localX = new float[points.length / 2];
+        localY = new float[points.length / 2];
+        for(int i=0; i+1<points.length; i+=2)
+        {
+            if(numPoints > 0 && points[i] == localX[numPoints-1] && points[i+1] == localY[numPoints-1]) continue;
+            localX[numPoints] = points[i];
+            localY[numPoints] = points[i+1];
+            numPoints++;
+        }
+        if(loop && numPoints > 1 && localX[0] == localX[numPoints-1] && localY[0] == localY[numPoints-1])
+        {
+            numPoints--;
+        }
+        localX = Arrays.copyOf(localX, numPoints);
+        localY = Arrays.copyOf(localY, numPoints);
+
+        if(numPoints < (loop ? 3 : 2))
+        {
+            System.err.println("Edge chain has too few distinct points to form a segment.");
+            numSegments = 0;
+        }
+        else
+        {
+            numSegments = loop ? numPoints : numPoints - 1;
+        }
+
+        x = new float[numPoints];
+        y = new float[numPoints];
+        normalX = new float[numPoints];
+        normalY = new float[numPoints];
+        convexCorner = new boolean[numPoints];
+        broadPhaseRadius = findMaxRadius();
+        updatePoints();
+    }
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks for a collision between each segment of the chain near an object and the object. A separate collision is
+     * found for each segment touching the object, and they are returned linked together
+     * @param object the other object
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @return the first collision, or null if no segment is colliding with the object
+     */
+    Collision checkChainCollision(PhysicsObject object, float margin)
+    {
+        updatePoints();
+        object.findBounds(box);
+        box.expand(margin);
+
+        Collision first = null;
+        Collision last = null;
+        int numFound = tree.query(box);
+        for(int i=0; i<numFound; i++)
+        {
+            Collision collision = checkSegmentCollision(object, tree.getResult(i), margin);
+            if(collision == null) continue;
+
+            if(first == null)
+            {
+                first = collision;
+            }
+            else
+            {
+                last.next = collision;
+            }
+            last = collision;
+        }
+        return first;
+    }
+
+    /**
+     * Checks if any segment of the chain is touching an object
+     * @param object the other object
+     * @return true if they are touching
+     */
+    boolean isTouchingChain(PhysicsObject object)
+    {
+        return checkChainCollision(object, TOUCHING_AMOUNT) != null;
+    }
+
+    /**
+     * Checks for a collision between a single segment and an object
+     * @param object the other object
+     * @param segment index of the segment
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @return the collision, or null if they are not colliding
+     */
+    private Collision checkSegmentCollision(PhysicsObject object, int segment, float margin)
+    {
+        switch (object.shapeType)
+        {
+            case CIRCLE:
+                return checkCollision((PhysicsCircle)object, segment, margin);
+            case POLYGON:
+                return checkCollision((PhysicsPolygon)object, segment, margin);
+            case CONVEX:
+                if(object instanceof ConvexShape)
+                {
+                    return checkConvexCollision(object, segment, margin);
+                }
+                System.err.println("CONVEX OBJECT TYPE without a support function in edge chain collision.");
+                return null;
+            case CHAIN:
+                return null; // Chains never move, so never need to collide with each other
+            default:
+                System.err.println("INVALID OBJECT TYPE in edge chain collision.");
+                return null;
+        }
+    }
+
+    /**
+     * Checks for a collision between a single segment and a circle. The circle's center is either beside the segment,
+     * in which case it collides with the segment itself, or past one of its ends, in which case it collides with that
+     * corner. A corner shared with a neighbouring segment is only checked by one of the two segments
+     * @param circle the circle
+     * @param segment index of the segment
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @return the collision, or null if they are not colliding
+     */
+    private Collision checkCollision(PhysicsCircle circle, int segment, float margin)
+    {
+        int next = nextPoint(segment);
+        float startX = x[segment];
+        float startY = y[segment];
+        float endX = x[next];
+        float endY = y[next];
+        float centerX = circle.position.x;
+        float centerY = circle.position.y;
+        float radius = circle.getRadius();
+
+        // Circles behind the segment pass through it
+        float separation = (normalX[segment] * (centerX - startX)) + (normalY[segment] * (centerY - startY));
+        if(separation < 0 || separation > radius + margin) return null;
+
+        float segmentX = endX - startX;
+        float segmentY = endY - startY;
+        float pastStart = ((centerX - startX) * segmentX) + ((centerY - startY) * segmentY);
+        float beforeEnd = ((endX - centerX) * segmentX) + ((endY - centerY) * segmentY);
+
+        float pushX = normalX[segment]; // Direction from the chain to the circle
+        float pushY = normalY[segment];
+        float penetration = radius - separation;
+        Point contact;
+        int feature;
+        if(pastStart <= 0 || beforeEnd <= 0)
+        {
+            int corner;
+            if(pastStart <= 0)
+            {
+                // A circle beside the previous segment is that segment's to collide with
+                if(hasPreviousSegment(segment))
+                {
+                    int previous = previousPoint(segment);
+                    if(((startX - x[previous]) * (startX - centerX)) +
+                            ((startY - y[previous]) * (startY - centerY)) > 0)
+                    {
+                        return null;
+                    }
+                }
+                corner = segment;
+                feature = START_CORNER_FEATURE;
+            }
+            else
+            {
+                // A circle in front of the next segment is that segment's to collide with
+                if(hasNextSegment(segment) &&
+                        (normalX[next] * (centerX - endX)) + (normalY[next] * (centerY - endY)) >= 0)
+                {
+                    return null;
+                }
+                corner = next;
+                feature = END_CORNER_FEATURE;
+            }
+
+            float toCenterX = centerX - x[corner];
+            float toCenterY = centerY - y[corner];
+            float distance = (float)Math.sqrt((toCenterX * toCenterX) + (toCenterY * toCenterY));
+            if(distance > radius + margin) return null;
+
+            penetration = radius - distance;
+            if(distance > 0)
+            {
+                pushX = toCenterX / distance;
+                pushY = toCenterY / distance;
+            }
+            contact = new Point(x[corner], y[corner]);
+        }
+        else
+        {
+            // The contact is the point of the circle deepest past the segment
+            contact = new Point(centerX - (pushX * radius), centerY - (pushY * radius));
+            feature = 0;
+        }
+
+        // The circle is kept as the first object, the same as for a circle touching a polygon
+        Collision collision = new Collision(circle, this, new Vec2(-pushX, -pushY), penetration);
+        collision.addContactPoint(contact, featureId(segment, feature));
+        return collision;
+    }
+
+    /**
+     * Checks for a collision between a single segment and a polygon, by finding the axis of least separation among the
+     * segment's normal and each of the polygon's face normals. A polygon face is only used if the direction it would
+     * push the polygon in belongs to this segment, and not to a neighbouring segment or the join between them
+     * @param polygonObject the polygon
+     * @param segment index of the segment
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @return the collision, or null if they are not colliding
+     */
+    private Collision checkCollision(PhysicsPolygon polygonObject, int segment, float margin)
+    {
+        int next = nextPoint(segment);
+        float startX = x[segment];
+        float startY = y[segment];
+        float endX = x[next];
+        float endY = y[next];
+        float segmentNormalX = normalX[segment];
+        float segmentNormalY = normalY[segment];
+
+        // Polygons whose center is behind the segment pass through it
+        if((segmentNormalX * (polygonObject.position.x - startX)) +
+                (segmentNormalY * (polygonObject.position.y - startY)) < 0)
+        {
+            return null;
+        }
+
+        polygonObject.updatePoints();
+        Polygon polygon = polygonObject.getPolygon();
+        int numPoints = polygon.getNumPoints();
+
+        // Separation along the segment's normal is how far in front of the segment the polygon's deepest point is
+        float segmentSeparation = Float.MAX_VALUE;
+        for(int i=0; i<numPoints; i++)
+        {
+            float separation = (segmentNormalX * (polygon.getCalculatedX(i) - startX)) +
+                    (segmentNormalY * (polygon.getCalculatedY(i) - startY));
+            segmentSeparation = Math.min(segmentSeparation, separation);
+        }
+        if(segmentSeparation > margin) return null;
+
+        // Separation along a polygon face's normal is how far in front of the face the segment's deepest end is
+        float faceSeparation = -Float.MAX_VALUE;
+        int face = -1;
+        for(int i=0; i<numPoints; i++)
+        {
+            float faceX = polygon.getCalculatedX(i);
+            float faceY = polygon.getCalculatedY(i);
+            float separation = Math.min(
+                    (polygon.getNormalX(i) * (startX - faceX)) + (polygon.getNormalY(i) * (startY - faceY)),
+                    (polygon.getNormalX(i) * (endX - faceX)) + (polygon.getNormalY(i) * (endY - faceY)));
+            if(separation > margin) return null;
+            if(separation > faceSeparation)
+            {
+                faceSeparation = separation;
+                face = i;
+            }
+        }
+
+        // Nearly equal separations keep the segment, so resting objects keep the same contact points between updates
+        if(faceSeparation > segmentSeparation + REFERENCE_FACE_BIAS)
+        {
+            switch (findNormalUse(segment, -polygon.getNormalX(face), -polygon.getNormalY(face)))
+            {
+                case NEIGHBOUR:
+                    return null;
+                case KEEP:
+                    return collideWithPolygonFace(polygonObject, segment, face, faceSeparation, margin);
+                default:
+                    break;
+            }
+        }
+        return collideWithSegment(polygonObject, segment, segmentSeparation, margin);
+    }
+
+    /**
+     * Finds the contact points of a polygon colliding with a segment along the segment's normal, by clipping the
+     * polygon's face most facing the segment to the segment's ends
+     * @return the collision, or null if no contact points are left after clipping
+     */
+    private Collision collideWithSegment(PhysicsPolygon polygonObject, int segment, float separation, float margin)
+    {
+        Polygon polygon = polygonObject.getPolygon();
+        int numPoints = polygon.getNumPoints();
+        float segmentNormalX = normalX[segment];
+        float segmentNormalY = normalY[segment];
+
+        // The incident face is the polygon face most against the segment's normal
+        int incident = 0;
+        float mostAgainst = Float.MAX_VALUE;
+        for(int i=0; i<numPoints; i++)
+        {
+            float against = (polygon.getNormalX(i) * segmentNormalX) + (polygon.getNormalY(i) * segmentNormalY);
+            if(against < mostAgainst)
+            {
+                mostAgainst = against;
+                incident = i;
+            }
+        }
+        int incidentNext = incident == numPoints-1? 0: incident+1;
+
+        clipX1 = polygon.getCalculatedX(incident);
+        clipY1 = polygon.getCalculatedY(incident);
+        clipX2 = polygon.getCalculatedX(incidentNext);
+        clipY2 = polygon.getCalculatedY(incidentNext);
+        int next = nextPoint(segment);
+        if(!clipToSides(x[segment], y[segment], x[next], y[next])) return null;
+
+        Collision collision = new Collision(polygonObject, this, new Vec2(-segmentNormalX, -segmentNormalY),
+                -separation);
+        addContactPoint(collision, clipX1, clipY1, segmentNormalX, segmentNormalY, x[segment], y[segment], margin,
+                featureId(segment, SEGMENT_FACE_FEATURE | incident));
+        addContactPoint(collision, clipX2, clipY2, segmentNormalX, segmentNormalY, x[segment], y[segment], margin,
+                featureId(segment, SEGMENT_FACE_FEATURE | incidentNext));
+        return collision.numContactPoints > 0 ? collision : null;
+    }
+
+    /**
+     * Finds the contact points of a polygon colliding with a segment along one of the polygon's face normals, by
+     * clipping the segment to the ends of the face
+     * @return the collision, or null if no contact points are left after clipping
+     */
+    private Collision collideWithPolygonFace(PhysicsPolygon polygonObject, int segment, int face, float separation,
+                                             float margin)
+    {
+        Polygon polygon = polygonObject.getPolygon();
+        int faceNext = face == polygon.getNumPoints()-1? 0: face+1;
+        float faceX = polygon.getCalculatedX(face);
+        float faceY = polygon.getCalculatedY(face);
+        float faceNormalX = polygon.getNormalX(face);
+        float faceNormalY = polygon.getNormalY(face);
+
+        int next = nextPoint(segment);
+        clipX1 = x[segment];
+        clipY1 = y[segment];
+        clipX2 = x[next];
+        clipY2 = y[next];
+        if(!clipToSides(faceX, faceY, polygon.getCalculatedX(faceNext), polygon.getCalculatedY(faceNext))) return null;
+
+        Collision collision = new Collision(polygonObject, this, new Vec2(faceNormalX, faceNormalY), -separation);
+        addContactPoint(collision, clipX1, clipY1, faceNormalX, faceNormalY, faceX, faceY, margin,
+                featureId(segment, POLYGON_FACE_FEATURE | (face << 1)));
+        addContactPoint(collision, clipX2, clipY2, faceNormalX, faceNormalY, faceX, faceY, margin,
+                featureId(segment, POLYGON_FACE_FEATURE | (face << 1) | 1));
+        return collision.numContactPoints > 0 ? collision : null;
+    }
+
+    /**
+     * Clips the scratch segment to the two side planes of a reference face, which run through each end of the face and
+     * face away from it along the face's direction
+     * @return false if the scratch segment is entirely beside the reference face
+     */
+    private boolean clipToSides(float startX, float startY, float endX, float endY)
+    {
+        float sideX = endX - startX;
+        float sideY = endY - startY;
+        float sideLength = (float)Math.sqrt((sideX * sideX) + (sideY * sideY));
+        sideX /= sideLength;
+        sideY /= sideLength;
+
+        return clip(-sideX, -sideY, -((sideX * startX) + (sideY * startY))) &&
+                clip(sideX, sideY, (sideX * endX) + (sideY * endY));
+    }
+
+    /**
+     * Clips the scratch segment to the part behind a plane
+     * @param directionX x component of the direction the plane faces
+     * @param directionY y component of the direction the plane faces
+     * @param offset distance of the plane from the origin along its direction
+     * @return false if the scratch segment is entirely in front of the plane
+     */
+    private boolean clip(float directionX, float directionY, float offset)
+    {
+        float distance1 = (directionX * clipX1) + (directionY * clipY1) - offset;
+        float distance2 = (directionX * clipX2) + (directionY * clipY2) - offset;
+        if(distance1 > 0 && distance2 > 0) return false;
+        if(distance1 > 0)
+        {
+            float t = distance1 / (distance1 - distance2);
+            clipX1 += t * (clipX2 - clipX1);
+            clipY1 += t * (clipY2 - clipY1);
+        }
+        else if(distance2 > 0)
+        {
+            float t = distance2 / (distance2 - distance1);
+            clipX2 += t * (clipX1 - clipX2);
+            clipY2 += t * (clipY1 - clipY2);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a contact point to a collision if it is no further than the margin in front of the reference face
+     */
+    private static void addContactPoint(Collision collision, float pointX, float pointY, float normalX, float normalY,
+                                        float faceX, float faceY, float margin, int featureId)
+    {
+        if((normalX * (pointX - faceX)) + (normalY * (pointY - faceY)) <= margin)
+        {
+            collision.addContactPoint(new Point(pointX, pointY), featureId);
+        }
+    }
+
+    /**
+     * Checks for a collision between a single segment and any other convex shape through their support functions
+     * @param object the other object, which must be a ConvexShape
+     * @param segment index of the segment
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @return the collision, or null if they are not colliding
+     */
+    private Collision checkConvexCollision(PhysicsObject object, int segment, float margin)
+    {
+        int next = nextPoint(segment);
+        float segmentNormalX = normalX[segment];
+        float segmentNormalY = normalY[segment];
+
+        // Shapes whose center is behind the segment pass through it
+        if((segmentNormalX * (object.position.x - x[segment])) +
+                (segmentNormalY * (object.position.y - y[segment])) < 0)
+        {
+            return null;
+        }
+
+        segmentShape.segment = segment;
+        float middleX = (x[segment] + x[next]) / 2.0f;
+        float middleY = (y[segment] + y[next]) / 2.0f;
+        Collision collision = worldSettings.getConvexCollider().checkCollision(object, (ConvexShape)object,
+                this, segmentShape, middleX - object.position.x, middleY - object.position.y, margin);
+        if(collision == null) return null;
+
+        switch (findNormalUse(segment, -collision.normal.x, -collision.normal.y))
+        {
+            case NEIGHBOUR:
+                return null;
+            case SEGMENT:
+                // Push straight out along the segment's normal, by as far as the shape's deepest point is behind it
+                ((ConvexShape)object).findSupportPoint(-segmentNormalX, -segmentNormalY, supportPoint);
+                collision.normal.x = -segmentNormalX;
+                collision.normal.y = -segmentNormalY;
+                collision.penetration = -((segmentNormalX * (supportPoint[0] - x[segment])) +
+                        (segmentNormalY * (supportPoint[1] - y[segment])));
+                break;
+            default:
+                break;
+        }
+
+        for(int i=0; i<collision.numContactPoints; i++)
+        {
+            collision.featureIds[i] = featureId(segment, CONVEX_FEATURE | collision.featureIds[i]);
+        }
+        return collision;
+    }
+
+    /**
+     * Finds whether a collision normal other than a segment's own normal can be used for the segment. Where the segment
+     * meets a neighbour at a convex corner, directions between the two segments' normals belong to the corner and can
+     * be used, while directions past the neighbour's normal belong to the neighbour, which finds the collision itself.
+     * Where they meet at a concave corner, any direction leaning towards the neighbour would push the object back into
+     * the neighbour, so the segment's own normal is used instead. This is what stops objects catching on the join
+     * between two segments
+     * @param segment index of the segment
+     * @param pushX x component of the direction the collision would push the object away from the chain
+     * @param pushY y component of the direction the collision would push the object away from the chain
+     * @return how to treat the direction
+     */
+    private NormalUse findNormalUse(int segment, float pushX, float pushY)
+    {
+        // The segment's direction, which is its normal turned a quarter turn
+        float directionX = -normalY[segment];
+        float directionY = normalX[segment];
+
+        if((pushX * directionX) + (pushY * directionY) > 0)
+        {
+            // Leaning towards the end of the segment
+            if(!hasNextSegment(segment)) return NormalUse.KEEP;
+            int next = nextPoint(segment);
+            if(!convexCorner[next]) return NormalUse.SEGMENT;
+            return cross(pushX, pushY, normalX[next], normalY[next]) >= -SIN_TOLERANCE ?
+                    NormalUse.KEEP : NormalUse.NEIGHBOUR;
+        }
+        else
+        {
+            // Leaning towards the start of the segment
+            if(!hasPreviousSegment(segment)) return NormalUse.KEEP;
+            int previous = previousPoint(segment);
+            if(!convexCorner[segment]) return NormalUse.SEGMENT;
+            return cross(normalX[previous], normalY[previous], pushX, pushY) >= -SIN_TOLERANCE ?
+                    NormalUse.KEEP : NormalUse.NEIGHBOUR;
+        }
+    }
+
+    /**
+     * Moves the chain's points to the chain's current position and rotation, and rebuilds the tree of segments around
+     * them. Does nothing if they are already there, which is almost always, since chains never move by themselves
+     */
+    private void updatePoints()
+    {
+        if(pointsBuilt && position.x == builtX && position.y == builtY && orientation == builtOrientation) return;
+        pointsBuilt = true;
+        builtX = position.x;
+        builtY = position.y;
+        builtOrientation = orientation;
+
+        int numPoints = localX.length;
+        for(int i=0; i<numPoints; i++)
+        {
+            x[i] = position.x + (localX[i] * cos) - (localY[i] * sin);
+            y[i] = position.y + (localX[i] * sin) + (localY[i] * cos);
+        }
+
+        // Each segment's normal faces to the left of its direction, the same as the outward normal of a polygon's face
+        for(int i=0; i<numSegments; i++)
+        {
+            int next = nextPoint(i);
+            float segmentX = x[next] - x[i];
+            float segmentY = y[next] - y[i];
+            float length = (float)Math.sqrt((segmentX * segmentX) + (segmentY * segmentY));
+            normalX[i] = segmentY / length;
+            normalY[i] = -segmentX / length;
+        }
+
+        // A corner is convex if the chain turns the same way a polygon's outline does, away from the side objects are
+        // on. Straight joins count as convex
+        for(int i=0; i<numPoints; i++)
+        {
+            if(!hasPreviousSegment(i) || i >= numSegments) continue;
+            int previous = previousPoint(i);
+            convexCorner[i] = cross(normalX[previous], normalY[previous], normalX[i], normalY[i]) >= 0;
+        }
+
+        float[] segmentMinX = new float[numSegments];
+        float[] segmentMinY = new float[numSegments];
+        float[] segmentMaxX = new float[numSegments];
+        float[] segmentMaxY = new float[numSegments];
+        for(int i=0; i<numSegments; i++)
+        {
+            int next = nextPoint(i);
+            segmentMinX[i] = Math.min(x[i], x[next]);
+            segmentMinY[i] = Math.min(y[i], y[next]);
+            segmentMaxX[i] = Math.max(x[i], x[next]);
+            segmentMaxY[i] = Math.max(y[i], y[next]);
+        }
+        tree.build(segmentMinX, segmentMinY, segmentMaxX, segmentMaxY, numSegments, MAX_LEAF_SEGMENTS);
+    }
+
+    private int nextPoint(int i){ return i == localX.length-1? 0: i+1; }
+    private int previousPoint(int i){ return i == 0? localX.length-1: i-1; }
+    private boolean hasNextSegment(int segment){ return loop || segment < numSegments-1; }
+    private boolean hasPreviousSegment(int segment){ return loop || segment > 0; }
+
+    private static float cross(float x1, float y1, float x2, float y2)
+    {
+        return (x1 * y2) - (y1 * x2);
+    }
+
+    /**
+     * Creates a feature ID unique to each kind of contact on each segment, so a contact point can be matched between
+     * updates even when an object is touching several segments
+     */
+    private static int featureId(int segment, int feature)
+    {
+        return (segment << 12) | (feature & 0xFFF);
+    }
+
+    /**
+     * Finds the smallest axis aligned box containing every segment
+     * @param bounds box to store the result in
+     */
+    @Override
+    void findBounds(AABB bounds)
+    {
+        updatePoints();
+        tree.findBounds(bounds);
+    }
+
+    /**
+     * Finds the distance of the point furthest from the chain's position
+     * @return the distance of the furthest point
+     */
+    @Override
+    float findMaxRadius()
+    {
+        float greatestRadius = 0;
+        for(int i=0; i<localX.length; i++)
+        {
+            greatestRadius = Math.max(greatestRadius,
+                    (float)Math.sqrt((localX[i] * localX[i]) + (localY[i] * localY[i])));
+        }
+        return greatestRadius;
+    }
+
+    @Override
+    Collision checkCollision(PhysicsCircle circle, float margin)
+    {
+        return checkChainCollision(circle, margin);
+    }
+
+    @Override
+    Collision checkCollision(PhysicsPolygon polygon, float margin)
+    {
+        return checkChainCollision(polygon, margin);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsCircle circle)
+    {
+        return isTouchingChain(circle);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsPolygon polygon)
+    {
+        return isTouchingChain(polygon);
+    }
+
+    /**
+     * Changes the friction and bounciness of the chain. The chain stays immovable whatever the material's density
+     * @param material
+     */
+    @Override
+    public void setMaterial(Material material)
+    {
+        this.material = material;
+    }
+
+    public int getNumPoints(){ return localX.length; }
+    public int getNumSegments(){ return numSegments; }
+    public boolean isLoop(){ return loop; }
+    public float getPointX(int i){ updatePoints(); return x[i]; }
+    public float getPointY(int i){ updatePoints(); return y[i]; }
+
+    /**
+     * How a collision normal found for a segment should be treated
+     */
+    private enum NormalUse {
+        KEEP, // The normal belongs to the segment
+        SEGMENT, // The normal would push into a neighbouring segment, so use the segment's own normal instead
+        NEIGHBOUR // The normal belongs to a neighbouring segment, which will find the collision itself
+    }
+
+    /**
+     * A single segment of the chain as a convex shape, for colliding with shapes that only have a support function
+     */
+    private class SegmentShape implements ConvexShape {
+        int segment;
+
+        @Override
+        public void findSupportPoint(float directionX, float directionY, float[] point)
+        {
+            int next = nextPoint(segment);
+            boolean useEnd = (directionX * (x[next] - x[segment])) + (directionY * (y[next] - y[segment])) > 0;
+            point[0] = useEnd ? x[next] : x[segment];
+            point[1] = useEnd ? y[next] : y[segment];
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package physicsEngine;
 
 import physicsEngine.callback.Callback;
+import physicsEngine.math.AABB;
 import physicsEngine.math.Formulas;
 import physicsEngine.math.Vec2;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,16 +23,14 @@ public abstract class PhysicsObject{
     private static long idCounter = 0;
 
     private String id;
+    int idNumber; // Numeric part of the ID, used to build keys for pairs of objects
 
     Vec2 position; // Position of the object
     Vec2 totalForce; // Sum of all forces currently acting on the object
 
-    Vec2 totalImpulse; // Stores the total impulse during one collision calculation. Used with numImpulse to distrbute
-                       // multiple impulses evenly
-    float totalImpulseTorque;
-    int numImpulse;    // Number of impulses on this object in a collision calculation
-
     float orientation; // current angle (in radians)
+    float cos = 1; // Cosine and sine of the current angle, updated whenever the angle changes so that points can be
+    float sin = 0; // rotated without any trigonometry
     float angularVelocity;
     float torque;
 
@@ -46,8 +44,12 @@ public abstract class PhysicsObject{
     float inertia;
     float invertedIntertia;
     float broadPhaseRadius = 0; // Radius at the furthest point from the shape's center
+    boolean inStaticIndex = false; // True if the world is storing this object with the other immovable objects
 
-    private List<PhysicsObject> ignoreList = new ArrayList<>();
+    int collisionCategory = 1; // Bits for the categories this object belongs to
+    int collisionMask = 0xFFFFFFFF; // Bits for the categories this object can collide with
+    private int numIgnored = 0; // Number of objects this object is ignoring through ignore()
+    private int numIgnoredBy = 0; // Number of objects ignoring this object through ignore()
 
     private Callback<PhysicsObject> collisionCallback = null;
 
@@ -58,7 +60,8 @@ public abstract class PhysicsObject{
 
     protected PhysicsObject(WorldSettings worldSettings, Vec2 p, Material material, float volume)
     {
-        this.id = generateID();
+        this.idNumber = generateIDNumber();
+        this.id = "Obj-" + String.valueOf(idNumber);
         this.worldSettings = worldSettings;
         position = p;
         this.angularVelocity = 0;
@@ -69,17 +72,14 @@ public abstract class PhysicsObject{
         this.material = material;
         this.volume = volume;
         this.totalForce = new Vec2(0, 0);
-        this.totalImpulse = new Vec2(0,0);
-        this.totalImpulseTorque = 0;
-        this.numImpulse = 0;
 
         setMass(volume * material.getDensity());
         setInertia(mass * volume);
     }
 
-    private synchronized String generateID()
+    private synchronized int generateIDNumber()
     {
-        return "Obj-" + String.valueOf(idCounter++);
+        return (int)(idCounter++);
     }
 
     /**
@@ -106,9 +106,19 @@ public abstract class PhysicsObject{
         if(dr > MIN_ROTATION || dr < -MIN_ROTATION) {
             orientation += dr;
             orientation = Formulas.normalizeAngle(orientation);
+            updateRotation();
         }
     }
 
+    /**
+     * Recalculates the cosine and sine of the object's angle. Must be called whenever the angle changes
+     */
+    void updateRotation()
+    {
+        cos = (float)Math.cos(orientation);
+        sin = (float)Math.sin(orientation);
+    }
+
     /**
      * Applies a force of "gravity", which is just a weight independent continual force in a given direction.
      * The strength and direction of gravity is set by the world settings
@@ -136,32 +146,18 @@ public abstract class PhysicsObject{
     }
 
     /**
-     * Stores an impulse to be added to total forces at the end of a collision calculation loop
+     * Applies an impulse from a collision, immediately changing the object's velocities
      * NOTE this method does not scale the forces by the force scale factor since they happen every frame
-     * @param impulse the impulse vector to accumulate
-     */
-    void applyImpulse(Vec2 impulse, Vec2 contactVec)
-    {
-        if(impulse.x != 0 || impulse.y != 0) {
-            totalImpulse.add(impulse);
-            totalImpulseTorque += Formulas.cross(contactVec, impulse);
-            numImpulse++;
-        }
-    }
-
-    /**
-     * Turns a collection of impulses into a resulting force
+     * @param impulseX x component of the impulse
+     * @param impulseY y component of the impulse
+     * @param contactX x component of the vector from the object's center to the point the impulse is applied at
+     * @param contactY y component of the vector from the object's center to the point the impulse is applied at
      */
-    void applyTotalImpulse()
+    void applyImpulse(float impulseX, float impulseY, float contactX, float contactY)
     {
-        if(numImpulse <= 0 ) return; // if no impulses felt, do nothing
-        // Apply the impulse divided by the number of impulses felt
-        applyForce(totalImpulse.x / (float)numImpulse, totalImpulse.y / (float)numImpulse);
-        applyTorque(totalImpulseTorque / numImpulse);
-        // Zero out the total impulse and impulse count
-        totalImpulse.zero();
-        totalImpulseTorque = 0;
-        numImpulse = 0;
+        xvelocity += invertedMass * impulseX;
+        yvelocity += invertedMass * impulseY;
+        angularVelocity += invertedIntertia * ((contactX * impulseY) - (contactY * impulseX));
     }
 
     /**
@@ -173,6 +169,35 @@ public abstract class PhysicsObject{
         // Dont calculate collision between two immovable objects
         if(invertedMass == 0 && object.invertedMass == 0) return null;
 
+        // Compound bodies check each of their parts near the other object themselves
+        if(shapeType == ShapeType.COMPOUND) return ((PhysicsCompound)this).checkCompoundCollision(object, margin);
+        if(object.shapeType == ShapeType.COMPOUND)
+        {
+            return ((PhysicsCompound)object).checkCompoundCollision(this, margin);
+        }
+
+        // Tile maps check the outlines of the tiles under the other object themselves
+        if(object.shapeType == ShapeType.TILE_MAP)
+        {
+            return ((PhysicsTileMap)object).checkTileMapCollision(this, margin);
+        }
+        if(shapeType == ShapeType.TILE_MAP) return ((PhysicsTileMap)this).checkTileMapCollision(object, margin);
+
+        // Edge chains check each of their segments near the other object themselves
+        if(object.shapeType == ShapeType.CHAIN) return ((PhysicsEdgeChain)object).checkChainCollision(this, margin);
+        if(shapeType == ShapeType.CHAIN) return ((PhysicsEdgeChain)this).checkChainCollision(object, margin);
+
+        // Shapes without a specialised check against each other are collided through their support functions
+        if(shapeType == ShapeType.CONVEX || object.shapeType == ShapeType.CONVEX)
+        {
+            if(!(this instanceof ConvexShape) || !(object instanceof ConvexShape))
+            {
+                System.err.println("CONVEX OBJECT TYPE without a support function in check collision.");
+                return null;
+            }
+            return worldSettings.getConvexCollider().checkCollision(this, object, margin);
+        }
+
         // Pass to the sub-class's collision check
         switch (object.shapeType)
         {
@@ -186,6 +211,16 @@ public abstract class PhysicsObject{
         }
     }
 
+    /**
+     * Finds the smallest axis aligned box containing the object
+     * @param bounds box to store the result in
+     */
+    void findBounds(AABB bounds)
+    {
+        bounds.set(position.x - broadPhaseRadius, position.y - broadPhaseRadius,
+                position.x + broadPhaseRadius, position.y + broadPhaseRadius);
+    }
+
     // Accessible to users ---------------------------------------------------------------------------------------------
 
     /**
@@ -236,6 +271,24 @@ public abstract class PhysicsObject{
      */
     public boolean isTouching(PhysicsObject object)
     {
+        if(shapeType == ShapeType.COMPOUND) return ((PhysicsCompound)this).isTouchingCompound(object);
+        if(object.shapeType == ShapeType.COMPOUND) return ((PhysicsCompound)object).isTouchingCompound(this);
+        if(object.shapeType == ShapeType.TILE_MAP) return ((PhysicsTileMap)object).isTouchingTileMap(this);
+        if(shapeType == ShapeType.TILE_MAP) return ((PhysicsTileMap)this).isTouchingTileMap(object);
+        if(object.shapeType == ShapeType.CHAIN) return ((PhysicsEdgeChain)object).isTouchingChain(this);
+        if(shapeType == ShapeType.CHAIN) return ((PhysicsEdgeChain)this).isTouchingChain(object);
+
+        // Shapes without a specialised check against each other are checked through their support functions
+        if(shapeType == ShapeType.CONVEX || object.shapeType == ShapeType.CONVEX)
+        {
+            if(!(this instanceof ConvexShape) || !(object instanceof ConvexShape))
+            {
+                System.err.println("CONVEX OBJECT TYPE without a support function in isTouching.");
+                return false;
+            }
+            return worldSettings.getConvexCollider().isTouching(this, object, TOUCHING_AMOUNT);
+        }
+
         // Pass to appropriate sub class's isTouching method
         switch (object.shapeType)
         {
@@ -255,8 +308,10 @@ public abstract class PhysicsObject{
      */
     public void ignore(PhysicsObject object)
     {
-        if(!ignoreList.contains(object)) {
-            ignoreList.add(object);
+        if(worldSettings.getIgnoredPairs().add(idNumber, object.idNumber))
+        {
+            numIgnored++;
+            object.numIgnoredBy++;
         }
     }
 
@@ -266,7 +321,41 @@ public abstract class PhysicsObject{
      */
     public void removeIgnore(PhysicsObject object)
     {
-        ignoreList.remove(object);
+        if(worldSettings.getIgnoredPairs().remove(idNumber, object.idNumber))
+        {
+            numIgnored--;
+            object.numIgnoredBy--;
+        }
+    }
+
+    /**
+     * Removes every ignore this object is part of, either as the one ignoring or the one being ignored. Used when the
+     * object leaves the world, so the shared set of ignored pairs does not keep growing
+     * @param objects the other objects in the world
+     */
+    void clearIgnores(List<PhysicsObject> objects)
+    {
+        if(numIgnored == 0 && numIgnoredBy == 0) return;
+
+        for(PhysicsObject object: objects)
+        {
+            if(numIgnored > 0)
+            {
+                removeIgnore(object);
+            }
+            if(numIgnoredBy > 0)
+            {
+                object.removeIgnore(this);
+            }
+        }
+
+        // Anything left was ignoring or ignored by an object no longer in the world
+        if(numIgnored > 0 || numIgnoredBy > 0)
+        {
+            worldSettings.getIgnoredPairs().removeAll(idNumber);
+            numIgnored = 0;
+            numIgnoredBy = 0;
+        }
     }
 
     /**
@@ -276,7 +365,18 @@ public abstract class PhysicsObject{
      */
     boolean isIgnoring(PhysicsObject object)
     {
-        return ignoreList.contains(object);
+        // Most objects ignore nothing, so skip the lookup for them
+        return numIgnored > 0 && worldSettings.getIgnoredPairs().contains(idNumber, object.idNumber);
+    }
+
+    /**
+     * Returns true if the collision categories of the two objects allow them to collide
+     * @param object
+     * @return true if each object's category is in the other's mask
+     */
+    boolean canCollideWith(PhysicsObject object)
+    {
+        return (collisionCategory & object.collisionMask) != 0 && (object.collisionCategory & collisionMask) != 0;
     }
 
     void runCollisionCallback(PhysicsObject object)
@@ -298,7 +398,13 @@ public abstract class PhysicsObject{
         this.material = material;
         this.invertedMass = MASS_SCALING_FACTOR / (material.getDensity() * volume);
     }
-    public void setOrientation(float o){ this.orientation = o; }
+    public void setOrientation(float o)
+    {
+        this.orientation = o;
+        updateRotation();
+    }
+    public void setCollisionCategory(int category){ this.collisionCategory = category; }
+    public void setCollisionMask(int mask){ this.collisionMask = mask; }
     public void setCollisionCallback(Callback<PhysicsObject> callback)
     {
         this.collisionCallback = callback;
@@ -311,6 +417,8 @@ public abstract class PhysicsObject{
     public float getAngularVelocity() { return angularVelocity; }
     public float getOrientation() { return orientation; }
     public float getMass() { return mass; }
+    public int getCollisionCategory() { return collisionCategory; }
+    public int getCollisionMask() { return collisionMask; }
     public float getVelocity()
     {
         float x2 = xvelocity*xvelocity;
@@ -318,6 +426,7 @@ public abstract class PhysicsObject{
         return (float)Math.sqrt(x2 + y2);
     }
 
+    boolean isStatic(){ return invertedMass == 0; }
     float getRestitution(){ return material.getRestitution(); }
     float getInvertedMass(){ return invertedMass; }
     float getInvertedInertia(){ return  invertedIntertia; }
@@ -358,6 +467,10 @@ public abstract class PhysicsObject{
     protected enum ShapeType{
         POLYGON,
         CIRCLE,
+        CONVEX, // Any other convex shape, collided through its support function
+        CHAIN, // Connected segments that collide on one side only, collided by the chain itself
+        COMPOUND, // Several shapes joined into one body, collided by each of its parts
+        TILE_MAP, // A grid of solid tiles, collided by the outlines of the tiles near the other object
         INVALID
     }
 
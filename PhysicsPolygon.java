@@ -4,9 +4,13 @@ import physicsEngine.math.*;
 import javafx.scene.paint.Color;
 
 /**
- * Class for calculating collisions for a polygon (Must be completely convex to function properly)
+ * Class for calculating collisions for a polygon (Must be completely convex to function properly, concave polygons are
+ * split into convex pieces by PhysicsWorld.addConcavePolygon())
  */
-class PhysicsPolygon extends PhysicsObject{
+class PhysicsPolygon extends PhysicsObject implements ConvexShape {
+
+    private final static float REFERENCE_FACE_BIAS = 0.05f; // How much less the other polygon's face must penetrate by
+                                                            // to be used as the reference face instead of this one's
 
     // FOR DEBUG
     private static final boolean SHOW_FACES = false;
@@ -14,6 +18,8 @@ class PhysicsPolygon extends PhysicsObject{
     private static final boolean SHOW_INTERSECTION_POINTS = false;
 
     Polygon polygon; // class containing the location of all points of the polygon
+    private SeparatingAxisResult axisResult = new SeparatingAxisResult(); // Reused for each separating axis check
+    private CircleResult circleResult = new CircleResult(); // Reused for each circle check
 
     // CONSTRUCTORS ----------------------------------------------------------------------------------------------------
     PhysicsPolygon(WorldSettings worldSettings, Vec2 p, Polygon polygon)
@@ -50,35 +56,37 @@ class PhysicsPolygon extends PhysicsObject{
     @Override
     Collision checkCollision(PhysicsPolygon polygon, float margin)
     {
-        // Check for collisions from each polygon's perspective
-        SeparatingAxisResult result1 = new SeparatingAxisResult();
-        Collision c1 = findAxisOfLeastSeperation(polygon, result1);
-        if(c1.penetration + margin < 0) return null; // Seperating axis found, no collision
+        // Check for collisions from each polygon's perspective. Each polygon stores the result of its own check
+        SeparatingAxisResult result1 = axisResult;
+        float penetration1 = -findAxisOfLeastSeperation(polygon, result1);
+        if(penetration1 + margin < 0) return null; // Seperating axis found, no collision
 
-        SeparatingAxisResult result2 = new SeparatingAxisResult();
-        Collision c2 = polygon.findAxisOfLeastSeperation(this, result2);
-        if(c2.penetration + margin < 0) return null; // Seperating axis found, no collision
+        SeparatingAxisResult result2 = polygon.axisResult;
+        float penetration2 = -polygon.findAxisOfLeastSeperation(this, result2);
+        if(penetration2 + margin < 0) return null; // Seperating axis found, no collision
 
 
-        // Take the collision with the least penetration, if it was from the box's perspective, flip perspective
-        if(Formulas.BiasedGreaterThan(c1.penetration, c2.penetration, 0.05f))
+        // Take the collision with the least penetration, if it was from the box's perspective, flip perspective. Nearly
+        // equal penetrations keep this polygon's face, so resting objects keep the same contact points between updates
+        if(penetration1 > penetration2 + REFERENCE_FACE_BIAS)
         {
             // Face 1 = reference face??
             // Face 2 = incident face??
-            Face incidentFace = findIncidentFace(this, result2);
-            findContactPoints(c2, result2.referenceFace, incidentFace);
+            Collision c2 = new Collision(polygon, this, new Vec2(result2.normalX, result2.normalY), penetration2);
+            findIncidentFace(this, result2);
+            findContactPoints(c2, result2);
 
             // Use face normal
             c2.flipPerspective();
             return c2;
-            //return new Collision(this, polygon, c2.normal.mult(-1.0f), c2.penetration);
         }
         else
         {
             // Face 2 = reference face??
             // Face 1 = incident face??
-            Face incidentFace = findIncidentFace(polygon, result1);
-            findContactPoints(c1, result1.referenceFace, incidentFace);
+            Collision c1 = new Collision(this, polygon, new Vec2(result1.normalX, result1.normalY), penetration1);
+            findIncidentFace(polygon, result1);
+            findContactPoints(c1, result1);
             return c1;
         }
     }
@@ -90,118 +98,13 @@ class PhysicsPolygon extends PhysicsObject{
     @Override
     Collision checkCollision(PhysicsCircle circle, float margin)
     {
-        float bestDist = -Float.MAX_VALUE; // closest distance between the circle center and a polygon face
-        Vec2 bestNormal = null; // the normal of the polygon face at the best distance
-        Face bestFace = null; // the face closest to the circle's center
-        Vec2 bestFaceVec = null;
-        Face face;
-        Vec2 faceVec; // stores the face currently being checked
-
-        // Move polygon A to be in the circle's coordinate space, rotated
-        float relativeX = position.x - circle.getX();
-        float relativeY = position.y - circle.getY();
-        polygon.translateAndRotate(relativeX, relativeY, orientation ,true);
-
-        // Now we will use the points from polygon A in polygon B's coordinate space
-        Point[] polyPoints = polygon.getCalculatedPoints();
-
-        // Loop through each face and try to see if a seperating line can be drawn
-        for(int i=0; i<polyPoints.length; i++)
-        {
-            // Create a face from the current point and next (and loop back around for last point)
-            Point point1 = polyPoints[i];
-            Point point2 = (i == polyPoints.length-1? polyPoints[0]: polyPoints[i+1]);
-            face = new Face(point1, point2);
-
-            faceVec = face.getVec().normalize();
-
-            // Get the normal vector of the face
-            Vec2 normal = faceVec.tangent();
-
-            // Check that the normal faces away from the center of the polygon, if not, flip the normal
-            Vec2 pointVecFromCenter = new Vec2(polyPoints[i].getX() - relativeX, polyPoints[i].getY() - relativeY);
-            if(Formulas.dotProduct(normal, pointVecFromCenter) < 0)
-            {
-                normal.mult(-1.0f);
-            }
-
-            // Get the point from polygon A that is closest to polygon B along the direction of the face's normal
-            // (just use a point from the current face)
-            Point aSupport = face.getP1();
-
-            // These two points are in B's coordinate space, so each point is also the vector from B's center
-
-            // Project each point vector along the face normal. This essentially translates to the "distance" in the
-            // direction of the face normal. Therefore, if A's point has a smaller distance from B's center than B, we
-            // know that there is an overlap (quantified by the difference, positive difference is a positive overlap)
-            float sepDistance = Formulas.dotProduct(normal, new Vec2(-aSupport.getX(), -aSupport.getY()));
-
-            // Keep the best overlap and the normal along which it occurred
-            if(sepDistance > bestDist)
-            {
-                bestDist = sepDistance;
-                bestNormal = normal;
-                bestFace = face;
-                bestFaceVec = faceVec;
-            }
-        }
-
-        // If the center of the circle has crossed through the face, we know collision has occurred against the face
-        if(bestDist < 0)
-        {
-            Collision c = new Collision(this, circle, bestNormal, -bestDist);
-            c.addContactPoint(new Point(-bestNormal.x * circle.getRadius() + circle.position.x, -bestNormal.y * circle.getRadius() + circle.position.y));
-            return c;
-        }
-
-        // Project the circle's center and each of the two points along the direction of the face. Then subtract each
-        // point's projection from the circle's to see if the circle is before or past each point in the face's direction
-        // Project(circlePos - pointPos) is the same as Project(-pointPos) because the circle is the origin
-        float proj1 = Formulas.dotProduct(bestFaceVec, Formulas.vecMult(bestFace.getP1().getVec(), -1.0f));
-        float proj2 = Formulas.dotProduct(bestFaceVec, Formulas.vecMult(bestFace.getP2().getVec(), -1.0f));
+        if(!findClosestFeature(circle, margin, circleResult)) return null;
 
-        float radiusSquared = circle.getRadius() * circle.getRadius() + margin;
-
-        // Projection of point 1 is negative, therefore point 1 is the closest to the circle
-        if(proj1 < 0)
-        {
-            // Check for collision with point 1
-            float distSquared = (bestFace.getP1().getX() * bestFace.getP1().getX()) + (bestFace.getP1().getY() * bestFace.getP1().getY());
-            if(distSquared < radiusSquared){
-                // COLLISION
-                float penetration = (float)(circle.getRadius() - Math.sqrt(distSquared));
-                Vec2 normal = bestFace.getP1().getVec().normalize();
-                Collision c = new Collision(circle, this, normal, penetration);
-                c.addContactPoint(new Point(bestFace.getP1().getX() + circle.position.x, bestFace.getP1().getY() + circle.position.y));
-                return c;
-            }
-        }
-        // Projection of point 1 is positive but point 2 is negative, circle is between both points and is closest to the face
-        else if(proj1 > 0 && proj2 < 0)
-        {
-            // Check for collision with face
-            float dist = Formulas.dotProduct(bestNormal.mult(-1.0f), bestFace.getP1().getVec());
-            if(dist < circle.getRadius() + margin)
-            {
-                Collision c = new Collision(circle, this, bestNormal, circle.getRadius() - dist);
-                c.addContactPoint(new Point(bestNormal.x * circle.getRadius() + circle.position.x, bestNormal.y * circle.getRadius() + circle.position.y));
-                return c;
-            }
-        }
-        else if(proj2 > 0)
-        {
-            // Check for collision with point 2
-            float distSquared = (bestFace.getP2().getX() * bestFace.getP2().getX()) + (bestFace.getP2().getY() * bestFace.getP2().getY());
-            if(distSquared < radiusSquared){
-                // COLLISION
-                float penetration = (float)(circle.getRadius() - Math.sqrt(distSquared));
-                Vec2 normal = bestFace.getP2().getVec().normalize();
-                Collision c = new Collision(circle, this, normal, penetration);
-                c.addContactPoint(new Point(bestFace.getP2().getX() + circle.position.x, bestFace.getP2().getY() + circle.position.y));
-                return c;
-            }
-        }
-        return null;
+        // The circle is kept as the first object, as it always has been for circles touching a face or a corner
+        Collision c = new Collision(circle, this, new Vec2(-circleResult.normalX, -circleResult.normalY),
+                circleResult.penetration);
+        c.addContactPoint(new Point(circleResult.contactX, circleResult.contactY));
+        return c;
     }
 
     /**
@@ -213,8 +116,8 @@ class PhysicsPolygon extends PhysicsObject{
     public boolean isTouching(PhysicsPolygon polygon)
     {
         // If an axis of seperation cannot be drawn between the two in either direction, they are touching
-        return findAxisOfLeastSeperation(polygon).penetration + TOUCHING_AMOUNT > 0 &&
-                polygon.findAxisOfLeastSeperation(this).penetration + TOUCHING_AMOUNT > 0;
+        return -findAxisOfLeastSeperation(polygon, axisResult) + TOUCHING_AMOUNT > 0 &&
+                -polygon.findAxisOfLeastSeperation(this, polygon.axisResult) + TOUCHING_AMOUNT > 0;
     }
 
     /**
@@ -225,183 +128,141 @@ class PhysicsPolygon extends PhysicsObject{
     @Override
     public boolean isTouching(PhysicsCircle circle)
     {
-        // See checkCollision(PhysicsCircle) for details on these variables
-        float bestDist = -Float.MAX_VALUE;
-        Vec2 bestNormal = null;
-        Face bestFace = null;
-        Vec2 bestFaceVec = null;
-        Face face;
-        Vec2 faceVec;
-
-        // Move polygon A to be in the circle's coordinate space, rotated
-        float relativeX = position.x - circle.getX();
-        float relativeY = position.y - circle.getY();
-        polygon.translateAndRotate(relativeX, relativeY, orientation ,true);
-
-        // Now we will use the points from polygon A in polygon B's coordinate space
-        Point[] polyPoints = polygon.getCalculatedPoints();
+        return findClosestFeature(circle, TOUCHING_AMOUNT, null);
+    }
 
-        // Loop through each face and try to see if a seperating line can be drawn
-        for(int i=0; i<polyPoints.length; i++)
+    /**
+     * Finds the face or corner of the polygon closest to a circle's center, and from it whether the two are colliding.
+     * The circle's center is moved into the polygon's own unrotated coordinates, so the polygon's points never need to
+     * be moved, and a single pass over the faces finds both the closest face and whether the center is inside
+     * @param circle the circle to check against
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @param result structure to store the collision normal (from the polygon to the circle), penetration and contact
+     *               point in, in world coordinates, or null if only whether they collide is needed
+     * @return true if the circle is overlapping the polygon or is no further than the margin from it
+     */
+    private boolean findClosestFeature(PhysicsCircle circle, float margin, CircleResult result)
+    {
+        float radius = circle.getRadius();
+
+        // Move the circle's center into the polygon's coordinates by undoing the polygon's translation and rotation
+        float dx = circle.position.x - position.x;
+        float dy = circle.position.y - position.y;
+        float centerX = (dx * cos) + (dy * sin);
+        float centerY = (dy * cos) - (dx * sin);
+
+        // Find the face the center is furthest in front of. If it is in front of any face by more than the radius, the
+        // circle is entirely outside the polygon
+        int numPoints = polygon.getNumPoints();
+        float bestSeparation = -Float.MAX_VALUE;
+        int bestFace = 0;
+        for(int i=0; i<numPoints; i++)
         {
-            // Create a face from the current point and next (and loop back around for last point)
-            Point point1 = polyPoints[i];
-            Point point2 = (i == polyPoints.length-1? polyPoints[0]: polyPoints[i+1]);
-            face = new Face(point1, point2);
-
-            faceVec = face.getVec().normalize();
-
-            // Get the normal vector of the face
-            Vec2 normal = faceVec.tangent();
-
-            // Check that the normal faces away from the center of the polygon, if not, flip the normal
-            Vec2 pointVecFromCenter = new Vec2(polyPoints[i].getX() - relativeX, polyPoints[i].getY() - relativeY);
-            if(Formulas.dotProduct(normal, pointVecFromCenter) < 0)
+            float separation = (polygon.getOriginNormalX(i) * (centerX - polygon.getOriginX(i))) +
+                    (polygon.getOriginNormalY(i) * (centerY - polygon.getOriginY(i)));
+            if(separation > radius + margin) return false;
+            if(separation > bestSeparation)
             {
-                normal.mult(-1.0f);
-            }
-
-            // Get the point from polygon A that is closest to polygon B along the direction of the face's normal
-            // (just use a point from the current face)
-            Point aSupport = face.getP1();
-
-            // These two points are in B's coordinate space, so each point is also the vector from B's center
-
-            // Project each point vector along the face normal. This essentially translates to the "distance" in the
-            // direction of the face normal. Therefore, if A's point has a smaller distance from B's center than B, we
-            // know that there is an overlap (quantified by the difference, positive difference is a positive overlap)
-            float sepDistance = Formulas.dotProduct(normal, new Vec2(-aSupport.getX(), -aSupport.getY()));
-
-            // Keep the best overlap and the normal along which it occurred
-            if(sepDistance > bestDist)
-            {
-                bestDist = sepDistance;
-                bestNormal = normal;
-                bestFace = face;
-                bestFaceVec = faceVec;
+                bestSeparation = separation;
+                bestFace = i;
             }
         }
 
-        // If the center of the circle has crossed through the face, we know collision has occurred against the face
-        if(bestDist < 0)
-        {
-            return true;
-        }
-
-        // Project the circle's center and each of the two points along the direction of the face. Then subtract each
-        // point's projection from the circle's to see if the circle is before or past each point in the face's direction
-        // Project(circlePos - pointPos) is the same as Project(-pointPos) because the circle is the origin
-        float proj1 = Formulas.dotProduct(bestFaceVec, Formulas.vecMult(bestFace.getP1().getVec(), -1.0f));
-        float proj2 = Formulas.dotProduct(bestFaceVec, Formulas.vecMult(bestFace.getP2().getVec(), -1.0f));
-
-        float radiusSquared = circle.getRadius() * circle.getRadius() + TOUCHING_AMOUNT;
-
-        // Projection of point 1 is negative, therefore point 1 is the closest to the circle
-        if(proj1 < 0)
+        int next = bestFace == numPoints-1? 0: bestFace+1;
+        float x1 = polygon.getOriginX(bestFace);
+        float y1 = polygon.getOriginY(bestFace);
+        float x2 = polygon.getOriginX(next);
+        float y2 = polygon.getOriginY(next);
+
+        // Find whether the center is beside the face itself or past either of its ends, in which case the closest
+        // feature is that corner. A center inside the polygon is always pushed out through the closest face
+        float localNormalX = polygon.getOriginNormalX(bestFace);
+        float localNormalY = polygon.getOriginNormalY(bestFace);
+        float penetration = radius - bestSeparation;
+        int corner = -1;
+        if(bestSeparation > 0)
         {
-            // Check for collision with point 1
-            float distSquared = (bestFace.getP1().getX() * bestFace.getP1().getX()) + (bestFace.getP1().getY() * bestFace.getP1().getY());
-            if(distSquared < radiusSquared){
-                // COLLISION
-                return true;
+            float past1 = ((centerX - x1) * (x2 - x1)) + ((centerY - y1) * (y2 - y1));
+            float past2 = ((centerX - x2) * (x1 - x2)) + ((centerY - y2) * (y1 - y2));
+            if(past1 <= 0 || past2 <= 0)
+            {
+                corner = past1 <= 0 ? bestFace : next;
+                float toCenterX = centerX - polygon.getOriginX(corner);
+                float toCenterY = centerY - polygon.getOriginY(corner);
+                float distance = (float)Math.sqrt((toCenterX * toCenterX) + (toCenterY * toCenterY));
+                if(distance > radius + margin) return false;
+
+                penetration = radius - distance;
+                if(distance > 0)
+                {
+                    localNormalX = toCenterX / distance;
+                    localNormalY = toCenterY / distance;
+                }
             }
         }
-        // Projection of point 1 is positive but point 2 is negative, circle is between both points and is closest to the face
-        else if(proj1 > 0 && proj2 < 0)
+        if(result == null) return true;
+
+        // Rotate the normal back into world coordinates
+        result.normalX = (localNormalX * cos) - (localNormalY * sin);
+        result.normalY = (localNormalX * sin) + (localNormalY * cos);
+        result.penetration = penetration;
+        if(corner >= 0)
         {
-            // Check for collision with face
-            float dist = Formulas.dotProduct(bestNormal.mult(-1.0f), bestFace.getP1().getVec());
-            if(dist < circle.getRadius() + TOUCHING_AMOUNT)
-            {
-                return true;
-            }
+            // The contact is the corner itself
+            float cornerX = polygon.getOriginX(corner);
+            float cornerY = polygon.getOriginY(corner);
+            result.contactX = position.x + (cornerX * cos) - (cornerY * sin);
+            result.contactY = position.y + (cornerX * sin) + (cornerY * cos);
         }
-        else if(proj2 > 0)
+        else
         {
-            // Check for collision with point 2
-            float distSquared = (bestFace.getP2().getX() * bestFace.getP2().getX()) + (bestFace.getP2().getY() * bestFace.getP2().getY());
-            if(distSquared < radiusSquared){
-                // COLLISION
-                return true;
-
-            }
+            // The contact is the point of the circle deepest past the face
+            result.contactX = circle.position.x - (result.normalX * radius);
+            result.contactY = circle.position.y - (result.normalY * radius);
         }
-
-        return false;
+        return true;
     }
 
     /**
-     * Finds the axis between the two polygons (Does not store a SeparatingAxisResult)
+     * Finds the axis between the two polygons along which they are the least overlapped, using only the polygons'
+     * coordinates so that no objects are created
      * @param b other polygon
-     * @return
-     */
-    public Collision findAxisOfLeastSeperation(PhysicsPolygon b)
-    {
-        return findAxisOfLeastSeperation(b, null);
-    }
-
-    /**
-     * Finds the axis between the two polygons
-     * @param b
-     * @param result class which stores information about the separating axis
-     * @return
+     * @param result structure to store information about the separating axis in
+     * @return the distance the polygons are separated by along the axis, which is negative if they are overlapping
      */
-    public Collision findAxisOfLeastSeperation(PhysicsPolygon b, SeparatingAxisResult result)
+    float findAxisOfLeastSeperation(PhysicsPolygon b, SeparatingAxisResult result)
     {
         float bestDist = -Float.MAX_VALUE;
-        Vec2 bestNormal = null;
-        Face bestFace = null;
-        int incidentPointIndex = -1;
-        Face face;
-        Vec2 faceVec;
-
-        // Move polygon B to origin = its center, and rotate it to its current rotation
-        b.polygon.translateAndRotate(0, 0, b.orientation, true);
-        // Move polygon A to be in B's coordinate space, rotated
-        float relativeX = position.x - b.getX();
-        float relativeY = position.y - b.getY();
-        polygon.translateAndRotate(relativeX, relativeY, orientation ,true);
-
-        // Now we will use the points from polygon A in polygon B's coordinate space
-        Point[] polyPoints = polygon.getCalculatedPoints();
-        Point[] bPoints = b.getPolygon().getCalculatedPoints();
+        int bestFaceIndex = -1;
+
+        // Make sure both polygons' points are at their current positions and rotations. Both are compared in world
+        // coordinates, so neither has to be moved into the other's coordinate space
+        updatePoints();
+        b.updatePoints();
+        Polygon bPolygon = b.getPolygon();
+        int numPoints = polygon.getNumPoints();
 
         // Loop through each face and try to see if a seperating line can be drawn
-        for(int i=0; i<polyPoints.length; i++)
+        for(int i=0; i<numPoints; i++)
         {
-            // Create a face from the current point and next (and loop back around for last point)
-            Point point1 = polyPoints[i];
-            Point point2 = i == polyPoints.length-1? polyPoints[0]: polyPoints[i+1];
-            face = new Face(point1, point2);
-
-            faceVec = face.getVec().normalize();
-
-            // Get the normal vector of the face
-            Vec2 normal = faceVec.tangent();
-
-            // Check that the normal faces away from the center of the polygon, if not, flip the normal
-            Vec2 pointVecFromCenter = new Vec2(polyPoints[i].getX() - relativeX, polyPoints[i].getY() - relativeY);
-            if(Formulas.dotProduct(normal, pointVecFromCenter) < 0)
-            {
-                normal.mult(-1.0f);
-            }
+            // Get the first point of the face from the current point to the next, and the face's outward normal
+            float x1 = polygon.getCalculatedX(i);
+            float y1 = polygon.getCalculatedY(i);
+            float normalX = polygon.getNormalX(i);
+            float normalY = polygon.getNormalY(i);
 
             // Get the point from polygon B that is closest to polygon A along the direction of the face's normal
             // (Get the support point in the opposite direction of the face normal)
-            int bSupportIndex = b.getPolygon().getSupportPointIndex(Formulas.vecMult(normal, -1.0f));
-            Point bSupport = bPoints[bSupportIndex];
-            //Point bSupport = b.getPolygon().getSupportPoint(Formulas.vecMult(normal, -1.0f));
-
-            // Get the point from polygon A that is closest to polygon B along the direction of the face's normal
-            // (just use a point from the current face)
-            Point aSupport = face.getP1();
+            int bSupportIndex = bPolygon.getSupportPointIndex(-normalX, -normalY);
 
-            // These two points are in B's coordinate space, so each point is also the vector from B's center
+            // The point from polygon A that is closest to polygon B along the direction of the face's normal is just
+            // the first point of the current face
 
-            // Project each point vector along the face normal. This essentially translates to the "distance" in the
-            // direction of the face normal. Therefore, if A's point has a smaller distance from B's center than B, we
-            // know that there is an overlap (quantified by the difference, negative difference is a positive overlap)
-            float sepDistance = Formulas.dotProduct(normal, new Vec2(bSupport.getX() - aSupport.getX(), bSupport.getY() - aSupport.getY()));
+            // Project the vector between the two points along the face normal. This essentially translates to the
+            // "distance" between them in the direction of the face normal. Therefore, if B's point is behind A's face,
+            // we know that there is an overlap (quantified by the difference, negative difference is a positive overlap)
+            float sepDistance = (normalX * (bPolygon.getCalculatedX(bSupportIndex) - x1)) +
+                    (normalY * (bPolygon.getCalculatedY(bSupportIndex) - y1));
 
             // sepDistance will likely be negative for all but one side. This positive value for one side indicates that
             // a separating axis can be drawn for this one side. Therefore, if no positive value is found for any side,
@@ -410,182 +271,278 @@ class PhysicsPolygon extends PhysicsObject{
             if(sepDistance > bestDist)
             {
                 bestDist = sepDistance;
-                bestNormal = normal;
-                bestFace = face;
-                incidentPointIndex = bSupportIndex;
+                bestFaceIndex = i;
+                result.normalX = normalX;
+                result.normalY = normalY;
+                result.incidentPointIndex = bSupportIndex;
             }
-
-//            System.out.println(bestDist);
         }
 
-        // If a face object was passed in, store the best face points in it
-        if(result != null && bestFace != null)
-        {
-            Point p1 = new Point(bestFace.getP1().getX() + b.getX(), bestFace.getP1().getY() + b.getY());
-            Point p2 = new Point(bestFace.getP2().getX() + b.getX(), bestFace.getP2().getY() + b.getY());
-            Face referenceFace = new Face(p1, p2);
+        result.separation = bestDist;
 
-            result.referenceFace = referenceFace;
-            result.normal = bestNormal;
-            result.incidentPointIndex = incidentPointIndex;
+        // Store the best face's points
+        if(bestFaceIndex >= 0)
+        {
+            int next = bestFaceIndex == numPoints-1? 0: bestFaceIndex+1;
+            result.referenceIndex = bestFaceIndex;
+            result.referenceX1 = polygon.getCalculatedX(bestFaceIndex);
+            result.referenceY1 = polygon.getCalculatedY(bestFaceIndex);
+            result.referenceX2 = polygon.getCalculatedX(next);
+            result.referenceY2 = polygon.getCalculatedY(next);
         }
-//        System.out.println(bestDist);
-        // For now, store this in a collision object
-        Collision collision = new Collision(this, b, bestNormal, -bestDist);
 
-        return collision;
+        return bestDist;
+    }
+
+    /**
+     * Checks whether a single face of this polygon separates it from another polygon
+     * @param faceIndex index of the face to check
+     * @param b the other polygon
+     * @return true if all of the other polygon is in front of the face
+     */
+    boolean isSeparatedBy(int faceIndex, PhysicsPolygon b)
+    {
+        updatePoints();
+        b.updatePoints();
+        Polygon bPolygon = b.getPolygon();
+
+        // Same as a single pass of findAxisOfLeastSeperation()
+        float normalX = polygon.getNormalX(faceIndex);
+        float normalY = polygon.getNormalY(faceIndex);
+        int bSupportIndex = bPolygon.getSupportPointIndex(-normalX, -normalY);
+        float sepDistance = (normalX * (bPolygon.getCalculatedX(bSupportIndex) - polygon.getCalculatedX(faceIndex))) +
+                (normalY * (bPolygon.getCalculatedY(bSupportIndex) - polygon.getCalculatedY(faceIndex)));
+        return sepDistance > 0;
+    }
+
+    /**
+     * @return the index of the face of this polygon that separated it from the other polygon in its last separating
+     *         axis check, or -1 if that check found no separating face
+     */
+    int getSeparatingFace()
+    {
+        return axisResult.separation > 0 ? axisResult.referenceIndex : -1;
     }
 
     /**
      * Takes the result of a separating axis check that found a collision, and finds the face that collided with reference
-     * face
+     * face. The incident face is stored in the result
      * @param b the polygon on which the incident face lies
      * @param axisResult structure holding information already gleaned from the axis check
-     * @return The incident face, the face that crossed the reference face
      */
-    private Face findIncidentFace(PhysicsPolygon b, SeparatingAxisResult axisResult)
+    private void findIncidentFace(PhysicsPolygon b, SeparatingAxisResult axisResult)
     {
         // Make sure the polygon being looked at is in its position in global coordinates
-        b.getPolygon().setTranslation(b.getX(), b.getY());
-        Point[] bPoints = b.getPolygon().getCalculatedPoints();
+        b.updatePoints();
+        Polygon bPolygon = b.getPolygon();
+        int numPoints = bPolygon.getNumPoints();
 
         // Get the point that we know has crossed the reference face
-        Point incidentPoint = bPoints[axisResult.incidentPointIndex];
+        int incidentIndex = axisResult.incidentPointIndex;
+        float incidentX = bPolygon.getCalculatedX(incidentIndex);
+        float incidentY = bPolygon.getCalculatedY(incidentIndex);
 
         // Get the index of the other two points that may be the other point in the incident face
-        int beforeIndex = axisResult.incidentPointIndex == 0? bPoints.length-1 : axisResult.incidentPointIndex-1;
-        int afterIndex = axisResult.incidentPointIndex == bPoints.length-1? 0 : axisResult.incidentPointIndex+1;
-        // Build two potential faces
-        Face face1 = new Face(bPoints[beforeIndex], incidentPoint);
-        Face face2 = new Face(incidentPoint, bPoints[afterIndex]);
+        int beforeIndex = incidentIndex == 0? numPoints-1 : incidentIndex-1;
+        int afterIndex = incidentIndex == numPoints-1? 0 : incidentIndex+1;
+        float beforeX = bPolygon.getCalculatedX(beforeIndex);
+        float beforeY = bPolygon.getCalculatedY(beforeIndex);
+        float afterX = bPolygon.getCalculatedX(afterIndex);
+        float afterY = bPolygon.getCalculatedY(afterIndex);
 
         // Find the face that is most parallel to the reference face, or most perpendicular to the reference face normal
-        float test1 = Math.abs(Formulas.dotProduct(axisResult.normal, face1.getVec()));
-        float test2 = Math.abs(Formulas.dotProduct(axisResult.normal, face2.getVec()));
+        float test1 = Math.abs((axisResult.normalX * (incidentX - beforeX)) + (axisResult.normalY * (incidentY - beforeY)));
+        float test2 = Math.abs((axisResult.normalX * (afterX - incidentX)) + (axisResult.normalY * (afterY - incidentY)));
 
         if(test1 > test2)
         {
-            return face2;
+            axisResult.setIncidentFace(incidentIndex, incidentX, incidentY, afterIndex, afterX, afterY);
         }
         else
         {
-            return face1;
+            axisResult.setIncidentFace(beforeIndex, beforeX, beforeY, incidentIndex, incidentX, incidentY);
         }
     }
 
     /**
      * Finds any points of contact in the collision given
      * @param collision The collision being calculated
-     * @param referenceFace the face being used as the point of reference
-     * @param incidentFace the face being used as the face that crossed the reference face
+     * @param axisResult structure holding the reference face (the face being used as the point of reference) and the
+     *                   incident face (the face that crossed the reference face)
+     */
+    private void findContactPoints(Collision collision, SeparatingAxisResult axisResult)
+    {
+        float normalX = collision.normal.x;
+        float normalY = collision.normal.y;
+        float refX1 = axisResult.referenceX1;
+        float refY1 = axisResult.referenceY1;
+        float refX2 = axisResult.referenceX2;
+        float refY2 = axisResult.referenceY2;
+        float incX1 = axisResult.incidentX1;
+        float incY1 = axisResult.incidentY1;
+        float incX2 = axisResult.incidentX2;
+        float incY2 = axisResult.incidentY2;
+
+        if(worldSettings.canDebug() && (SHOW_FACES || SHOW_LINES || SHOW_INTERSECTION_POINTS))
+        {
+            drawContactDebug(collision, axisResult);
+        }
+
+        // Clip the incident face against the two side planes of the reference face, which run through each end of the
+        // reference face and face away from it along the face's direction. Each plane is stored as a unit direction
+        // and an offset, and points are measured against it by dot product, so no face direction needs special cases
+        float sideX = refX2 - refX1;
+        float sideY = refY2 - refY1;
+        float sideLength = (float)Math.sqrt((sideX * sideX) + (sideY * sideY));
+        sideX /= sideLength;
+        sideY /= sideLength;
+
+        // Distance of each incident point past the plane at the start of the reference face
+        float offset1 = -((sideX * refX1) + (sideY * refY1));
+        float distance1 = -((sideX * incX1) + (sideY * incY1)) - offset1;
+        float distance2 = -((sideX * incX2) + (sideY * incY2)) - offset1;
+        if(distance1 > 0 && distance2 > 0) return; // Incident face is entirely beside the reference face
+        if(distance1 > 0)
+        {
+            float t = distance1 / (distance1 - distance2);
+            incX1 += t * (incX2 - incX1);
+            incY1 += t * (incY2 - incY1);
+        }
+        else if(distance2 > 0)
+        {
+            float t = distance2 / (distance2 - distance1);
+            incX2 += t * (incX1 - incX2);
+            incY2 += t * (incY1 - incY2);
+        }
+
+        // Distance of each incident point past the plane at the end of the reference face
+        float offset2 = (sideX * refX2) + (sideY * refY2);
+        distance1 = (sideX * incX1) + (sideY * incY1) - offset2;
+        distance2 = (sideX * incX2) + (sideY * incY2) - offset2;
+        if(distance1 > 0 && distance2 > 0) return;
+        if(distance1 > 0)
+        {
+            float t = distance1 / (distance1 - distance2);
+            incX1 += t * (incX2 - incX1);
+            incY1 += t * (incY2 - incY1);
+        }
+        else if(distance2 > 0)
+        {
+            float t = distance2 / (distance2 - distance1);
+            incX2 += t * (incX1 - incX2);
+            incY2 += t * (incY1 - incY2);
+        }
+
+        float contactX1 = incX1, contactY1 = incY1;
+        float contactX2 = incX2, contactY2 = incY2;
+
+        // Add only the contact points on the other side of the reference face. Each is identified by the reference face
+        // and the incident point it came from, so it can be matched to the same contact point in the next update
+        if((normalX * (contactX1 - refX1)) + (normalY * (contactY1 - refY1)) < 0)
+        {
+            collision.addContactPoint(new Point(contactX1, contactY1),
+                    Collision.featureId(axisResult.referenceIndex, axisResult.incidentIndex1));
+        }
+        if((normalX * (contactX2 - refX1)) + (normalY * (contactY2 - refY1)) < 0)
+        {
+            collision.addContactPoint(new Point(contactX2, contactY2),
+                    Collision.featureId(axisResult.referenceIndex, axisResult.incidentIndex2));
+        }
+    }
+
+    /**
+     * Draws the faces and clipping lines used to find contact points
      */
-    private void findContactPoints(Collision collision, Face referenceFace, Face incidentFace)
+    private void drawContactDebug(Collision collision, SeparatingAxisResult axisResult)
     {
-        if(SHOW_FACES && worldSettings.canDebug()) {
+        Face referenceFace = new Face(new Point(axisResult.referenceX1, axisResult.referenceY1),
+                new Point(axisResult.referenceX2, axisResult.referenceY2));
+        Face incidentFace = new Face(new Point(axisResult.incidentX1, axisResult.incidentY1),
+                new Point(axisResult.incidentX2, axisResult.incidentY2));
+
+        if(SHOW_FACES) {
             worldSettings.getDebugger().drawFace(referenceFace, Color.PURPLE);
             worldSettings.getDebugger().drawFace(incidentFace, Color.AQUA);
             worldSettings.getDebugger().drawNormal(referenceFace, collision.normal, Color.GREEN);
         }
 
-        // Form two lines that are perpendicular to the reference face and cross each of the face's edges, to create
-        // 2 clipping lines
         Line clippingLine1;
         Line clippingLine2;
-
-        // If the normal of the face is vertical, create two veritcal lines at each face point
         if(collision.normal.x == 0)
         {
             clippingLine1 = new Line(referenceFace.getP1().getX());
             clippingLine2 = new Line(referenceFace.getP2().getX());
         }
         else {
-            // The slope is obtained from the normal, and then the lines from plugging in the face points into
-            // y = mx + b
             float slope = collision.normal.y / collision.normal.x;
             clippingLine1 = new Line(slope, referenceFace.getP1().getY() - (slope * referenceFace.getP1().getX()));
             clippingLine2 = new Line(slope, referenceFace.getP2().getY() - (slope * referenceFace.getP2().getX()));
         }
+        Line incidentLine = incidentFace.getLine();
 
-        // Find the two points where the incident line crosses each clipping line
-        Line incidentLine = incidentFace.getLine(); // line generated from the incident face
-        Point intersection1 = clippingLine1.findIntersection(incidentLine);
-        Point intersection2 = clippingLine2.findIntersection(incidentLine);
-        if(worldSettings.canDebug() && SHOW_LINES)
+        if(SHOW_LINES)
         {
             worldSettings.getDebugger().drawLine(clippingLine1, Color.GREEN);
             worldSettings.getDebugger().drawLine(clippingLine2, Color.GREEN);
             worldSettings.getDebugger().drawLine(incidentLine, Color.LIGHTGREEN);
         }
 
-        // Maximum of two contact points. The are the points on the face that are in between the two clipping lines, or
-        // if a face point is outside the the two clipping lines replace it with the intersection with the closest clipping
-        // line
-        Point contactPoint1;
-        Point contactPoint2;
-
-        // If if the face crossed neither clipping line, both points are inside and are therefore contact points
-        if(intersection1 == null || intersection2 == null)
+        Point intersection1 = clippingLine1.findIntersection(incidentLine);
+        Point intersection2 = clippingLine2.findIntersection(incidentLine);
+        if(SHOW_INTERSECTION_POINTS && intersection1 != null && intersection2 != null)
         {
-            // Incident face is perpendicular to reference face
-            contactPoint1 = incidentFace.getP1();
-            contactPoint2 = incidentFace.getP2();
+            worldSettings.getDebugger().drawPoint(intersection1, Color.PINK, 8);
+            worldSettings.getDebugger().drawPoint(intersection2, Color.PINK, 8);
         }
-        else {
-            if(worldSettings.canDebug() && SHOW_INTERSECTION_POINTS)
-            {
-                worldSettings.getDebugger().drawPoint(intersection1, Color.PINK, 8);
-                worldSettings.getDebugger().drawPoint(intersection2, Color.PINK, 8);
-            }
-
-            // If the incident line is vertical, use the y axis to determine whether the face points are between the
-            // clipping lines
-            if(incidentLine.isVertical())
-            {
-                // Use whichever intersection has the smaller y as the MIN and the other as the MAX
-                if(intersection1.getY() < intersection2.getY())
-                {
-                    contactPoint1 = incidentFace.getP1().clampPointY(intersection1, intersection2);
-                    contactPoint2 = incidentFace.getP2().clampPointY(intersection1, intersection2);
-                }
-                else
-                {
-                    contactPoint1 = incidentFace.getP1().clampPointY(intersection2, intersection1);
-                    contactPoint2 = incidentFace.getP2().clampPointY(intersection2, intersection1);
-                }
+    }
 
-            }
-            else
-            {
-                // Use whichever intersection has the smaller x as the MIN and the other as the MAX
-                if(intersection1.getX() < intersection2.getX())
-                {
-                    contactPoint1 = incidentFace.getP1().clampPointX(intersection1, intersection2);
-                    contactPoint2 = incidentFace.getP2().clampPointX(intersection1, intersection2);
-                }
-                else
-                {
-                    contactPoint1 = incidentFace.getP1().clampPointX(intersection2, intersection1);
-                    contactPoint2 = incidentFace.getP2().clampPointX(intersection2, intersection1);
-                }
-            }
+    /**
+     * Finds the smallest axis aligned box containing the polygon at its current position and orientation
+     * @param bounds box to store the result in
+     */
+    @Override
+    void findBounds(AABB bounds)
+    {
+        updatePoints();
 
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for(int i=0; i<polygon.getNumPoints(); i++)
+        {
+            float x = polygon.getCalculatedX(i);
+            float y = polygon.getCalculatedY(i);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
         }
+        bounds.set(minX, minY, maxX, maxY);
+    }
 
-        // Add only the contact points on the other side of the reference face
-
-        // Contact point 1 - Reference face point
-        Vec2 vec1 = contactPoint1.getVec().add(referenceFace.getP1().getVec().mult(-1.0f));
-        // Contact point 2 - Reference face point
-        Vec2 vec2 = contactPoint2.getVec().add(referenceFace.getP1().getVec().mult(-1.0f));
+    /**
+     * Finds the corner of the polygon furthest in a given direction
+     * @param directionX x component of the direction
+     * @param directionY y component of the direction
+     * @param point array to store the x and y of the point in
+     */
+    @Override
+    public void findSupportPoint(float directionX, float directionY, float[] point)
+    {
+        updatePoints();
+        int index = polygon.getSupportPointIndex(directionX, directionY);
+        point[0] = polygon.getCalculatedX(index);
+        point[1] = polygon.getCalculatedY(index);
+    }
 
-        if(Formulas.dotProduct(collision.normal, vec1) < 0)
-        {
-            collision.addContactPoint(contactPoint1);
-        }
-        if(Formulas.dotProduct(collision.normal, vec2) < 0)
-        {
-            collision.addContactPoint(contactPoint2);
-        }
+    /**
+     * Moves the polygon's points to the object's current position and rotation. Does nothing if they are already there,
+     * so every check in an update can call this and only the first one after the object moves does any work
+     */
+    void updatePoints()
+    {
+        polygon.translateAndRotate(position.x, position.y, orientation, cos, sin);
     }
 
     /**
@@ -613,13 +570,43 @@ class PhysicsPolygon extends PhysicsObject{
     }
 
     /**
-     * Class for holding information gleaned from a seperating axis check
+     * Class for holding information gleaned from a seperating axis check. Each polygon keeps one to reuse for every
+     * check it makes, so the values are only valid until its next check
      */
-    private class SeparatingAxisResult {
-        Face referenceFace; // face with minimum penetration
-        Vec2 normal; // normal of the reference face
+    class SeparatingAxisResult {
+        float normalX; // normal of the reference face
+        float normalY;
         int incidentPointIndex; // index of the point on the other polygon which crossed the reference face
+        float separation; // distance between the polygons along the reference face's normal, negative if overlapping
+
+        // Face with minimum penetration, in world coordinates
+        int referenceIndex;
+        float referenceX1, referenceY1, referenceX2, referenceY2;
+
+        // Face on the other polygon which crossed the reference face, in world coordinates, along with the index of each
+        // of its points
+        int incidentIndex1, incidentIndex2;
+        float incidentX1, incidentY1, incidentX2, incidentY2;
+
+        void setIncidentFace(int index1, float x1, float y1, int index2, float x2, float y2)
+        {
+            incidentIndex1 = index1;
+            incidentX1 = x1;
+            incidentY1 = y1;
+            incidentIndex2 = index2;
+            incidentX2 = x2;
+            incidentY2 = y2;
+        }
+    }
 
-        public SeparatingAxisResult(){}
+    /**
+     * Class for holding the result of finding the closest feature of a polygon to a circle, in world coordinates
+     */
+    private static class CircleResult {
+        float normalX; // direction from the polygon to the circle
+        float normalY;
+        float penetration;
+        float contactX;
+        float contactY;
     }
 }
@@ -0,0 +1,433 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+import physicsEngine.math.Vec2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class for an immovable grid of solid and empty tiles, such as the level of a platformer. The whole grid is a single
+ * object, with one bit per tile, so a large level adds one object to the world instead of one box per tile.
+ * The edges between solid and empty tiles are traced into closed outlines, with the sides of neighbouring tiles in a
+ * line merged into a single segment, and each outline is collided as an edge chain so objects sliding along a row of
+ * tiles are never caught on the seams between them. Every tile on an outline remembers which outline it is on, so only
+ * the outlines under the tiles an object overlaps are checked, found directly from the object's bounds.
+ * The map is always axis aligned.
+ */
+class PhysicsTileMap extends PhysicsObject {
+
+    // Directions of the sides traced around solid tiles, in the order of a clockwise turn on screen
+    private final static int RIGHT = 0;
+    private final static int DOWN = 1;
+    private final static int LEFT = 2;
+    private final static int UP = 3;
+    private final static int NO_OUTLINE = -1;
+
+    private int columns;
+    private int rows;
+    private float tileSize;
+    private long[] solidTiles; // One bit per tile, set if the tile is solid, row by row
+
+    private PhysicsEdgeChain[] outlines; // A loop along each edge between solid and empty tiles, kept out of the world
+    private int[] tileOutline; // Index of an outline along a side of each tile, or NO_OUTLINE if none are
+    private Map<Integer, int[]> extraOutlines = new HashMap<>(); // Other outlines of tiles with sides on more than one,
+                                                                 // such as a wall one tile thick between two rooms
+    private int[] foundOutlines; // Outlines found under an object, reused for every check
+    private int[] outlineMark; // Check each outline was last found in, so each is only added once
+    private int checkCount = 0;
+
+    private AABB box = new AABB(); // Scratch box
+
+    // CONSTRUCTORS ----------------------------------------------------------------------------------------------------
+    PhysicsTileMap(WorldSettings worldSettings, Vec2 p, float tileSize, int columns, int rows, byte[] tiles,
+                   Material material)
+    {
+        super(worldSettings, p, material, 0);
+        shapeType = ShapeType.TILE_MAP;
+        this.tileSize = tileSize;
+        this.columns = columns;
+        this.rows = rows;
+
+        // Tile maps never move, whatever their material
+        invertedMass = 0;
+        invertedIntertia = 0;
+
+        solidTiles = new long[((columns * rows) + 63) / 64];
+        for(int i=0; i<columns * rows; i++)
+        {
+            if(tiles[i] != 0) solidTiles[i >> 6] |= 1L << (i & 63);
+        }
+
+        tileOutline = new int[columns * rows];
+        Arrays.fill(tileOutline, NO_OUTLINE);
+        traceOutlines();
+        foundOutlines = new int[outlines.length];
+        outlineMark = new int[outlines.length];
+        broadPhaseRadius = findMaxRadius();
+    }
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Traces every edge between solid and empty tiles into closed outlines. Each side of a solid tile facing an empty
+     * tile is followed clockwise on screen around the solid tiles, so each outline's segments face out into the empty
+     * tiles. Sides continuing in the same direction are merged, so only the corners become points of the outline
+     */
+    private void traceOutlines()
+    {
+        List<PhysicsEdgeChain> traced = new ArrayList<>();
+        long[] visited = new long[(((columns + 1) * (rows + 1) * 4) + 63) / 64];
+        List<Integer> cornerColumns = new ArrayList<>();
+        List<Integer> cornerRows = new ArrayList<>();
+
+        for(int row=0; row<=rows; row++)
+        {
+            for(int column=0; column<=columns; column++)
+            {
+                for(int direction=RIGHT; direction<=UP; direction++)
+                {
+                    if(!hasSide(column, row, direction) || isVisited(visited, column, row, direction)) continue;
+
+                    // Follow the sides around until arriving back at the first one
+                    int outline = traced.size();
+                    cornerColumns.clear();
+                    cornerRows.clear();
+                    int c = column;
+                    int r = row;
+                    int d = direction;
+                    int previousDirection = findLastDirection(column, row, direction);
+                    do
+                    {
+                        setVisited(visited, c, r, d);
+                        addTileOutline(sideTile(c, r, d), outline);
+                        if(d != previousDirection)
+                        {
+                            cornerColumns.add(c);
+                            cornerRows.add(r);
+                        }
+                        previousDirection = d;
+                        c += stepColumn(d);
+                        r += stepRow(d);
+                        d = findNextDirection(c, r, d);
+                    }
+                    while(c != column || r != row || d != direction);
+
+                    float[] points = new float[cornerColumns.size() * 2];
+                    for(int i=0; i<cornerColumns.size(); i++)
+                    {
+                        points[2*i] = cornerColumns.get(i) * tileSize;
+                        points[2*i+1] = cornerRows.get(i) * tileSize;
+                    }
+                    traced.add(new PhysicsEdgeChain(worldSettings, new Vec2(position.x, position.y), points, true,
+                            material));
+                }
+            }
+        }
+        outlines = traced.toArray(new PhysicsEdgeChain[traced.size()]);
+    }
+
+    /**
+     * Finds the direction of the side leaving a grid point after arriving along a side. Where two solid tiles touch
+     * only at their corners the turn toward the solid tile is taken, so the two stay on separate outlines
+     */
+    private int findNextDirection(int column, int row, int arrivingDirection)
+    {
+        int turnedRight = (arrivingDirection + 1) % 4;
+        if(hasSide(column, row, turnedRight)) return turnedRight;
+        if(hasSide(column, row, arrivingDirection)) return arrivingDirection;
+        return (arrivingDirection + 3) % 4;
+    }
+
+    /**
+     * Finds the direction of the side arriving at the grid point a side leaves from, by following the outline backwards
+     */
+    private int findLastDirection(int column, int row, int leavingDirection)
+    {
+        // The arriving side leads into the leaving one, so check each direction that would turn into it
+        for(int turn=0; turn<3; turn++)
+        {
+            int arrivingDirection = (leavingDirection + 3 + turn) % 4; // Turned right, straight, then turned left
+            int startColumn = column - stepColumn(arrivingDirection);
+            int startRow = row - stepRow(arrivingDirection);
+            if(hasSide(startColumn, startRow, arrivingDirection) &&
+                    findNextDirection(column, row, arrivingDirection) == leavingDirection)
+            {
+                return arrivingDirection;
+            }
+        }
+        return leavingDirection;
+    }
+
+    /**
+     * Checks if a solid tile's side facing an empty tile leaves a grid point in a direction. Each side is directed so
+     * that the empty tile is on its left, and so its normal faces the empty tile
+     */
+    private boolean hasSide(int column, int row, int direction)
+    {
+        switch (direction)
+        {
+            case RIGHT:
+                return isSolid(column, row) && !isSolid(column, row-1);
+            case DOWN:
+                return isSolid(column-1, row) && !isSolid(column, row);
+            case LEFT:
+                return isSolid(column-1, row-1) && !isSolid(column-1, row);
+            default:
+                return isSolid(column, row-1) && !isSolid(column-1, row-1);
+        }
+    }
+
+    /**
+     * Finds the index of the solid tile a side leaving a grid point belongs to
+     */
+    private int sideTile(int column, int row, int direction)
+    {
+        switch (direction)
+        {
+            case RIGHT:
+                return (row * columns) + column;
+            case DOWN:
+                return (row * columns) + column - 1;
+            case LEFT:
+                return ((row - 1) * columns) + column - 1;
+            default:
+                return ((row - 1) * columns) + column;
+        }
+    }
+
+    private static int stepColumn(int direction){ return direction == RIGHT ? 1 : direction == LEFT ? -1 : 0; }
+    private static int stepRow(int direction){ return direction == DOWN ? 1 : direction == UP ? -1 : 0; }
+
+    private boolean isVisited(long[] visited, int column, int row, int direction)
+    {
+        int i = (((row * (columns + 1)) + column) * 4) + direction;
+        return (visited[i >> 6] & (1L << (i & 63))) != 0;
+    }
+
+    private void setVisited(long[] visited, int column, int row, int direction)
+    {
+        int i = (((row * (columns + 1)) + column) * 4) + direction;
+        visited[i >> 6] |= 1L << (i & 63);
+    }
+
+    /**
+     * Records that a tile has a side on an outline
+     */
+    private void addTileOutline(int tile, int outline)
+    {
+        if(tileOutline[tile] == NO_OUTLINE)
+        {
+            tileOutline[tile] = outline;
+            return;
+        }
+        if(tileOutline[tile] == outline) return;
+
+        int[] extra = extraOutlines.get(tile);
+        if(extra == null)
+        {
+            extraOutlines.put(tile, new int[]{outline});
+            return;
+        }
+        for(int i: extra)
+        {
+            if(i == outline) return;
+        }
+        extra = Arrays.copyOf(extra, extra.length + 1);
+        extra[extra.length - 1] = outline;
+        extraOutlines.put(tile, extra);
+    }
+
+    /**
+     * Finds the outlines along the sides of every tile an object overlaps, looking the tiles up directly from the
+     * object's bounds
+     * @param object the object
+     * @param margin distance to grow the object's bounds by
+     * @return the number of outlines found, stored at the start of foundOutlines
+     */
+    private int findOutlines(PhysicsObject object, float margin)
+    {
+        object.findBounds(box);
+        box.expand(margin);
+        int minColumn = Math.max(0, (int)Math.floor((box.minX - position.x) / tileSize));
+        int maxColumn = Math.min(columns - 1, (int)Math.floor((box.maxX - position.x) / tileSize));
+        int minRow = Math.max(0, (int)Math.floor((box.minY - position.y) / tileSize));
+        int maxRow = Math.min(rows - 1, (int)Math.floor((box.maxY - position.y) / tileSize));
+
+        checkCount++;
+        int numFound = 0;
+        for(int row=minRow; row<=maxRow; row++)
+        {
+            for(int column=minColumn; column<=maxColumn; column++)
+            {
+                int tile = (row * columns) + column;
+                int outline = tileOutline[tile];
+                if(outline == NO_OUTLINE) continue;
+
+                if(outlineMark[outline] != checkCount)
+                {
+                    outlineMark[outline] = checkCount;
+                    foundOutlines[numFound++] = outline;
+                }
+
+                int[] extra = extraOutlines.isEmpty() ? null : extraOutlines.get(tile);
+                if(extra == null) continue;
+                for(int i: extra)
+                {
+                    if(outlineMark[i] == checkCount) continue;
+                    outlineMark[i] = checkCount;
+                    foundOutlines[numFound++] = i;
+                }
+            }
+        }
+        return numFound;
+    }
+
+    /**
+     * Moves the outlines along with the map, in case it has been moved since the last check
+     */
+    private void updateOutlines()
+    {
+        for(PhysicsEdgeChain outline: outlines)
+        {
+            outline.position.x = position.x;
+            outline.position.y = position.y;
+        }
+    }
+
+    /**
+     * Checks for a collision between each outline under an object and the object. Each collision found is moved from
+     * the outline onto the map, and they are returned linked together
+     * @param object the other object
+     * @param margin distance apart the two can be and still be counted as colliding
+     * @return the first collision, or null if the object is not colliding with any solid tile
+     */
+    Collision checkTileMapCollision(PhysicsObject object, float margin)
+    {
+        updateOutlines();
+        Collision first = null;
+        Collision last = null;
+        int numFound = findOutlines(object, margin);
+        for(int i=0; i<numFound; i++)
+        {
+            int outlineIndex = foundOutlines[i];
+            PhysicsEdgeChain outline = outlines[outlineIndex];
+            Collision collision = outline.checkChainCollision(object, margin);
+            if(collision == null) continue;
+
+            if(first == null)
+            {
+                first = collision;
+            }
+            else
+            {
+                last.next = collision;
+            }
+
+            for(; collision != null; collision = collision.next)
+            {
+                if(collision.o1 == outline) collision.o1 = this;
+                if(collision.o2 == outline) collision.o2 = this;
+                collision.partId = (collision.partId * outlines.length) + outlineIndex + 1;
+                last = collision;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Checks if an object is touching any solid tile
+     * @param object the other object
+     * @return true if they are touching
+     */
+    boolean isTouchingTileMap(PhysicsObject object)
+    {
+        updateOutlines();
+        int numFound = findOutlines(object, TOUCHING_AMOUNT);
+        for(int i=0; i<numFound; i++)
+        {
+            if(outlines[foundOutlines[i]].isTouchingChain(object)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the box covering every tile of the map
+     * @param bounds box to store the result in
+     */
+    @Override
+    void findBounds(AABB bounds)
+    {
+        bounds.set(position.x, position.y, position.x + (columns * tileSize), position.y + (rows * tileSize));
+    }
+
+    /**
+     * Finds the distance from the map's position, its top left corner, to its furthest corner
+     * @return the distance of the furthest corner
+     */
+    @Override
+    float findMaxRadius()
+    {
+        float width = columns * tileSize;
+        float height = rows * tileSize;
+        return (float)Math.sqrt((width * width) + (height * height));
+    }
+
+    @Override
+    Collision checkCollision(PhysicsCircle circle, float margin)
+    {
+        return checkTileMapCollision(circle, margin);
+    }
+
+    @Override
+    Collision checkCollision(PhysicsPolygon polygon, float margin)
+    {
+        return checkTileMapCollision(polygon, margin);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsCircle circle)
+    {
+        return isTouchingTileMap(circle);
+    }
+
+    @Override
+    public boolean isTouching(PhysicsPolygon polygon)
+    {
+        return isTouchingTileMap(polygon);
+    }
+
+    /**
+     * Changes the friction and bounciness of the map. The map stays immovable whatever the material's density
+     * @param material
+     */
+    @Override
+    public void setMaterial(Material material)
+    {
+        this.material = material;
+        for(PhysicsEdgeChain outline: outlines)
+        {
+            outline.setMaterial(material);
+        }
+    }
+
+    /**
+     * Checks if a tile is solid. Tiles outside the map are empty
+     * @param column
+     * @param row
+     * @return true if the tile is solid
+     */
+    public boolean isSolid(int column, int row)
+    {
+        if(column < 0 || column >= columns || row < 0 || row >= rows) return false;
+        int i = (row * columns) + column;
+        return (solidTiles[i >> 6] & (1L << (i & 63))) != 0;
+    }
+
+    public int getColumns(){ return columns; }
+    public int getRows(){ return rows; }
+    public float getTileSize(){ return tileSize; }
+    public int getNumOutlines(){ return outlines.length; }
+}
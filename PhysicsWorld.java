@@ -13,21 +13,38 @@ import java.util.List;
 public class PhysicsWorld {
 
     private final static int INITIAL_FRAMERATE = 120; // default frame rate
-    private final static float INITIAL_COLLISION_PRECISION = 50;
+    private final static float INITIAL_COLLISION_PRECISION = 10;
+    private final static int MAX_QUADTREE_DEPTH = 20; // Deeper than this and cells become smaller than float precision
 
     // List of all physics objects to simulate
     private List<PhysicsObject> objects = new ArrayList<>();
-    private List<BroadPair> broadPhase = new ArrayList<>();
+    private List<BroadPair> broadPairs = new ArrayList<>();
 
     private List<PhysicsObject> removalList = new LinkedList<>();
     private List<PhysicsObject> additionList = new LinkedList<>();
 
+    private int numCollidingPairs = 0; // Number of pairs found colliding in the last narrow phase
+
     // Value for accumulating needed physics updates
     private float accumulator = 0;
 
     // Class for holding the various settings used in this world, such as gravity strength etc.
     private WorldSettings worldSettings = new WorldSettings();
 
+    // Method used to find objects near each other during the broad phase. Immovable objects are kept separately,
+    // since they never need to be checked against each other
+    private BroadPhase broadPhase = createBroadPhase(worldSettings.getBroadPhaseType());
+    private volatile BroadPhaseType pendingBroadPhaseType = null; // Broad phase to switch to at the next update
+    private StaticIndex staticIndex = new StaticIndex();
+
+    // Pairs found by the broad phase, kept across updates so unchanged collision results can be reused
+    private PairManager pairManager = new PairManager();
+    private NarrowPhase narrowPhase = new NarrowPhase();
+    private List<Collision> collisions = new ArrayList<>(); // Collisions found by the last narrow phase
+
+    // Splits concave polygons into convex pieces, remembering the pieces of each shape it has split
+    private ConvexDecomposer convexDecomposer = new ConvexDecomposer();
+
     // CONSTRUCTORS ----------------------------------------------------------------------------------------------------
     public PhysicsWorld(float gravity, boolean friction){
         worldSettings.setGravity(gravity);
@@ -62,6 +79,101 @@ public class PhysicsWorld {
         return c;
     }
 
+    public PhysicsObject addCapsule(float x, float y, float length, float radius)
+    {
+        PhysicsCapsule c = new PhysicsCapsule(worldSettings, new Vec2(x, y), length, radius);
+        add(c);
+        return c;
+    }
+
+    public PhysicsObject addCapsule(float x, float y, float length, float radius, Material material)
+    {
+        PhysicsCapsule c = new PhysicsCapsule(worldSettings, new Vec2(x, y), length, radius, material);
+        add(c);
+        return c;
+    }
+
+    /**
+     * Adds an immovable chain of connected segments, for building terrain out of one object instead of many boxes.
+     * Objects only collide with the side each segment's normal faces, which for a chain drawn left to right is the top,
+     * and for a closed loop wound the same way as a polygon is the outside
+     * @param x x coordinate the points are relative to
+     * @param y y coordinate the points are relative to
+     * @param points the x and y coordinate of each point in order, as x1, y1, x2, y2...
+     * @param loop true to join the last point back to the first
+     * @return the chain, or null if the points do not form a chain
+     */
+    public PhysicsObject addEdgeChain(float x, float y, float[] points, boolean loop)
+    {
+        return addEdgeChain(x, y, points, loop, Material.Static);
+    }
+
+    public PhysicsObject addEdgeChain(float x, float y, float[] points, boolean loop, Material material)
+    {
+        if(points.length % 2 != 0 || points.length < (loop ? 6 : 4))
+        {
+            System.err.println("ERROR: Points do not form a valid edge chain.");
+            return null;
+        }
+        PhysicsEdgeChain c = new PhysicsEdgeChain(worldSettings, new Vec2(x, y), points, loop, material);
+        add(c);
+        return c;
+    }
+
+    /**
+     * Adds an immovable grid of solid and empty tiles, for building a level out of one object instead of a box for each
+     * tile. Objects collide with the edges between solid and empty tiles, and slide along rows and columns of tiles
+     * without catching on the seams between them
+     * @param x x coordinate of the map's top left corner
+     * @param y y coordinate of the map's top left corner
+     * @param tileSize width and height of each tile
+     * @param columns number of tiles in each row
+     * @param rows number of rows of tiles
+     * @param tiles each tile row by row, starting from the top left, where any value other than 0 is solid
+     * @return the map, or null if the tiles do not fit the number of columns and rows
+     */
+    public PhysicsObject addTileMap(float x, float y, float tileSize, int columns, int rows, byte[] tiles)
+    {
+        return addTileMap(x, y, tileSize, columns, rows, tiles, Material.Static);
+    }
+
+    public PhysicsObject addTileMap(float x, float y, float tileSize, int columns, int rows, byte[] tiles,
+                                    Material material)
+    {
+        if(columns <= 0 || rows <= 0 || tileSize <= 0 || tiles.length != columns * rows)
+        {
+            System.err.println("ERROR: Tiles do not form a valid tile map.");
+            return null;
+        }
+        PhysicsTileMap m = new PhysicsTileMap(worldSettings, new Vec2(x, y), tileSize, columns, rows, tiles, material);
+        add(m);
+        return m;
+    }
+
+    /**
+     * Adds a single body made of several circles and convex polygons joined together
+     * @param x x coordinate the shape's coordinates are relative to
+     * @param y y coordinate the shape's coordinates are relative to
+     * @param shape the parts of the body
+     * @return the body, or null if the shape has no parts. Its position is its center of mass
+     */
+    public PhysicsObject addCompound(float x, float y, CompoundShape shape)
+    {
+        return addCompound(x, y, shape, Material.Wood);
+    }
+
+    public PhysicsObject addCompound(float x, float y, CompoundShape shape, Material material)
+    {
+        if(shape.getNumParts() == 0)
+        {
+            System.err.println("ERROR: Compound shape has no parts.");
+            return null;
+        }
+        PhysicsCompound c = new PhysicsCompound(worldSettings, new Vec2(x, y), shape, material);
+        add(c);
+        return c;
+    }
+
     public PhysicsObject addBox(float centerx, float centery, float width, float height)
     {
         try {
@@ -176,6 +288,67 @@ public class PhysicsWorld {
         return p;
     }
 
+    /**
+     * Adds a polygon that may be concave. A concave polygon is split into convex pieces that are joined into a single
+     * compound body, and the pieces are remembered so adding the same points again does not split them again
+     * @param centerx x coordinate to place the average of the points at
+     * @param centery y coordinate to place the average of the points at
+     * @param points the x and y coordinate of each point of the polygon in order, as x1, y1, x2, y2...
+     * @return the polygon, or null if the points do not form a polygon
+     */
+    public PhysicsObject addConcavePolygon(float centerx, float centery, float[] points)
+    {
+        return addConcavePolygon(centerx, centery, points, Material.Wood);
+    }
+
+    public PhysicsObject addConcavePolygon(float centerx, float centery, float[] points, Material material)
+    {
+        float[][] pieces;
+        try
+        {
+            pieces = convexDecomposer.decompose(points);
+        }
+        catch (MalformedPolygonException e)
+        {
+            e.printMessage();
+            return null;
+        }
+        if(pieces.length == 1) return addPolygon(centerx, centery, points, material);
+
+        // Place the pieces the same way a single polygon would be, with the average of all the points at the center
+        float xsum = 0;
+        float ysum = 0;
+        for(int i=0; i<points.length; i+=2)
+        {
+            xsum += points[i];
+            ysum += points[i+1];
+        }
+        int numPoints = points.length / 2;
+
+        CompoundShape shape = new CompoundShape();
+        for(float[] piece: pieces)
+        {
+            shape.addPolygon(piece);
+        }
+        return addCompound(centerx - (xsum / numPoints), centery - (ysum / numPoints), shape, material);
+    }
+
+    public PhysicsObject addConcavePolygon(float centerx, float centery, Point[] points)
+    {
+        return addConcavePolygon(centerx, centery, points, Material.Wood);
+    }
+
+    public PhysicsObject addConcavePolygon(float centerx, float centery, Point[] points, Material material)
+    {
+        float[] coordinates = new float[points.length * 2];
+        for(int i=0; i<points.length; i++)
+        {
+            coordinates[2*i] = points[i].getX();
+            coordinates[2*i+1] = points[i].getY();
+        }
+        return addConcavePolygon(centerx, centery, coordinates, material);
+    }
+
     public void removeObject(PhysicsObject object)
     {
         remove(object);
@@ -205,15 +378,34 @@ public class PhysicsWorld {
 
     private synchronized void updateObjectList()
     {
+        applyBroadPhaseType();
+
         for(PhysicsObject object: additionList)
         {
            objects.add(object);
+           if(object.isStatic())
+           {
+               staticIndex.insert(object);
+           }
+           else
+           {
+               broadPhase.insert(object);
+           }
         }
         additionList.clear();
 
         for(PhysicsObject object: removalList)
         {
             objects.remove(object);
+            object.clearIgnores(objects);
+            if(object.inStaticIndex)
+            {
+                staticIndex.remove(object);
+            }
+            else
+            {
+                broadPhase.remove(object);
+            }
         }
         removalList.clear();
     }
@@ -251,15 +443,19 @@ public class PhysicsWorld {
         // As long as enough "time" is left in the accumulator "tank", consume a timestep's worth and update the world
         while(accumulator >= timeStep)
         {
-            // Check for all collisions and update, but repeat multiple times to allow impulses to propogate through
-            // (Mostly needed for large stacks of objects)
+            // Check for all collisions once, then solve the impulses of every collision multiple times to allow
+            // impulses to propogate through (Mostly needed for large stacks of objects)
 
             runBroadPhase();
-            for(int i=0; i < worldSettings.getCollisionPrecision(); i++)
-            {
-                runNarrowPhase(worldSettings.getScaledTimeStep());
-                applyForces();
-            }
+            pairManager.update(broadPairs);
+            long narrowPhaseStart = System.nanoTime();
+            runNarrowPhase(worldSettings.getScaledTimeStep());
+            // Let the broad phase know how useful its pairs were
+            long narrowPhaseTime = System.nanoTime() - narrowPhaseStart;
+            broadPhase.recordNarrowPhase(broadPairs.size(), numCollidingPairs, narrowPhaseTime);
+
+            applyForces();
+            solveCollisions();
 
             // Update each object's position
             move(worldSettings.getScaledTimeStep());
@@ -289,55 +485,137 @@ public class PhysicsWorld {
 //        }
 //        return firstCollisionTime;
 
-        // Check each object against all other objects further down the list
-        // This prevents checking A vs B and then B vs A again later
+        // Check each pair found in the broad phase, with pairs of the same shapes checked together. Pairs reuse their
+        // last result if neither object has moved
+        narrowPhase.run(pairManager);
+
+        // Collect the collisions in the order the broad phase found the pairs, so they are solved in the same order as
+        // before they were sorted
         Collision c;
-        for(int i=0; i<broadPhase.size(); i++)
+        List<PersistentPair> pairs = pairManager.getActivePairs();
+        collisions.clear();
+        numCollidingPairs = 0;
+        for(int i=0; i<pairs.size(); i++)
         {
-            BroadPair potentialCollision = broadPhase.get(i);
-            c = potentialCollision.object1.checkCollision(potentialCollision.object2, 0);
+            c = pairs.get(i).getCollision();
             if(c != null)
             {
+                numCollidingPairs++;
                 c.o1.runCollisionCallback(c.o2);
                 c.o2.runCollisionCallback(c.o1);
-                // Find the impulse of the collision and apply it to both objects
-                c.applyImpulse();
+
+                // Objects touching in several places have a separate collision for each
+                for(; c != null; c = c.next)
+                {
+                    collisions.add(c);
+                }
             }
         }
 
-        // Apply all impulses
-        for(PhysicsObject o: objects)
+        return time;
+    }
+
+    /**
+     * Resolves every collision found by the narrow phase. Each collision starts from the impulses it needed in the last
+     * update, and then all collisions are solved one after another as many times as the collision precision, so the
+     * impulses can spread through stacks of objects
+     */
+    private void solveCollisions()
+    {
+        for(int i=0; i<collisions.size(); i++)
+        {
+            collisions.get(i).prepare();
+        }
+        for(int i=0; i<collisions.size(); i++)
         {
-            o.applyTotalImpulse();
+            collisions.get(i).warmStart();
         }
 
-        return time;
+        for(int iteration=0; iteration < worldSettings.getCollisionPrecision(); iteration++)
+        {
+            for(int i=0; i<collisions.size(); i++)
+            {
+                collisions.get(i).applyImpulse();
+            }
+        }
     }
 
     private void runBroadPhase()
     {
-        // Empty broadPhase list
-        broadPhase.clear();
-        // Check each collision pair using a circle around the entire shape. If the circles collide, save it as a
-        // potential collision to check
+        updateStaticObjects();
+
+        // Empty broad pair list, and refill it with the pairs found by the broad phase method in use
+        broadPairs.clear();
+        broadPhase.update();
+        broadPhase.queryPairs(broadPairs);
+
+        // Then add the pairs between each movable object and the immovable objects
+        for(int i=0; i<objects.size(); i++)
+        {
+            PhysicsObject object = objects.get(i);
+            if(!object.inStaticIndex)
+            {
+                staticIndex.queryPairs(object, broadPairs);
+            }
+        }
+    }
+
+    /**
+     * Moves any object that has become movable or immovable (such as through a new material) to the right index, and
+     * updates the bounds of any immovable object that has been moved
+     */
+    private void updateStaticObjects()
+    {
         for(int i=0; i<objects.size(); i++)
         {
-            PhysicsObject o1 = objects.get(i);
-            // Have each polygon check against each polygon further down the list
-            for(int j=i+1; j<objects.size(); j++)
+            PhysicsObject object = objects.get(i);
+            if(object.isStatic() != object.inStaticIndex)
             {
-                PhysicsObject o2 = objects.get(j);
-                if(broadCheck(o1, o2)){
-                    broadPhase.add(new BroadPair(o1, o2));
+                if(object.inStaticIndex)
+                {
+                    staticIndex.remove(object);
+                    broadPhase.insert(object);
+                }
+                else
+                {
+                    broadPhase.remove(object);
+                    staticIndex.insert(object);
                 }
             }
         }
+        staticIndex.refresh();
+    }
+
+    /**
+     * Creates the broad phase method for the given type
+     * @param type
+     * @return a new, empty broad phase
+     */
+    private BroadPhase createBroadPhase(BroadPhaseType type)
+    {
+        switch (type)
+        {
+            case SPATIAL_GRID:
+                return new SpatialHashGrid(worldSettings);
+            case PARALLEL_SPATIAL_GRID:
+                return new ParallelSpatialHashGrid(worldSettings);
+            case SWEEP_AND_PRUNE:
+                return new SweepAndPrune();
+            case AABB_TREE:
+                return new AABBTreeBroadPhase();
+            case QUADTREE:
+                return new LooseQuadtree(worldSettings);
+            case ADAPTIVE:
+                return new AdaptiveBroadPhase(worldSettings);
+            default:
+                return new AllPairsBroadPhase();
+        }
     }
 
-    boolean broadCheck(PhysicsObject o1, PhysicsObject o2)
+    static boolean broadCheck(PhysicsObject o1, PhysicsObject o2)
     {
         // If either object is ignoring the other, no collision is found
-        if(o1.isIgnoring(o2) || o2.isIgnoring(o1)) return false;
+        if(ignoresCollision(o1, o2)) return false;
 
         float radiusSum = o1.broadPhaseRadius + o2.broadPhaseRadius; // distance between the two circles when touching
         float dx = o1.getX() - o2.getX(); // x distance
@@ -348,6 +626,17 @@ public class PhysicsWorld {
         return  distanceSquared <= (radiusSum * radiusSum);
     }
 
+    /**
+     * Returns true if collisions between the two objects should be ignored
+     * @param o1
+     * @param o2
+     * @return true if their collision categories do not match, or if either object is ignoring the other
+     */
+    static boolean ignoresCollision(PhysicsObject o1, PhysicsObject o2)
+    {
+        return !o1.canCollideWith(o2) || o1.isIgnoring(o2) || o2.isIgnoring(o1);
+    }
+
     /**
      * Apply gravity to all objects
      */
@@ -405,20 +694,20 @@ public class PhysicsWorld {
         Vec2 totalAntiGravityForce = new Vec2(0,0);
         for(PhysicsObject o: broad)
         {
-            Collision c = object.checkCollision(o, PhysicsObject.TOUCHING_AMOUNT);
-            if(c == null) continue;
-
-            // Get the magnitude of the normal force in the direction of gravity
-            float gravityPortion = -1.0f * Formulas.dotProduct(worldSettings.getGravityDirection(), c.normal);
-            // Get the magnitude of the normal force perpendicular to gravity
-            float perpendicularPortion = Math.abs(Formulas.dotProduct(worldSettings.getGravityDirection(), c.normal.tangent()));
-            // Create a vector where we use "y" as the portion of the force against gravity, and "x" as the portion
-            // perpendicular to gravity. Only add to the perpendicular force relative to how much is being added to
-            // the parallel force, (So straight perpendicular forces add nothing while straight parallel ones add much)
-            Vec2 gravityContributionVector = new Vec2(perpendicularPortion * gravityPortion,
-                                    gravityPortion);
-            // Collect a sum of all normal force's contributions
-            totalAntiGravityForce.add(gravityContributionVector);
+            for(Collision c = object.checkCollision(o, PhysicsObject.TOUCHING_AMOUNT); c != null; c = c.next)
+            {
+                // Get the magnitude of the normal force in the direction of gravity
+                float gravityPortion = -1.0f * Formulas.dotProduct(worldSettings.getGravityDirection(), c.normal);
+                // Get the magnitude of the normal force perpendicular to gravity
+                float perpendicularPortion = Math.abs(Formulas.dotProduct(worldSettings.getGravityDirection(), c.normal.tangent()));
+                // Create a vector where we use "y" as the portion of the force against gravity, and "x" as the portion
+                // perpendicular to gravity. Only add to the perpendicular force relative to how much is being added to
+                // the parallel force, (So straight perpendicular forces add nothing while straight parallel ones add much)
+                Vec2 gravityContributionVector = new Vec2(perpendicularPortion * gravityPortion,
+                                        gravityPortion);
+                // Collect a sum of all normal force's contributions
+                totalAntiGravityForce.add(gravityContributionVector);
+            }
         }
 
         // Normalize the force to see how much of it is against gravity and how much is perpendicular to it
@@ -449,16 +738,16 @@ public class PhysicsWorld {
 
         for(PhysicsObject o: broad)
         {
-            Collision c = object.checkCollision(o, PhysicsObject.TOUCHING_AMOUNT);
-            if(c == null) continue;
-
-            Vec2 normal = c.normal;
-
-            float percentMatch = Formulas.dotProduct(worldSettings.getGravityDirection(), normal);
-            if(percentMatch > bestMatch)
+            for(Collision c = object.checkCollision(o, PhysicsObject.TOUCHING_AMOUNT); c != null; c = c.next)
             {
-                bestMatch = percentMatch;
-                bestNormal = normal;
+                Vec2 normal = c.normal;
+
+                float percentMatch = Formulas.dotProduct(worldSettings.getGravityDirection(), normal);
+                if(percentMatch > bestMatch)
+                {
+                    bestMatch = percentMatch;
+                    bestNormal = normal;
+                }
             }
         }
 
@@ -486,6 +775,81 @@ public class PhysicsWorld {
         worldSettings.setCollisionPrecision(precision);
     }
 
+    /**
+     * Sets the method used to find objects near enough to each other to possibly be colliding. The change is made at
+     * the start of the next update, so it is safe to call while the world is updating
+     * @param type the broad phase method to use
+     */
+    public void setBroadPhase(BroadPhaseType type)
+    {
+        pendingBroadPhaseType = type;
+    }
+
+    /**
+     * Switches to the most recently requested broad phase, if it differs from the current one
+     */
+    private void applyBroadPhaseType()
+    {
+        BroadPhaseType type = pendingBroadPhaseType;
+        if(type == null) return;
+        pendingBroadPhaseType = null;
+        if(type == worldSettings.getBroadPhaseType()) return;
+        worldSettings.setBroadPhaseType(type);
+
+        // Broad phases keep their own copy of the objects, so fill the new one with the current objects
+        broadPhase = createBroadPhase(type);
+        for(PhysicsObject object: objects)
+        {
+            if(!object.inStaticIndex)
+            {
+                broadPhase.insert(object);
+            }
+        }
+    }
+
+    /**
+     * Sets the size of each cell of the broad phase grid. Works best at around the size of the typical object.
+     * @param cellSize width and height of a grid cell
+     */
+    public void setBroadPhaseCellSize(float cellSize)
+    {
+        if(cellSize <= 0)
+        {
+            System.err.println("Cannot set broad phase cell size to a value of 0 or less.");
+            return;
+        }
+        worldSettings.setBroadPhaseCellSize(cellSize);
+    }
+
+    /**
+     * Sets how many levels the broad phase quadtree can split down to. Deeper trees separate small objects better, but
+     * take longer to walk.
+     * @param maxDepth the deepest level, where the root is level 0
+     */
+    public void setQuadtreeMaxDepth(int maxDepth)
+    {
+        if(maxDepth < 0 || maxDepth > MAX_QUADTREE_DEPTH)
+        {
+            System.err.println("Quadtree max depth must be between 0 and " + MAX_QUADTREE_DEPTH + ".");
+            return;
+        }
+        worldSettings.setQuadtreeMaxDepth(maxDepth);
+    }
+
+    /**
+     * Sets how many objects a broad phase quadtree node can hold before it is split into four.
+     * @param capacity number of objects
+     */
+    public void setQuadtreeNodeCapacity(int capacity)
+    {
+        if(capacity < 1)
+        {
+            System.err.println("Quadtree node capacity must be at least 1.");
+            return;
+        }
+        worldSettings.setQuadtreeNodeCapacity(capacity);
+    }
+
     public void setGravityDirection(float xcomponent, float ycomponent)
     {
         Vec2 gravity = new Vec2(xcomponent, ycomponent);
@@ -496,16 +860,5 @@ public class PhysicsWorld {
     public void setGravity(float gravity){ worldSettings.setGravity(gravity); }
     public void setFriction(boolean friction){ worldSettings.setFriction(friction); }
 
-    private class BroadPair{
-        PhysicsObject object1;
-        PhysicsObject object2;
-
-        BroadPair(PhysicsObject object1, PhysicsObject object2)
-        {
-            this.object1 = object1;
-            this.object2 = object2;
-        }
-    }
-
     public void addDebugView(Group group){ worldSettings.addDebugView(group); }
 }
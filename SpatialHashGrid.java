@@ -0,0 +1,249 @@
+package physicsEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Broad phase that bins each object into a uniform grid of cells using the bounds of its broad phase radius. Cells are
+ * hashed into a fixed size table, so only objects sharing a cell (or a hash bucket) are checked against each other.
+ */
+class SpatialHashGrid implements BroadPhase {
+
+    private final static int MAX_CELLS_PER_OBJECT = 64; // Objects covering more cells than this are not binned, and are
+                                                        // instead checked against every other object
+    private final static int MIN_TABLE_SIZE = 16;
+    private final static int HASH_PRIME_X = 73856093; // Large primes used to spread cell coordinates across the table
+    private final static int HASH_PRIME_Y = 19349663;
+
+    private WorldSettings worldSettings; // Holds the cell size to use
+    private float cellSize;
+
+    private List<PhysicsObject> objects = new ArrayList<>();
+
+    // Per object data, indexed by the object's position in the object list
+    private int[] minCellX = new int[0];
+    private int[] minCellY = new int[0];
+    private int[] maxCellX = new int[0];
+    private int[] maxCellY = new int[0];
+    private boolean[] oversized = new boolean[0];
+    private int[] lastVisited = new int[0]; // Last object to check each object, used to prevent duplicate pairs
+
+    // Hash table, stored as a list of object indices sorted by bucket along with the start of each bucket in that list
+    private int[] bucketStarts = new int[MIN_TABLE_SIZE + 1];
+    private int[] entries = new int[0];
+    private int tableMask = MIN_TABLE_SIZE - 1;
+
+    // Indices of the objects too large to bin
+    private int[] oversizedObjects = new int[0];
+    private int numOversized = 0;
+
+    SpatialHashGrid(WorldSettings worldSettings)
+    {
+        this.worldSettings = worldSettings;
+    }
+
+    @Override
+    public void insert(PhysicsObject object)
+    {
+        objects.add(object);
+    }
+
+    @Override
+    public void remove(PhysicsObject object)
+    {
+        objects.remove(object);
+    }
+
+    @Override
+    public void clear()
+    {
+        objects.clear();
+    }
+
+    /**
+     * Bins every object into the grid
+     */
+    @Override
+    public void update()
+    {
+        cellSize = worldSettings.getBroadPhaseCellSize();
+        build();
+    }
+
+    /**
+     * Adds a pair for each two objects sharing a cell that may be colliding
+     * @param pairs list to add each potential collision to
+     */
+    @Override
+    public void queryPairs(List<BroadPair> pairs)
+    {
+        for(int i=0; i<objects.size(); i++)
+        {
+            findPairs(i, pairs, lastVisited);
+        }
+    }
+
+    /**
+     * Bins every object into the grid, referring to each by its index in the object list
+     */
+    private void build()
+    {
+        int numObjects = objects.size();
+        ensureObjectCapacity(numObjects);
+
+        // Find the range of cells covered by each object
+        float invertedCellSize = 1.0f / cellSize;
+        int numEntries = 0;
+        numOversized = 0;
+        for(int i=0; i<numObjects; i++)
+        {
+            PhysicsObject o = objects.get(i);
+            float r = o.broadPhaseRadius;
+            minCellX[i] = (int)Math.floor((o.position.x - r) * invertedCellSize);
+            minCellY[i] = (int)Math.floor((o.position.y - r) * invertedCellSize);
+            maxCellX[i] = (int)Math.floor((o.position.x + r) * invertedCellSize);
+            maxCellY[i] = (int)Math.floor((o.position.y + r) * invertedCellSize);
+            lastVisited[i] = -1;
+
+            long cells = (long)(maxCellX[i] - minCellX[i] + 1) * (maxCellY[i] - minCellY[i] + 1);
+            oversized[i] = cells > MAX_CELLS_PER_OBJECT;
+            if(oversized[i])
+            {
+                oversizedObjects[numOversized++] = i;
+            }
+            else
+            {
+                numEntries += (int)cells;
+            }
+        }
+
+        // Size the table to about twice the number of entries to keep buckets short
+        int tableSize = MIN_TABLE_SIZE;
+        while(tableSize < numEntries * 2)
+        {
+            tableSize <<= 1;
+        }
+        tableMask = tableSize - 1;
+        if(bucketStarts.length < tableSize + 1)
+        {
+            bucketStarts = new int[tableSize + 1];
+        }
+        if(entries.length < numEntries)
+        {
+            entries = new int[numEntries];
+        }
+        Arrays.fill(bucketStarts, 0, tableSize + 1, 0);
+
+        // Count the entries in each bucket, then turn the counts into the end of each bucket
+        for(int i=0; i<numObjects; i++)
+        {
+            if(oversized[i]) continue;
+            for(int cx = minCellX[i]; cx <= maxCellX[i]; cx++)
+            {
+                for(int cy = minCellY[i]; cy <= maxCellY[i]; cy++)
+                {
+                    bucketStarts[hash(cx, cy)]++;
+                }
+            }
+        }
+        int total = 0;
+        for(int b=0; b<tableSize; b++)
+        {
+            total += bucketStarts[b];
+            bucketStarts[b] = total;
+        }
+        bucketStarts[tableSize] = total;
+
+        // Fill each bucket from its end, leaving each bucket start pointing to the start of its entries
+        for(int i=numObjects-1; i>=0; i--)
+        {
+            if(oversized[i]) continue;
+            for(int cx = minCellX[i]; cx <= maxCellX[i]; cx++)
+            {
+                for(int cy = minCellY[i]; cy <= maxCellY[i]; cy++)
+                {
+                    entries[--bucketStarts[hash(cx, cy)]] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a pair for each object further down the list than the given object that may be colliding with it. Only reads
+     * from the grid, so it can be called from several threads at once as long as each has its own list and stamp array
+     * NOTE must be called after update()
+     * @param i index of the object to find pairs for
+     * @param pairs list to add each potential collision to
+     * @param visited stamp array used to skip objects already checked, must be at least the size of the object list
+     */
+    void findPairs(int i, List<BroadPair> pairs, int[] visited)
+    {
+        PhysicsObject o1 = objects.get(i);
+
+        // Objects too big to bin check against everything further down the list
+        if(oversized[i])
+        {
+            for(int j=i+1; j<objects.size(); j++)
+            {
+                addIfColliding(o1, objects.get(j), pairs);
+            }
+            return;
+        }
+
+        // Check every object sharing a bucket with one of this object's cells
+        for(int cx = minCellX[i]; cx <= maxCellX[i]; cx++)
+        {
+            for(int cy = minCellY[i]; cy <= maxCellY[i]; cy++)
+            {
+                int bucket = hash(cx, cy);
+                for(int e = bucketStarts[bucket]; e < bucketStarts[bucket + 1]; e++)
+                {
+                    int j = entries[e];
+                    if(j <= i || visited[j] == i) continue;
+                    visited[j] = i;
+                    addIfColliding(o1, objects.get(j), pairs);
+                }
+            }
+        }
+
+        // Oversized objects are not in any bucket, so check against them directly
+        for(int k=0; k<numOversized; k++)
+        {
+            int j = oversizedObjects[k];
+            if(j > i)
+            {
+                addIfColliding(o1, objects.get(j), pairs);
+            }
+        }
+    }
+
+    private void addIfColliding(PhysicsObject o1, PhysicsObject o2, List<BroadPair> pairs)
+    {
+        if(PhysicsWorld.broadCheck(o1, o2))
+        {
+            pairs.add(new BroadPair(o1, o2));
+        }
+    }
+
+    int getNumObjects(){ return objects.size(); }
+
+    private int hash(int cx, int cy)
+    {
+        return ((cx * HASH_PRIME_X) ^ (cy * HASH_PRIME_Y)) & tableMask;
+    }
+
+    private void ensureObjectCapacity(int numObjects)
+    {
+        if(minCellX.length >= numObjects) return;
+
+        int capacity = Math.max(numObjects, minCellX.length * 2);
+        minCellX = new int[capacity];
+        minCellY = new int[capacity];
+        maxCellX = new int[capacity];
+        maxCellY = new int[capacity];
+        oversized = new boolean[capacity];
+        lastVisited = new int[capacity];
+        oversizedObjects = new int[capacity];
+    }
+}
@@ -0,0 +1,122 @@
+package physicsEngine;
+
+import physicsEngine.math.AABB;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds every immovable object in a tree of exact bounding boxes, kept apart from the broad phase so that immovable
+ * objects are never checked against each other. The tree is only changed when an immovable object is added, removed, or
+ * moved (which should be rare), and movable objects are looked up against it each update.
+ */
+class StaticIndex {
+
+    private DynamicAABBTree tree = new DynamicAABBTree();
+    private Map<PhysicsObject, Entry> entries = new LinkedHashMap<>(); // Ordered so updates are deterministic
+
+    private AABB box = new AABB(); // Scratch box
+    private PhysicsObject queryObject; // Object being looked up by queryPairs()
+    private List<BroadPair> out; // List being filled by queryPairs()
+
+    /**
+     * Adds an immovable object
+     * @param object
+     */
+    void insert(PhysicsObject object)
+    {
+        if(entries.containsKey(object)) return;
+
+        Entry entry = new Entry(object);
+        entry.snapshot();
+        object.findBounds(box);
+        entry.proxy = tree.createProxy(box, object);
+        entries.put(object, entry);
+        object.inStaticIndex = true;
+    }
+
+    /**
+     * Removes an immovable object
+     * @param object
+     */
+    void remove(PhysicsObject object)
+    {
+        Entry entry = entries.remove(object);
+        if(entry == null) return;
+
+        tree.destroyProxy(entry.proxy);
+        object.inStaticIndex = false;
+    }
+
+    /**
+     * Updates the bounds of any immovable object that has been moved or rotated since it was last stored
+     */
+    void refresh()
+    {
+        for(Entry entry: entries.values())
+        {
+            if(entry.hasMoved())
+            {
+                entry.snapshot();
+                entry.object.findBounds(box);
+                tree.moveProxy(entry.proxy, box);
+            }
+        }
+    }
+
+    /**
+     * Adds a pair for each immovable object whose bounds overlap the given object's bounds
+     * @param object a movable object
+     * @param pairs list to add each potential collision to
+     */
+    void queryPairs(PhysicsObject object, List<BroadPair> pairs)
+    {
+        if(entries.isEmpty()) return;
+
+        queryObject = object;
+        out = pairs;
+        object.findBounds(box);
+        tree.query(box, this::addIfColliding);
+        queryObject = null;
+        out = null;
+    }
+
+    private void addIfColliding(int proxy)
+    {
+        PhysicsObject staticObject = tree.getObject(proxy);
+        if(PhysicsWorld.ignoresCollision(queryObject, staticObject)) return;
+
+        // Keep the older object first so pairs are checked in the same order as the object list
+        out.add(queryObject.idNumber < staticObject.idNumber ?
+                new BroadPair(queryObject, staticObject) : new BroadPair(staticObject, queryObject));
+    }
+
+    /**
+     * Class for remembering where an immovable object was when its bounds were stored
+     */
+    private class Entry {
+        PhysicsObject object;
+        int proxy;
+        float x;
+        float y;
+        float orientation;
+
+        Entry(PhysicsObject object)
+        {
+            this.object = object;
+        }
+
+        void snapshot()
+        {
+            x = object.position.x;
+            y = object.position.y;
+            orientation = object.orientation;
+        }
+
+        boolean hasMoved()
+        {
+            return object.position.x != x || object.position.y != y || object.orientation != orientation;
+        }
+    }
+}
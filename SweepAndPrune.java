@@ -0,0 +1,385 @@
+package physicsEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broad phase that keeps the minimum and maximum bounds of every object sorted along both axes between updates. Since
+ * most objects barely move each update, the sorted lists are nearly sorted already and are cheap to re-sort with an
+ * insertion sort. Each time two bounds swap places the pair either begins or stops overlapping, which is used to keep
+ * the set of overlapping pairs up to date without rebuilding it.
+ */
+class SweepAndPrune implements BroadPhase {
+
+    private final static int INITIAL_CAPACITY = 64;
+    private final static int NUM_AXES = 2;
+    private final static int MIN_REBUILD_INSERTIONS = 32; // Number of new objects at which it is cheaper to sort and
+                                                         // sweep from scratch than to insertion sort them into place
+
+    // Data about each object, indexed by the object's proxy ID
+    private Map<PhysicsObject, Integer> proxies = new HashMap<>();
+    private PhysicsObject[] proxyObjects = new PhysicsObject[INITIAL_CAPACITY];
+    private float[][] boundMin = new float[NUM_AXES][INITIAL_CAPACITY];
+    private float[][] boundMax = new float[NUM_AXES][INITIAL_CAPACITY];
+    private int[] freeProxies = new int[INITIAL_CAPACITY];
+    private int numFreeProxies = 0;
+    private int proxyCapacityUsed = 0; // Every proxy ID below this has been handed out at some point
+
+    // Bound endpoints, sorted along each axis. Each endpoint stores its proxy ID shifted left once, with the lowest
+    // bit set if it is a maximum bound
+    private float[][] endpointValues = new float[NUM_AXES][INITIAL_CAPACITY * 2];
+    private int[][] endpointData = new int[NUM_AXES][INITIAL_CAPACITY * 2];
+    private int numEndpoints = 0;
+
+    private int numInserted = 0; // Objects inserted since the last update
+    private boolean removalsPending = false;
+
+    // Every pair whose bounds currently overlap, kept in insertion order so results are deterministic
+    private Map<Long, BroadPair> pairs = new LinkedHashMap<>();
+
+    /**
+     * Adds an object. Its bounds are sorted into place during the next update
+     * @param object
+     */
+    @Override
+    public void insert(PhysicsObject object)
+    {
+        if(proxies.containsKey(object)) return;
+
+        int id = allocateProxy();
+        proxies.put(object, id);
+        proxyObjects[id] = object;
+        updateBounds(id);
+
+        ensureEndpointCapacity(numEndpoints + 2);
+        for(int axis = 0; axis < NUM_AXES; axis++)
+        {
+            endpointValues[axis][numEndpoints] = boundMin[axis][id];
+            endpointData[axis][numEndpoints] = id << 1;
+            endpointValues[axis][numEndpoints + 1] = boundMax[axis][id];
+            endpointData[axis][numEndpoints + 1] = (id << 1) | 1;
+        }
+        numEndpoints += 2;
+        numInserted++;
+    }
+
+    /**
+     * Removes an object. Its bounds and pairs are cleared out during the next update
+     * @param object
+     */
+    @Override
+    public void remove(PhysicsObject object)
+    {
+        Integer id = proxies.remove(object);
+        if(id == null) return;
+
+        proxyObjects[id] = null;
+        removalsPending = true;
+    }
+
+    /**
+     * Removes every object
+     */
+    @Override
+    public void clear()
+    {
+        proxies.clear();
+        Arrays.fill(proxyObjects, null);
+        numFreeProxies = 0;
+        proxyCapacityUsed = 0;
+        numEndpoints = 0;
+        numInserted = 0;
+        removalsPending = false;
+        pairs.clear();
+    }
+
+    /**
+     * Refreshes the bounds of every object and re-sorts them, updating the set of overlapping pairs along the way
+     */
+    @Override
+    public void update()
+    {
+        if(removalsPending)
+        {
+            clearRemovedProxies();
+        }
+
+        for(int id = 0; id < proxyCapacityUsed; id++)
+        {
+            if(proxyObjects[id] != null)
+            {
+                updateBounds(id);
+            }
+        }
+
+        for(int axis = 0; axis < NUM_AXES; axis++)
+        {
+            float[] values = endpointValues[axis];
+            int[] data = endpointData[axis];
+            for(int e = 0; e < numEndpoints; e++)
+            {
+                int id = data[e] >> 1;
+                values[e] = (data[e] & 1) == 0 ? boundMin[axis][id] : boundMax[axis][id];
+            }
+        }
+
+        // A large batch of new objects is faster to sort from scratch than to shift into place one by one
+        if(numInserted > MIN_REBUILD_INSERTIONS && numInserted * 4 > proxies.size())
+        {
+            rebuild();
+        }
+        else
+        {
+            for(int axis = 0; axis < NUM_AXES; axis++)
+            {
+                insertionSort(axis);
+            }
+        }
+        numInserted = 0;
+    }
+
+    /**
+     * Adds every overlapping pair that also passes the world's broad check
+     * @param out list to add each potential collision to
+     */
+    @Override
+    public void queryPairs(List<BroadPair> out)
+    {
+        for(BroadPair pair: pairs.values())
+        {
+            if(PhysicsWorld.broadCheck(pair.object1, pair.object2))
+            {
+                out.add(pair);
+            }
+        }
+    }
+
+    /**
+     * Sorts an axis's endpoints, starting or ending a pair every time a minimum bound and a maximum bound swap
+     * @param axis
+     */
+    private void insertionSort(int axis)
+    {
+        float[] values = endpointValues[axis];
+        int[] data = endpointData[axis];
+
+        for(int i = 1; i < numEndpoints; i++)
+        {
+            float value = values[i];
+            int endpoint = data[i];
+            int j = i - 1;
+
+            while(j >= 0 && isBefore(value, endpoint, values[j], data[j]))
+            {
+                int other = data[j];
+                boolean isMax = (endpoint & 1) == 1;
+                boolean otherIsMax = (other & 1) == 1;
+
+                // A minimum moving before a maximum means the two may have started overlapping, while a maximum
+                // moving before a minimum means they have stopped
+                if(!isMax && otherIsMax)
+                {
+                    beginOverlap(endpoint >> 1, other >> 1);
+                }
+                else if(isMax && !otherIsMax)
+                {
+                    endOverlap(endpoint >> 1, other >> 1);
+                }
+
+                values[j + 1] = values[j];
+                data[j + 1] = other;
+                j--;
+            }
+            values[j + 1] = value;
+            data[j + 1] = endpoint;
+        }
+    }
+
+    /**
+     * Sorts every axis from scratch and rebuilds the set of pairs with a single sweep along the x axis
+     */
+    private void rebuild()
+    {
+        for(int axis = 0; axis < NUM_AXES; axis++)
+        {
+            sortAxis(axis);
+        }
+
+        pairs.clear();
+        List<Integer> active = new ArrayList<>();
+        for(int e = 0; e < numEndpoints; e++)
+        {
+            int endpoint = endpointData[0][e];
+            int id = endpoint >> 1;
+            if((endpoint & 1) == 0)
+            {
+                for(int other: active)
+                {
+                    beginOverlap(id, other);
+                }
+                active.add(id);
+            }
+            else
+            {
+                active.remove(Integer.valueOf(id));
+            }
+        }
+    }
+
+    private void sortAxis(int axis)
+    {
+        final float[] values = endpointValues[axis];
+        final int[] data = endpointData[axis];
+
+        Integer[] order = new Integer[numEndpoints];
+        for(int e = 0; e < numEndpoints; e++)
+        {
+            order[e] = e;
+        }
+        Arrays.sort(order, (a, b) -> {
+            if(isBefore(values[a], data[a], values[b], data[b])) return -1;
+            if(isBefore(values[b], data[b], values[a], data[a])) return 1;
+            return 0;
+        });
+
+        float[] sortedValues = new float[values.length];
+        int[] sortedData = new int[data.length];
+        for(int e = 0; e < numEndpoints; e++)
+        {
+            sortedValues[e] = values[order[e]];
+            sortedData[e] = data[order[e]];
+        }
+        endpointValues[axis] = sortedValues;
+        endpointData[axis] = sortedData;
+    }
+
+    /**
+     * Starts tracking a pair if the two proxies overlap on every axis
+     */
+    private void beginOverlap(int id1, int id2)
+    {
+        if(id1 == id2) return;
+        for(int axis = 0; axis < NUM_AXES; axis++)
+        {
+            if(boundMin[axis][id1] > boundMax[axis][id2] || boundMin[axis][id2] > boundMax[axis][id1]) return;
+        }
+
+        PhysicsObject o1 = proxyObjects[id1];
+        PhysicsObject o2 = proxyObjects[id2];
+        long key = BroadPair.key(o1, o2);
+        if(!pairs.containsKey(key))
+        {
+            // Keep the older object first so pairs are checked in the same order as the object list
+            pairs.put(key, o1.idNumber < o2.idNumber ? new BroadPair(o1, o2) : new BroadPair(o2, o1));
+        }
+    }
+
+    private void endOverlap(int id1, int id2)
+    {
+        if(id1 == id2) return;
+        pairs.remove(BroadPair.key(proxyObjects[id1], proxyObjects[id2]));
+    }
+
+    /**
+     * Drops the endpoints and pairs of every object removed since the last update, and frees their proxy IDs
+     */
+    private void clearRemovedProxies()
+    {
+        Iterator<BroadPair> it = pairs.values().iterator();
+        while(it.hasNext())
+        {
+            BroadPair pair = it.next();
+            if(!proxies.containsKey(pair.object1) || !proxies.containsKey(pair.object2))
+            {
+                it.remove();
+            }
+        }
+
+        for(int axis = 0; axis < NUM_AXES; axis++)
+        {
+            float[] values = endpointValues[axis];
+            int[] data = endpointData[axis];
+            int kept = 0;
+            for(int e = 0; e < numEndpoints; e++)
+            {
+                if(proxyObjects[data[e] >> 1] != null)
+                {
+                    values[kept] = values[e];
+                    data[kept] = data[e];
+                    kept++;
+                }
+            }
+            if(axis == NUM_AXES - 1)
+            {
+                numEndpoints = kept;
+            }
+        }
+
+        numFreeProxies = 0;
+        for(int id = 0; id < proxyCapacityUsed; id++)
+        {
+            if(proxyObjects[id] == null)
+            {
+                freeProxies[numFreeProxies++] = id;
+            }
+        }
+        removalsPending = false;
+    }
+
+    private void updateBounds(int id)
+    {
+        PhysicsObject object = proxyObjects[id];
+        float r = object.broadPhaseRadius;
+        boundMin[0][id] = object.position.x - r;
+        boundMax[0][id] = object.position.x + r;
+        boundMin[1][id] = object.position.y - r;
+        boundMax[1][id] = object.position.y + r;
+    }
+
+    private int allocateProxy()
+    {
+        if(numFreeProxies > 0)
+        {
+            return freeProxies[--numFreeProxies];
+        }
+
+        if(proxyCapacityUsed == proxyObjects.length)
+        {
+            int capacity = proxyObjects.length * 2;
+            proxyObjects = Arrays.copyOf(proxyObjects, capacity);
+            freeProxies = Arrays.copyOf(freeProxies, capacity);
+            for(int axis = 0; axis < NUM_AXES; axis++)
+            {
+                boundMin[axis] = Arrays.copyOf(boundMin[axis], capacity);
+                boundMax[axis] = Arrays.copyOf(boundMax[axis], capacity);
+            }
+        }
+        return proxyCapacityUsed++;
+    }
+
+    private void ensureEndpointCapacity(int capacity)
+    {
+        if(endpointValues[0].length >= capacity) return;
+
+        int newCapacity = Math.max(capacity, endpointValues[0].length * 2);
+        for(int axis = 0; axis < NUM_AXES; axis++)
+        {
+            endpointValues[axis] = Arrays.copyOf(endpointValues[axis], newCapacity);
+            endpointData[axis] = Arrays.copyOf(endpointData[axis], newCapacity);
+        }
+    }
+
+    /**
+     * Returns true if the first endpoint belongs before the second. Minimums are placed before maximums of the same
+     * value so that touching bounds count as overlapping
+     */
+    private static boolean isBefore(float value1, int endpoint1, float value2, int endpoint2)
+    {
+        return value1 < value2 || (value1 == value2 && (endpoint1 & 1) == 0 && (endpoint2 & 1) == 1);
+    }
+}
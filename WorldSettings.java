@@ -10,12 +10,18 @@ public class WorldSettings {
     private float scaledTimeStep = timeStep; // scaled time step to speed up moving things along
     private float collisionPrecision = 1; // How many times it iterates through the collision, stops stacks squashing
     private float timeScaleFactor = 1; // Scale from original update frame rate so scale forces
+    private BroadPhaseType broadPhaseType = BroadPhaseType.SPATIAL_GRID; // Method used to find nearby objects
+    private float broadPhaseCellSize = 100; // Size of each broad phase grid cell
+    private int quadtreeMaxDepth = 8; // Deepest level the broad phase quadtree can split to
+    private int quadtreeNodeCapacity = 8; // Objects a quadtree node holds before it is split
 
     private boolean friction = true; // true if there is friction between objects
     private float gravity = 10; // the amount of gravity (10 is normal)
     private Vec2 gravityDirection = new Vec2(0, 1);
 
     private Debugger debugger = null;
+    private IgnoredPairs ignoredPairs = new IgnoredPairs(); // Every object being ignored by another object in the world
+    private ConvexCollider convexCollider = new ConvexCollider(); // Shared by every collision between general convex shapes
 
     WorldSettings(){}
 
@@ -35,6 +41,22 @@ public class WorldSettings {
         return timeScaleFactor;
     }
 
+    public BroadPhaseType getBroadPhaseType() {
+        return broadPhaseType;
+    }
+
+    public float getBroadPhaseCellSize() {
+        return broadPhaseCellSize;
+    }
+
+    public int getQuadtreeMaxDepth() {
+        return quadtreeMaxDepth;
+    }
+
+    public int getQuadtreeNodeCapacity() {
+        return quadtreeNodeCapacity;
+    }
+
     public boolean isFriction() {
         return friction;
     }
@@ -53,6 +75,10 @@ public class WorldSettings {
 
     // ------------------------------------------------------------------------------
 
+    IgnoredPairs getIgnoredPairs() { return ignoredPairs; }
+
+    ConvexCollider getConvexCollider() { return convexCollider; }
+
     void setTimeStep(float timeStep) {
         this.timeStep = timeStep;
     }
@@ -69,6 +95,22 @@ public class WorldSettings {
         this.timeScaleFactor = timeScaleFactor;
     }
 
+    void setBroadPhaseType(BroadPhaseType broadPhaseType) {
+        this.broadPhaseType = broadPhaseType;
+    }
+
+    void setBroadPhaseCellSize(float broadPhaseCellSize) {
+        this.broadPhaseCellSize = broadPhaseCellSize;
+    }
+
+    void setQuadtreeMaxDepth(int quadtreeMaxDepth) {
+        this.quadtreeMaxDepth = quadtreeMaxDepth;
+    }
+
+    void setQuadtreeNodeCapacity(int quadtreeNodeCapacity) {
+        this.quadtreeNodeCapacity = quadtreeNodeCapacity;
+    }
+
     void setFriction(boolean friction) {
         this.friction = friction;
     }
@@ -0,0 +1,97 @@
+package physicsEngine.math;
+
+/**
+ * Class used for tracking an axis aligned bounding box. Can be modified.
+ */
+public class AABB {
+    public float minX;
+    public float minY;
+    public float maxX;
+    public float maxY;
+
+    public AABB()
+    {
+        this(0, 0, 0, 0);
+    }
+
+    public AABB(float minX, float minY, float maxX, float maxY)
+    {
+        set(minX, minY, maxX, maxY);
+    }
+
+    public AABB set(float minX, float minY, float maxX, float maxY)
+    {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        return this;
+    }
+
+    public AABB set(AABB other)
+    {
+        return set(other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    /**
+     * Sets this box to the smallest box containing both given boxes
+     * @param a
+     * @param b
+     * @return this box
+     */
+    public AABB combine(AABB a, AABB b)
+    {
+        return set(Math.min(a.minX, b.minX), Math.min(a.minY, b.minY),
+                Math.max(a.maxX, b.maxX), Math.max(a.maxY, b.maxY));
+    }
+
+    /**
+     * Grows the box by the given amount in every direction
+     * @param amount
+     * @return this box
+     */
+    public AABB expand(float amount)
+    {
+        minX -= amount;
+        minY -= amount;
+        maxX += amount;
+        maxY += amount;
+        return this;
+    }
+
+    /**
+     * Grows the box along a displacement, so that it covers the box both before and after moving by it
+     * @param dx displacement along the x axis
+     * @param dy displacement along the y axis
+     * @return this box
+     */
+    public AABB extend(float dx, float dy)
+    {
+        if(dx < 0) minX += dx; else maxX += dx;
+        if(dy < 0) minY += dy; else maxY += dy;
+        return this;
+    }
+
+    public boolean overlaps(AABB other)
+    {
+        return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY && other.minY <= maxY;
+    }
+
+    public boolean contains(AABB other)
+    {
+        return minX <= other.minX && minY <= other.minY && other.maxX <= maxX && other.maxY <= maxY;
+    }
+
+    public float getPerimeter()
+    {
+        return 2.0f * ((maxX - minX) + (maxY - minY));
+    }
+
+    public float getWidth(){ return maxX - minX; }
+    public float getHeight(){ return maxY - minY; }
+
+    public AABB copy()
+    {
+        return new AABB(minX, minY, maxX, maxY);
+    }
+}
@@ -0,0 +1,439 @@
+package physicsEngine.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class for splitting a polygon that may be concave into convex pieces. The polygon is first cut into triangles by
+ * clipping off ears, and then neighbouring pieces are joined back together across every cut that can be removed while
+ * keeping the joined piece convex (the Hertel-Mehlhorn method), which leaves at most four times the fewest pieces
+ * possible. The pieces found for each list of points are remembered, so a shape used many times is only split once.
+ */
+public class ConvexDecomposer {
+
+    private final static int MAX_CACHED_SHAPES = 256; // Most shapes remembered, the least recently used are forgotten
+    private final static float SIN_TOLERANCE = 0.0001f; // Turns with a smaller sine than this are counted as straight
+
+    // Pieces found for each list of points, in the order they were last used
+    private Map<ShapeKey, float[][]> cache = new LinkedHashMap<ShapeKey, float[][]>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ShapeKey, float[][]> eldest)
+        {
+            return size() > MAX_CACHED_SHAPES;
+        }
+    };
+
+    // The points being decomposed, with repeated and straight points removed and wound with a positive signed area
+    private float[] x;
+    private float[] y;
+
+    /**
+     * Splits a polygon into convex pieces. A polygon that is already convex is returned as a single piece
+     * @param points the x and y coordinate of each point of the polygon in order, as x1, y1, x2, y2...
+     * @return the points of each piece in the same coordinates, as x1, y1, x2, y2... These are shared with later calls
+     *          for the same points and must not be changed
+     * @throws MalformedPolygonException if the points do not form a polygon, or its sides cross each other
+     */
+    public float[][] decompose(float[] points) throws MalformedPolygonException
+    {
+        ShapeKey key = new ShapeKey(points);
+        float[][] pieces = cache.get(key);
+        if(pieces == null)
+        {
+            pieces = findPieces(points);
+            cache.put(new ShapeKey(points.clone()), pieces); // Copied in case the caller changes their points later
+        }
+        return pieces;
+    }
+
+    /**
+     * Checks if a polygon is convex, with either winding
+     * @param points the x and y coordinate of each point of the polygon in order, as x1, y1, x2, y2...
+     * @return true if no corner of the polygon turns back in
+     */
+    public static boolean isConvex(float[] points)
+    {
+        int numPoints = points.length / 2;
+        float area = 0;
+        for(int i=0; i<numPoints; i++)
+        {
+            int j = (i + 1) % numPoints;
+            area += (points[2*i] * points[2*j+1]) - (points[2*j] * points[2*i+1]);
+        }
+
+        for(int i=0; i<numPoints; i++)
+        {
+            int previous = (i + numPoints - 1) % numPoints;
+            int next = (i + 1) % numPoints;
+            float turn = findTurn(points[2*previous], points[2*previous+1], points[2*i], points[2*i+1],
+                    points[2*next], points[2*next+1]);
+            if(area < 0) turn = -turn;
+            if(turn < -SIN_TOLERANCE) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Splits a polygon into convex pieces without using the cache
+     * @param points the x and y coordinate of each point of the polygon in order
+     * @return the points of each piece
+     * @throws MalformedPolygonException if the points do not form a polygon, or its sides cross each other
+     */
+    private float[][] findPieces(float[] points) throws MalformedPolygonException
+    {
+        if(points.length % 2 != 0)
+        {
+            throw new MalformedPolygonException("Odd number of coordinates given, cannot form points.");
+        }
+        if(isConvex(points)) return new float[][]{ points.clone() };
+
+        cleanPoints(points);
+        if(hasCrossingSides())
+        {
+            throw new MalformedPolygonException("Polygon sides cross each other, cannot split into convex pieces.");
+        }
+        List<int[]> pieces = triangulate();
+        mergePieces(pieces);
+
+        float[][] result = new float[pieces.size()][];
+        for(int i=0; i<pieces.size(); i++)
+        {
+            result[i] = toCoordinates(pieces.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Copies the points without any repeated or straight points, in the order giving a positive signed area
+     * @param points the x and y coordinate of each point of the polygon in order
+     * @throws MalformedPolygonException if fewer than three corners are left
+     */
+    private void cleanPoints(float[] points) throws MalformedPolygonException
+    {
+        int numPoints = points.length / 2;
+        float[] cleanX = new float[numPoints];
+        float[] cleanY = new float[numPoints];
+        for(int i=0; i<numPoints; i++)
+        {
+            cleanX[i] = points[2*i];
+            cleanY[i] = points[2*i+1];
+        }
+
+        // Removing a point can make its neighbour straight, so keep going until a full pass removes nothing
+        boolean removed = true;
+        while(removed && numPoints >= 3)
+        {
+            removed = false;
+            for(int i=0; i<numPoints && numPoints >= 3; i++)
+            {
+                int previous = (i + numPoints - 1) % numPoints;
+                int next = (i + 1) % numPoints;
+                boolean repeated = cleanX[i] == cleanX[next] && cleanY[i] == cleanY[next];
+                float turn = findTurn(cleanX[previous], cleanY[previous], cleanX[i], cleanY[i],
+                        cleanX[next], cleanY[next]);
+                if(repeated || Math.abs(turn) <= SIN_TOLERANCE)
+                {
+                    System.arraycopy(cleanX, i+1, cleanX, i, numPoints - i - 1);
+                    System.arraycopy(cleanY, i+1, cleanY, i, numPoints - i - 1);
+                    numPoints--;
+                    removed = true;
+                    i--;
+                }
+            }
+        }
+        if(numPoints < 3) throw new MalformedPolygonException("Points do not form a valid polygon.");
+
+        x = Arrays.copyOf(cleanX, numPoints);
+        y = Arrays.copyOf(cleanY, numPoints);
+
+        float area = 0;
+        for(int i=0; i<numPoints; i++)
+        {
+            int j = (i + 1) % numPoints;
+            area += (x[i] * y[j]) - (x[j] * y[i]);
+        }
+        if(area < 0)
+        {
+            for(int i = 0, j = numPoints-1; i < j; i++, j--)
+            {
+                float temp = x[i];
+                x[i] = x[j];
+                x[j] = temp;
+                temp = y[i];
+                y[i] = y[j];
+                y[j] = temp;
+            }
+        }
+    }
+
+    /**
+     * Checks if any two sides of the polygon cross each other. Sides that only touch are allowed
+     * @return true if two sides cross
+     */
+    private boolean hasCrossingSides()
+    {
+        int numPoints = x.length;
+        for(int i=0; i<numPoints; i++)
+        {
+            int i2 = (i + 1) % numPoints;
+            for(int j=i+2; j<numPoints; j++)
+            {
+                int j2 = (j + 1) % numPoints;
+                if(j2 == i) continue; // Neighbouring sides share a point
+
+                float side1 = cross(x[i], y[i], x[i2], y[i2], x[j], y[j]);
+                float side2 = cross(x[i], y[i], x[i2], y[i2], x[j2], y[j2]);
+                float side3 = cross(x[j], y[j], x[j2], y[j2], x[i], y[i]);
+                float side4 = cross(x[j], y[j], x[j2], y[j2], x[i2], y[i2]);
+                if(((side1 > 0 && side2 < 0) || (side1 < 0 && side2 > 0)) &&
+                        ((side3 > 0 && side4 < 0) || (side3 < 0 && side4 > 0)))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cuts the polygon into triangles by repeatedly clipping off a corner (an ear) whose triangle has no other point
+     * inside it
+     * @return each triangle as the indices of its points
+     * @throws MalformedPolygonException if no ear can be found, which happens when the sides cross each other
+     */
+    private List<int[]> triangulate() throws MalformedPolygonException
+    {
+        int numPoints = x.length;
+        int[] previous = new int[numPoints];
+        int[] next = new int[numPoints];
+        for(int i=0; i<numPoints; i++)
+        {
+            previous[i] = (i + numPoints - 1) % numPoints;
+            next[i] = (i + 1) % numPoints;
+        }
+
+        List<int[]> triangles = new ArrayList<>();
+        int remaining = numPoints;
+        int current = 0;
+        int checked = 0; // Points checked since the last ear was clipped
+        while(remaining > 3)
+        {
+            int a = previous[current];
+            int c = next[current];
+            float turn = findTurn(x[a], y[a], x[current], y[current], x[c], y[c]);
+
+            // A straight point left after clipping lies on the side between its neighbours, so it can be dropped
+            boolean straight = Math.abs(turn) <= SIN_TOLERANCE;
+            if(straight || (turn > 0 && isEmptyTriangle(a, current, c, next)))
+            {
+                if(!straight) triangles.add(new int[]{a, current, c});
+                next[a] = c;
+                previous[c] = a;
+                remaining--;
+                checked = 0;
+                current = c;
+                continue;
+            }
+
+            current = next[current];
+            if(++checked > remaining)
+            {
+                throw new MalformedPolygonException("Polygon sides cross each other, cannot split into convex pieces.");
+            }
+        }
+
+        int a = previous[current];
+        int c = next[current];
+        if(Math.abs(findTurn(x[a], y[a], x[current], y[current], x[c], y[c])) > SIN_TOLERANCE)
+        {
+            triangles.add(new int[]{a, current, c});
+        }
+        return triangles;
+    }
+
+    /**
+     * Checks that no other remaining point lies inside or on the triangle of three neighbouring points
+     * @param a index of the first point
+     * @param b index of the second point
+     * @param c index of the third point
+     * @param next the next remaining point after each point
+     * @return true if the triangle is empty
+     */
+    private boolean isEmptyTriangle(int a, int b, int c, int[] next)
+    {
+        for(int i = next[c]; i != a; i = next[i])
+        {
+            // Points in the same place as a corner of the triangle are where the polygon touches itself, not inside
+            if((x[i] == x[a] && y[i] == y[a]) || (x[i] == x[b] && y[i] == y[b]) || (x[i] == x[c] && y[i] == y[c]))
+            {
+                continue;
+            }
+
+            if(cross(x[a], y[a], x[b], y[b], x[i], y[i]) >= 0 &&
+                    cross(x[b], y[b], x[c], y[c], x[i], y[i]) >= 0 &&
+                    cross(x[c], y[c], x[a], y[a], x[i], y[i]) >= 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Joins neighbouring pieces across the side they share whenever the joined piece is still convex, until no more can
+     * be joined
+     * @param pieces the pieces, each as the indices of its points in order
+     */
+    private void mergePieces(List<int[]> pieces)
+    {
+        boolean merged = true;
+        while(merged)
+        {
+            merged = false;
+            for(int i=0; i<pieces.size(); i++)
+            {
+                for(int j=i+1; j<pieces.size(); j++)
+                {
+                    int[] joined = tryMerge(pieces.get(i), pieces.get(j));
+                    if(joined == null) continue;
+
+                    pieces.set(i, joined);
+                    pieces.remove(j);
+                    j = i;
+                    merged = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins two pieces if they share a side and the joined piece is convex
+     * @param first the points of the first piece in order
+     * @param second the points of the second piece in order
+     * @return the points of the joined piece, or null if they cannot be joined
+     */
+    private int[] tryMerge(int[] first, int[] second)
+    {
+        for(int i=0; i<first.length; i++)
+        {
+            // The shared side goes from a to b in the first piece, so from b to a in the second
+            int a = first[i];
+            int b = first[(i + 1) % first.length];
+            int j = indexOf(second, b);
+            if(j < 0 || second[(j + 1) % second.length] != a) continue;
+
+            // Walk the first piece from b around to a, then the second from just after a around to just before b
+            int[] joined = new int[first.length + second.length - 2];
+            int count = 0;
+            for(int k=0; k<first.length; k++)
+            {
+                joined[count++] = first[(i + 1 + k) % first.length];
+            }
+            for(int k=2; k<second.length; k++)
+            {
+                joined[count++] = second[(j + k) % second.length];
+            }
+
+            // Only the two ends of the removed side change their corners
+            int aIndex = first.length - 1;
+            if(isReflex(joined, aIndex) || isReflex(joined, 0)) return null;
+            return joined;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a corner of a piece turns back in
+     * @param piece the points of the piece in order
+     * @param i the index in the piece of the corner
+     * @return true if the corner turns back in
+     */
+    private boolean isReflex(int[] piece, int i)
+    {
+        int a = piece[(i + piece.length - 1) % piece.length];
+        int b = piece[i];
+        int c = piece[(i + 1) % piece.length];
+        return findTurn(x[a], y[a], x[b], y[b], x[c], y[c]) < -SIN_TOLERANCE;
+    }
+
+    /**
+     * Finds the coordinates of the points of a piece, leaving out any corners that ended up straight
+     * @param piece the points of the piece in order
+     * @return the x and y coordinate of each point, as x1, y1, x2, y2...
+     */
+    private float[] toCoordinates(int[] piece)
+    {
+        float[] coordinates = new float[piece.length * 2];
+        int count = 0;
+        for(int i=0; i<piece.length; i++)
+        {
+            int a = piece[(i + piece.length - 1) % piece.length];
+            int b = piece[i];
+            int c = piece[(i + 1) % piece.length];
+            if(Math.abs(findTurn(x[a], y[a], x[b], y[b], x[c], y[c])) <= SIN_TOLERANCE) continue;
+
+            coordinates[count++] = x[b];
+            coordinates[count++] = y[b];
+        }
+        return Arrays.copyOf(coordinates, count);
+    }
+
+    private static int indexOf(int[] piece, int point)
+    {
+        for(int i=0; i<piece.length; i++)
+        {
+            if(piece[i] == point) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the sine of the turn at the middle of three points, positive when turning the same way as a polygon with a
+     * positive signed area
+     */
+    private static float findTurn(float ax, float ay, float bx, float by, float cx, float cy)
+    {
+        float abx = bx - ax;
+        float aby = by - ay;
+        float bcx = cx - bx;
+        float bcy = cy - by;
+        float lengths = (float)Math.sqrt(((abx * abx) + (aby * aby)) * ((bcx * bcx) + (bcy * bcy)));
+        if(lengths == 0) return 0;
+        return ((abx * bcy) - (aby * bcx)) / lengths;
+    }
+
+    /**
+     * Finds the cross product of b - a and c - a, positive if c is on the inside of the side from a to b
+     */
+    private static float cross(float ax, float ay, float bx, float by, float cx, float cy)
+    {
+        return ((bx - ax) * (cy - ay)) - ((by - ay) * (cx - ax));
+    }
+
+    /**
+     * A list of points compared by value, for finding shapes in the cache
+     */
+    private static class ShapeKey {
+        private final float[] points;
+        private final int hash;
+
+        ShapeKey(float[] points)
+        {
+            this.points = points;
+            this.hash = Arrays.hashCode(points);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof ShapeKey && Arrays.equals(points, ((ShapeKey)other).points);
+        }
+
+        @Override
+        public int hashCode(){ return hash; }
+    }
+}
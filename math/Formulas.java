@@ -58,20 +58,17 @@ public class Formulas {
         return new Vec2(-scalar * v2.getY(), scalar * v2.getX());
     }
 
+    /**
+     * Moves an angle to between 0 and 2Pi
+     * @param angleInRads the angle in radians
+     * @return the same angle between 0 and 2Pi
+     */
     public static float normalizeAngle(float angleInRads)
     {
+        // Nearly every angle is already in range, so skip the division for them
+        if(angleInRads >= 0 && angleInRads <= TWO_PI) return angleInRads;
 
-        while(angleInRads < 0)
-        {
-            angleInRads += TWO_PI;
-        }
-
-        while(angleInRads > TWO_PI)
-        {
-            angleInRads -= TWO_PI;
-        }
-
-        return angleInRads;
+        return angleInRads - (TWO_PI * (float)Math.floor(angleInRads / TWO_PI));
     }
 
     public static float toDegrees(float rads)
@@ -72,22 +72,24 @@ public class Point {
         }
     }
 
+    /**
+     * Gets this point rotated about the origin
+     * @param angleRads angle to rotate by, in radians
+     * @return a new rotated point
+     */
     public Point getRotatedPoint(float angleRads)
     {
-        float oldAngle = (float)Math.atan(x / -y);
-        // Add Pi for the half the rotation to adjust for the range of inverse tan
-        if(y > 0) oldAngle += Math.PI;
-
-        // get the distance from the center and the new angle of the point
-        float mag = getVec().magnitude();
-        float newAngle = oldAngle + angleRads;
+        return getRotatedPoint((float)Math.cos(angleRads), (float)Math.sin(angleRads));
+    }
 
-        // Calculate the points new x and y coordinates
-        float newx = (float) (mag * Math.sin(newAngle));
-        float newy = (float) (-mag * Math.cos(newAngle));
-        //if(newAngle >= Math.PI/4 && newAngle < 3.0f*Math.PI/4) pointAngles[i] += Math.PI;
-//          System.out.format("Old x: %f, new X: %f\n", originPoints[i].x, newx);
-//          System.out.format("Old y: %f, new Y: %f\n\n", originPoints[i].y, newy);
-        return new Point(newx, newy);
+    /**
+     * Gets this point rotated about the origin by the angle with the given cosine and sine
+     * @param cos cosine of the angle to rotate by
+     * @param sin sine of the angle to rotate by
+     * @return a new rotated point
+     */
+    public Point getRotatedPoint(float cos, float sin)
+    {
+        return new Point((x * cos) - (y * sin), (x * sin) + (y * cos));
     }
 }
@@ -7,15 +7,38 @@ package physicsEngine.math;
 public class Polygon {
 
     private static final float VOLUME_ESTIMATE_FACTOR = 18.0f; // Fudge factor for estimating volume
+    private static final int MAX_CLIMB_STEPS = 4; // Steps to climb from the last support point before switching to a
+                                                  // binary search, on polygons large enough to have one
+    private static final int MIN_BINARY_SEARCH_POINTS = 16; // Fewest points to use a binary search on
+    private static final float LEVEL_TOLERANCE = 1e-5f; // Relative difference in projection small enough for points
+                                                        // in a straight line to count as level with each other
 
     // Data about the polygon's traits
     private Point[] originPoints; // each point of the polygon when centered about the origin
-    private float[] pointAngles; // the corresponding angle coordinate of each point, used for rotating
-
-    // Data about polygon's current position and rotation, and the points at this state
-    Vec2 translation = new Vec2(0,0); // Current translation from the origin
+    private float[] originX; // the same points as coordinates, used for rotating
+    private float[] originY;
+    private float[] originNormalsX; // unit normal pointing out of each face (from a point to the next) when unrotated
+    private float[] originNormalsY;
+    private float[] normalAngles; // angle of each face normal after the first normal's, as a pseudo angle from 0 to 4
+    private boolean canClimb; // True if the polygon is convex with no repeated points, so support points can be found
+                              // by climbing between neighbouring points instead of checking every point
+
+    // Data about polygon's current position and rotation, and the points at this state. The points are stored as
+    // coordinates so they can be moved without creating new objects
+    float translationX = 0; // Current translation from the origin
+    float translationY = 0;
     float rotation = 0; // Current rotation in radians
-    Point[] points; // The points of the polygon at the current translation and rotation
+    private float rotationCos = 1; // Cosine and sine of the current rotation
+    private float rotationSin = 0;
+    private float[] rotatedX; // The points of the polygon at the current rotation, but centered about the origin
+    private float[] rotatedY;
+    float[] xPoints; // The points of the polygon at the current translation and rotation
+    float[] yPoints;
+    private float[] xNormals; // The face normals at the current rotation
+    private float[] yNormals;
+    private Point[] points; // The same points as objects, only built when asked for
+    private boolean pointsChanged = true; // True if the points have moved since the point objects were last built
+    private int supportHint = 0; // Index of the last support point found, where the next search starts from
 
     public Polygon(float[] points) throws MalformedPolygonException
     {
@@ -47,17 +70,125 @@ public class Polygon {
     {
         // Take the given polygon and center it at the origin.
         centerAtOrigin();
-        // Find the relative angles of each point
-        findPointAngles();
-
-        // Initialize the current points array to be the same as the origin points
+        // Put the points in a consistent order, so every face's outward normal is on the same side of it
+        enforceWinding();
+        // Keep the coordinates of each point for rotating
+        findOriginCoordinates();
+        // Find the outward normal of each face
+        findNormals();
+        // Order the normals by angle, for finding support points quickly
+        findNormalAngles();
+
+        // Initialize the current points to be the same as the origin points
+        this.rotatedX = new float[originPoints.length];
+        this.rotatedY = new float[originPoints.length];
+        this.xPoints = new float[originPoints.length];
+        this.yPoints = new float[originPoints.length];
         this.points = new Point[originPoints.length];
-        for(int i=0; i< points.length; i++)
+        for(int i=0; i< originPoints.length; i++)
+        {
+            rotatedX[i] = originPoints[i].getX();
+            rotatedY[i] = originPoints[i].getY();
+        }
+        this.xNormals = originNormalsX.clone();
+        this.yNormals = originNormalsY.clone();
+        this.rotation = 0;
+        this.translationX = 0;
+        this.translationY = 0;
+        translatePoints();
+    }
+
+    /**
+     * Reverses the order of the points if needed so that they always go around the polygon in the direction that gives
+     * a positive signed area (clockwise on screen, where y points down)
+     */
+    private void enforceWinding()
+    {
+        float signedArea = 0;
+        for(int i = 0; i< originPoints.length; i++)
+        {
+            Point p1 = originPoints[i];
+            Point p2 = originPoints[i == originPoints.length-1 ? 0 : i+1];
+            signedArea += (p1.getX() * p2.getY()) - (p2.getX() * p1.getY());
+        }
+
+        if(signedArea < 0)
+        {
+            for(int i = 0, j = originPoints.length-1; i < j; i++, j--)
+            {
+                Point temp = originPoints[i];
+                originPoints[i] = originPoints[j];
+                originPoints[j] = temp;
+            }
+        }
+    }
+
+    /**
+     * Finds the unit normal pointing out of each face, where face i goes from point i to the next point. Relies on the
+     * winding set by enforceWinding(), which puts the outside of every face to the left of its direction
+     */
+    private void findNormals()
+    {
+        originNormalsX = new float[originPoints.length];
+        originNormalsY = new float[originPoints.length];
+        for(int i = 0; i< originPoints.length; i++)
+        {
+            Point p1 = originPoints[i];
+            Point p2 = originPoints[i == originPoints.length-1 ? 0 : i+1];
+            float faceX = p2.getX() - p1.getX();
+            float faceY = p2.getY() - p1.getY();
+            float length = (float)Math.sqrt(faceX*faceX + faceY*faceY);
+            if(length == 0) continue; // Repeated point, leave the normal as zero
+
+            originNormalsX[i] = faceY / length;
+            originNormalsY[i] = -faceX / length;
+        }
+    }
+
+    /**
+     * Finds the angle of each face normal, measured from the first face's normal. Going around a convex polygon the
+     * normals turn the same way exactly once, so these angles only increase, and the support point in any direction can
+     * be found by a binary search over them. Also finds whether the polygon is convex enough for that to work
+     */
+    private void findNormalAngles()
+    {
+        normalAngles = new float[originNormalsX.length];
+        canClimb = true;
+        float firstAngle = pseudoAngle(originNormalsX[0], originNormalsY[0]);
+        for(int i = 0; i< originNormalsX.length; i++)
         {
-            this.points[i] = this.originPoints[i].copy();
+            // A repeated point leaves a face with no normal
+            if(originNormalsX[i] == 0 && originNormalsY[i] == 0)
+            {
+                canClimb = false;
+                return;
+            }
+
+            float angle = pseudoAngle(originNormalsX[i], originNormalsY[i]) - firstAngle;
+            normalAngles[i] = angle < 0 ? angle + 4 : angle;
+
+            // A normal turning back means the polygon is concave (or crosses itself)
+            if(i > 0 && normalAngles[i] < normalAngles[i-1])
+            {
+                canClimb = false;
+                return;
+            }
         }
     }
 
+    /**
+     * Finds a value that increases with a direction's angle the same way the angle does, from 0 pointing along the
+     * x axis up to 4 after a full turn, without any trigonometry
+     * @param x x component of the direction
+     * @param y y component of the direction, must not be zero along with x
+     * @return the pseudo angle, from 0 to 4
+     */
+    private static float pseudoAngle(float x, float y)
+    {
+        float p = x / (Math.abs(x) + Math.abs(y));
+        return y < 0 ? 3 + p : 1 - p;
+    }
+
     /**
      * Moves points so that the center of the polygon is 0,0
      */
@@ -85,23 +216,18 @@ public class Polygon {
     }
 
     /**
-     * Save the angle of each point from the center, to be used in rotation calculation later
+     * Saves the coordinates of each point about the center, so rotating does not need to read them from Point objects
      */
-    private void findPointAngles()
+    private void findOriginCoordinates()
     {
         if(originPoints.length <= 0) System.err.println("POLYGON SET POINTS NOT SET");
 
-        // Initialize array
-        pointAngles = new float[originPoints.length];
-        // For each point, find its angle from its coordinates
+        originX = new float[originPoints.length];
+        originY = new float[originPoints.length];
         for(int i = 0; i< originPoints.length; i++)
         {
-            float dx = originPoints[i].getX();
-            float dy = -1.0f* originPoints[i].getY();
-            pointAngles[i] = (float)Math.atan(dx / dy);
-            // Add Pi for the half the rotation to adjust for the range of inverse tan
-            if(dy <= 0) pointAngles[i] += Math.PI;
-//            System.out.println(pointAngles[i] * (180.0 / Math.PI));
+            originX[i] = originPoints[i].getX();
+            originY[i] = originPoints[i].getY();
         }
     }
 
@@ -112,10 +238,13 @@ public class Polygon {
      */
     public void setTranslation(float x, float y)
     {
-        // Move the points minus what the current translation already is
-        translatePoints(x - translation.x, y - translation.y);
-        // Save new current translation
-        translation = new Vec2(x, y);
+        // Do nothing if no movement needed
+        if(x == translationX && y == translationY) return;
+
+        // Save new current translation, and move the rotated points to it
+        translationX = x;
+        translationY = y;
+        translatePoints();
     }
 
     /**
@@ -168,24 +297,48 @@ public class Polygon {
         {
             // Set the translation, and then rotate
             // The rotation will also handle the translation
-            translation = new Vec2(x, y);
-            setRotation(r, radians);
+            translationX = x;
+            translationY = y;
+            setRotation(r, true);
         }
     }
 
     /**
-     * Translates all points in the current points array BY the given values (not TO them)
-     * @param x amount to translate along the x axis
-     * @param y amount to translate along the y axis
+     * Rotates and translates the polygon in one call, using the cosine and sine of an angle that have already been
+     * calculated, so that no trigonometry is needed
+     * @param x translation along the x axis
+     * @param y translation along the y axis
+     * @param r angle in radians to set the polygon to, used only to tell whether the rotation has changed
+     * @param cos cosine of the angle
+     * @param sin sine of the angle
      */
-    private void translatePoints(float x, float y)
+    public void translateAndRotate(float x, float y, float r, float cos, float sin)
     {
-        if(x == 0 && y == 0) return; // do nothing if no movement needed
+        if(r == this.rotation)
+        {
+            setTranslation(x, y);
+        }
+        else
+        {
+            translationX = x;
+            translationY = y;
+            this.rotation = r;
+            rotatePointsTo(cos, sin);
+        }
+    }
 
-        for(int i=0; i<points.length; i++)
+    /**
+     * Moves all points TO the current translation from their rotated positions about the origin. Always starting from
+     * the rotated points (rather than moving the current points BY the change) keeps rounding errors from building up
+     */
+    private void translatePoints()
+    {
+        for(int i=0; i<xPoints.length; i++)
         {
-            points[i] = points[i].add(x, y);
+            xPoints[i] = rotatedX[i] + translationX;
+            yPoints[i] = rotatedY[i] + translationY;
         }
+        pointsChanged = true;
     }
 
     /**
@@ -194,22 +347,33 @@ public class Polygon {
      */
     private void rotatePointsTo(float angleRads)
     {
-        // Adjust each point around the center with the center as the origin, and then translate back to the current
-        // translation
-        for(int i=0; i<points.length; i++)
+        rotatePointsTo((float)Math.cos(angleRads), (float)Math.sin(angleRads));
+    }
+
+    /**
+     * Rotates all points TO the angle with the given cosine and sine (not BY)
+     * @param cos cosine of the angle
+     * @param sin sine of the angle
+     */
+    private void rotatePointsTo(float cos, float sin)
+    {
+        rotationCos = cos;
+        rotationSin = sin;
+
+        // Rotate each point about the center, and then translate back to the current translation
+        for(int i=0; i<rotatedX.length; i++)
         {
-            // get the distance from the center and the new angle of the point
-            float mag = originPoints[i].getVec().magnitude();
-            float newAngle = pointAngles[i] + angleRads;
-
-            // Calculate the points new x and y coordinates
-            float newx = (float) (mag * Math.sin(newAngle));
-            float newy = (float) (-mag * Math.cos(newAngle));
-            //if(newAngle >= Math.PI/4 && newAngle < 3.0f*Math.PI/4) pointAngles[i] += Math.PI;
-//          System.out.format("Old x: %f, new X: %f\n", originPoints[i].x, newx);
-//          System.out.format("Old y: %f, new Y: %f\n\n", originPoints[i].y, newy);
-            points[i] = new Point(newx + translation.x, newy + translation.y);
+            rotatedX[i] = originX[i] * cos - originY[i] * sin;
+            rotatedY[i] = originX[i] * sin + originY[i] * cos;
         }
+
+        // Normals are directions, so they are only rotated
+        for(int i=0; i<xNormals.length; i++)
+        {
+            xNormals[i] = originNormalsX[i] * cos - originNormalsY[i] * sin;
+            yNormals[i] = originNormalsX[i] * sin + originNormalsY[i] * cos;
+        }
+        translatePoints();
     }
 
     /**
@@ -218,47 +382,130 @@ public class Polygon {
      * @return the point with the greatest projecting in the given direction
      */
     public Point getSupportPoint(Vec2 direction) {
+        int index = getSupportPointIndex(direction.x, direction.y);
+        return index < 0 ? null : getCalculatedPoints()[index];
+    }
+
+    /**
+     * Returns the index of point that is furthest in a given direction on the polygon
+     * @param direction Vector representing the direction to use
+     * @return the index of point with the greatest projecting in the given direction
+     */
+    public int getSupportPointIndex(Vec2 direction) {
+        return getSupportPointIndex(direction.x, direction.y);
+    }
 
-        if(points.length <= 0) System.err.println("POLYGON POINTS NOT CALCULATED");
+    /**
+     * Returns the index of point that is furthest in a given direction on the polygon
+     * @param dx x component of the direction
+     * @param dy y component of the direction
+     * @return the index of point with the greatest projecting in the given direction
+     */
+    public int getSupportPointIndex(float dx, float dy) {
 
-        // Start with "empty" values and store the best
-        float bestProjection = -Float.MAX_VALUE;
-        Point support = null;
+        if(xPoints.length <= 0) System.err.println("POLYGON POINTS NOT CALCULATED");
 
-        // Loop through each point and save the one with best projection
-        for(Point point: points)
+        if(!canClimb || (dx == 0 && dy == 0))
         {
-            float projection = Formulas.dotProduct(point.getVec(), direction);
-            if(projection > bestProjection)
+            return findSupportPointIndexByScan(dx, dy);
+        }
+
+        // Climb from the last support point towards whichever neighbour projects further. Support points found one
+        // after another are usually for similar directions (the faces of another polygon, or the same direction in
+        // the next update), so this usually takes only a step or two
+        int numPoints = xPoints.length;
+        int index = supportHint;
+        float projection = (xPoints[index] * dx) + (yPoints[index] * dy);
+        int maxSteps = numPoints < MIN_BINARY_SEARCH_POINTS ? numPoints : MAX_CLIMB_STEPS;
+        for(int step = 0; step < maxSteps; step++)
+        {
+            int next = index == numPoints-1 ? 0 : index+1;
+            int previous = index == 0 ? numPoints-1 : index-1;
+            float nextProjection = (xPoints[next] * dx) + (yPoints[next] * dy);
+            float previousProjection = (xPoints[previous] * dx) + (yPoints[previous] * dy);
+            if(nextProjection > projection && nextProjection >= previousProjection)
             {
-                support = point;
-                bestProjection = projection;
+                index = next;
+                projection = nextProjection;
+            }
+            else if(previousProjection > projection)
+            {
+                index = previous;
+                projection = previousProjection;
+            }
+            else
+            {
+                // Neither neighbour is further. Points in a straight line tie with each other, and a run of them facing
+                // away from the direction is the nearest part of the polygon, so look past the end of any run first
+                int past = findPastLevelRun(index, projection, nextProjection, previousProjection, dx, dy);
+                float pastProjection = (xPoints[past] * dx) + (yPoints[past] * dy);
+                if(pastProjection > projection)
+                {
+                    index = past;
+                    projection = pastProjection;
+                    continue;
+                }
+
+                // Otherwise on a convex polygon this is the furthest point
+                supportHint = index;
+                return index;
             }
         }
 
-        if(support == null)
-            System.err.println("[[[SUPPORT POINT NOT FOUND]]]");
-        return support;
+        // The direction has changed too much to climb to quickly, so search the normal angles instead
+        supportHint = findSupportPointIndexBySearch(dx, dy);
+        return supportHint;
     }
 
     /**
-     * Returns the index of point that is furthest in a given direction on the polygon
-     * @param direction Vector representing the direction to use
-     * @return the index of point with the greatest projecting in the given direction
+     * Walks along the points that project level with a point, as points in a straight line do, and finds the first
+     * point past the end of them. Rounding can leave points in a straight line a tiny amount apart, so points within a
+     * small tolerance of each other count as level
+     * @param index the point to start from
+     * @param projection the point's projection in the direction
+     * @param nextProjection projection of the next point
+     * @param previousProjection projection of the previous point
+     * @param dx x component of the direction
+     * @param dy y component of the direction
+     * @return the first point past the level run, or the starting point if neither neighbour is level with it
      */
-    public int getSupportPointIndex(Vec2 direction) {
+    private int findPastLevelRun(int index, float projection, float nextProjection, float previousProjection,
+                                 float dx, float dy)
+    {
+        int numPoints = xPoints.length;
+        float tolerance = LEVEL_TOLERANCE * (Math.abs(xPoints[index] * dx) + Math.abs(yPoints[index] * dy));
+
+        int step;
+        if(nextProjection >= projection - tolerance) step = 1;
+        else if(previousProjection >= projection - tolerance) step = numPoints - 1;
+        else return index;
 
-        if(points.length <= 0) System.err.println("POLYGON POINTS NOT CALCULATED");
+        int past = (index + step) % numPoints;
+        for(int i=0; i<numPoints; i++)
+        {
+            float pastProjection = (xPoints[past] * dx) + (yPoints[past] * dy);
+            if(pastProjection < projection - tolerance || pastProjection > projection + tolerance) return past;
+            past = (past + step) % numPoints;
+        }
+        return index;
+    }
 
+    /**
+     * Finds the support point by checking every point, which works on any polygon
+     * @param dx x component of the direction
+     * @param dy y component of the direction
+     * @return the index of point with the greatest projecting in the given direction
+     */
+    private int findSupportPointIndexByScan(float dx, float dy)
+    {
         // Start with "empty" values and store the best
         float bestProjection = -Float.MAX_VALUE;
         int supportIndex = -1;
 
         // Loop through each point and save the one with best projection
-        for(int i=0; i<points.length; i++)
+        for(int i=0; i<xPoints.length; i++)
         {
-            Point point = points[i];
-            float projection = Formulas.dotProduct(point.getVec(), direction);
+            float projection = (xPoints[i] * dx) + (yPoints[i] * dy);
             if(projection > bestProjection)
             {
                 supportIndex = i;
@@ -271,6 +518,41 @@ public class Polygon {
         return supportIndex;
     }
 
+    /**
+     * Finds the support point by a binary search over the angles of the face normals. Point i sits between face i-1
+     * and face i, and is the support point for every direction between those two faces' normals
+     * @param dx x component of the direction, must not be zero along with dy
+     * @param dy y component of the direction, must not be zero along with dx
+     * @return the index of point with the greatest projecting in the given direction
+     */
+    private int findSupportPointIndexBySearch(float dx, float dy)
+    {
+        // Compare against the unrotated normals by undoing the rotation on the direction
+        float localX = (dx * rotationCos) + (dy * rotationSin);
+        float localY = (dy * rotationCos) - (dx * rotationSin);
+        float angle = pseudoAngle(localX, localY) - pseudoAngle(originNormalsX[0], originNormalsY[0]);
+        if(angle < 0) angle += 4;
+
+        // Find the first face whose normal is at or past the direction
+        int low = 0;
+        int high = normalAngles.length;
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(normalAngles[middle] < angle)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+
+        // Past the last face's normal, the direction is between the last face and the first
+        return low == normalAngles.length ? 0 : low;
+    }
+
     /**
      * Estimate the volume of the polygon
      * @return the estimated volume
@@ -320,57 +602,41 @@ public class Polygon {
     }
 
     // GETTERS ---------------------------------------------------------------------------------------------------------
-    public Point[] getCalculatedPoints(){ return points; }
     public Point[] getPoints(){ return originPoints; }
+    public int getNumPoints(){ return originPoints.length; }
+    public float getCalculatedX(int i){ return xPoints[i]; }
+    public float getCalculatedY(int i){ return yPoints[i]; }
+    public float getNormalX(int i){ return xNormals[i]; } // Normal of the face from point i to the next, when rotated
+    public float getNormalY(int i){ return yNormals[i]; }
+    public float getOriginX(int i){ return originX[i]; } // Point i about the center, before rotating
+    public float getOriginY(int i){ return originY[i]; }
+    public float getOriginNormalX(int i){ return originNormalsX[i]; } // Normal of the face from point i, before rotating
+    public float getOriginNormalY(int i){ return originNormalsY[i]; }
 
-    // DEBUG -----------------------------------------------------------------------------------------------------------
-    private void printPoints()
-    {
-        for(Point point: points)
-        {
-            System.out.printf("X: %f, Y:%f\n", point.getX(), point.getY());
-        }
-    }
-
-    // OUTDATED --------------------------------------------------------------------------------------------------------
-
-    // Outdated code, once used to recalculate point positions from start
-    private void recalcPoints()
+    /**
+     * Gets the points of the polygon at its current translation and rotation. Creates new points only if the polygon
+     * has moved since they were last asked for, so prefer getCalculatedX() and getCalculatedY() in frequently run code
+     * @return the current points
+     */
+    public Point[] getCalculatedPoints()
     {
-        if(originPoints.length <= 0) System.err.println("POLYGON SET POINTS NOT SET");
-        if(pointAngles.length <= 0) System.err.println("POLYGON POINT ANGLES NOT CALCULATED");
-
-
-        for(int i = 0; i< originPoints.length; i++)
+        if(pointsChanged)
         {
-            if(rotation != 0) {
-                float mag = originPoints[i].getVec().magnitude();
-                float newAngle = pointAngles[i] + rotation;
-
-                //points[i] = originPoints[i].copy();
-                float newx = (float) (mag * Math.sin(newAngle));
-                float newy = (float) (-mag * Math.cos(newAngle));
-                //if(newAngle >= Math.PI/4 && newAngle < 3.0f*Math.PI/4) pointAngles[i] += Math.PI;
-//                System.out.format("Old x: %f, new X: %f\n", originPoints[i].x, newx);
-//                System.out.format("Old y: %f, new Y: %f\n\n", originPoints[i].y, newy);
-                points[i] = new Point(newx, newy);
-            }
-            else
+            for(int i=0; i<points.length; i++)
             {
-                points[i] = originPoints[i];
+                points[i] = new Point(xPoints[i], yPoints[i]);
             }
-
+            pointsChanged = false;
         }
+        return points;
+    }
 
-        for(int i = 0; i< originPoints.length; i++)
+    // DEBUG -----------------------------------------------------------------------------------------------------------
+    private void printPoints()
+    {
+        for(int i=0; i<xPoints.length; i++)
         {
-            float px = points[i].getX();
-            float py = points[i].getY();
-
-            px += translation.x;
-            py += translation.y;
-
-            points[i] = new Point(px, py);
+            System.out.printf("X: %f, Y:%f\n", xPoints[i], yPoints[i]);
         }
     }
 }
@@ -0,0 +1,307 @@
+package physicsEngine.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class for building a convex polygon to collide with from any cloud of points, such as the outline of imported art.
+ * Points closer together than the weld distance are merged, the convex hull of what is left is found, and then the
+ * corners that matter least are cut off the hull until it has no more than the maximum number of points, and until
+ * cutting another would move its outline further than the tolerance. Fewer points make every collision check with the
+ * polygon cheaper, so the counts at each step of the last polygon built are kept to show how many were saved.
+ */
+public class PolygonFactory {
+
+    private final static float DEFAULT_WELD_DISTANCE = 0.01f;
+
+    private float weldDistance = DEFAULT_WELD_DISTANCE; // Points closer than this are merged into one
+    private int maxPoints = 0; // Most points the polygon can have, or 0 for no limit
+    private float tolerance = 0; // Furthest the outline can move inward when cutting off corners
+
+    // Report of the last polygon built
+    private int inputPointCount = 0; // Points given
+    private int weldedPointCount = 0; // Points left after merging those too close together
+    private int hullPointCount = 0; // Points on the convex hull
+    private int outputPointCount = 0; // Points in the final polygon
+    private float error = 0; // Furthest any point of the hull ended up outside the final polygon
+
+    /**
+     * Builds a convex polygon around a cloud of points
+     * @param points the x and y coordinate of each point, as x1, y1, x2, y2... in any order
+     * @return the polygon
+     * @throws MalformedPolygonException if the points do not surround any area
+     */
+    public Polygon createPolygon(float[] points) throws MalformedPolygonException
+    {
+        if(points.length % 2 != 0)
+        {
+            throw new MalformedPolygonException("Odd number of coordinates given, cannot form points.");
+        }
+        inputPointCount = points.length / 2;
+
+        float[][] welded = weld(points);
+        weldedPointCount = welded[0].length;
+
+        int[] hull = findHull(welded[0], welded[1]);
+        hullPointCount = hull.length;
+        if(hull.length < 3) throw new MalformedPolygonException("Points do not form a valid polygon.");
+
+        int[] kept = simplify(welded[0], welded[1], hull);
+        outputPointCount = kept.length;
+
+        float[] polygonPoints = new float[kept.length * 2];
+        for(int i=0; i<kept.length; i++)
+        {
+            polygonPoints[2*i] = welded[0][hull[kept[i]]];
+            polygonPoints[2*i+1] = welded[1][hull[kept[i]]];
+        }
+        return new Polygon(polygonPoints);
+    }
+
+    public Polygon createPolygon(Point[] points) throws MalformedPolygonException
+    {
+        float[] coordinates = new float[points.length * 2];
+        for(int i=0; i<points.length; i++)
+        {
+            coordinates[2*i] = points[i].getX();
+            coordinates[2*i+1] = points[i].getY();
+        }
+        return createPolygon(coordinates);
+    }
+
+    /**
+     * Merges points closer together than the weld distance, keeping the first of each group. The points are sorted
+     * along x first, so each point only needs comparing with the kept points just before it
+     * @param points the x and y coordinate of each point
+     * @return the x coordinates and y coordinates of the points kept
+     */
+    private float[][] weld(float[] points)
+    {
+        int numPoints = points.length / 2;
+        Integer[] order = new Integer[numPoints];
+        for(int i=0; i<numPoints; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Float.compare(points[2*a], points[2*b]));
+
+        float[] keptX = new float[numPoints];
+        float[] keptY = new float[numPoints];
+        int numKept = 0;
+        float weldSquared = weldDistance * weldDistance;
+        for(int i: order)
+        {
+            float x = points[2*i];
+            float y = points[2*i+1];
+            boolean merged = false;
+            for(int j=numKept-1; j>=0 && x - keptX[j] <= weldDistance; j--)
+            {
+                float dx = x - keptX[j];
+                float dy = y - keptY[j];
+                if((dx * dx) + (dy * dy) <= weldSquared)
+                {
+                    merged = true;
+                    break;
+                }
+            }
+            if(merged) continue;
+
+            keptX[numKept] = x;
+            keptY[numKept] = y;
+            numKept++;
+        }
+        return new float[][]{ Arrays.copyOf(keptX, numKept), Arrays.copyOf(keptY, numKept) };
+    }
+
+    /**
+     * Finds the convex hull of the points with QuickHull. The points furthest left and right split the points into two
+     * sides, and each side is split again at the point furthest out from it until no points are left outside
+     * @param x x coordinate of each point
+     * @param y y coordinate of each point
+     * @return indices of the points on the hull, in order giving a positive signed area
+     */
+    private int[] findHull(float[] x, float[] y)
+    {
+        int numPoints = x.length;
+        if(numPoints < 3) return new int[numPoints];
+
+        int left = 0;
+        int right = 0;
+        for(int i=1; i<numPoints; i++)
+        {
+            if(x[i] < x[left] || (x[i] == x[left] && y[i] < y[left])) left = i;
+            if(x[i] > x[right] || (x[i] == x[right] && y[i] > y[right])) right = i;
+        }
+        if(left == right) return new int[0];
+
+        List<Integer> above = new ArrayList<>();
+        List<Integer> below = new ArrayList<>();
+        for(int i=0; i<numPoints; i++)
+        {
+            float side = cross(x[left], y[left], x[right], y[right], x[i], y[i]);
+            if(side > 0) above.add(i);
+            else if(side < 0) below.add(i);
+        }
+
+        // Going from left to right through the points on the negative side of the line between them, and back through
+        // the points on the positive side, gives a positive signed area
+        List<Integer> hull = new ArrayList<>();
+        hull.add(left);
+        addHullPoints(x, y, left, right, below, hull);
+        hull.add(right);
+        addHullPoints(x, y, right, left, above, hull);
+
+        int[] result = new int[hull.size()];
+        for(int i=0; i<result.length; i++) result[i] = hull.get(i);
+        return result;
+    }
+
+    /**
+     * Adds the hull points outside the line from a to b, in order from a to b
+     * @param candidates the points outside the line
+     * @param hull list to add the points to
+     */
+    private void addHullPoints(float[] x, float[] y, int a, int b, List<Integer> candidates, List<Integer> hull)
+    {
+        if(candidates.isEmpty()) return;
+
+        // The point furthest outside the line must be on the hull
+        int furthest = -1;
+        float furthestDistance = 0;
+        for(int i: candidates)
+        {
+            float distance = cross(x[b], y[b], x[a], y[a], x[i], y[i]);
+            if(distance > furthestDistance)
+            {
+                furthestDistance = distance;
+                furthest = i;
+            }
+        }
+        if(furthest < 0) return;
+
+        // Only points outside the two new lines can still be on the hull
+        List<Integer> outsideFirst = new ArrayList<>();
+        List<Integer> outsideSecond = new ArrayList<>();
+        for(int i: candidates)
+        {
+            if(cross(x[furthest], y[furthest], x[a], y[a], x[i], y[i]) > 0) outsideFirst.add(i);
+            else if(cross(x[b], y[b], x[furthest], y[furthest], x[i], y[i]) > 0) outsideSecond.add(i);
+        }
+        addHullPoints(x, y, a, furthest, outsideFirst, hull);
+        hull.add(furthest);
+        addHullPoints(x, y, furthest, b, outsideSecond, hull);
+    }
+
+    /**
+     * Cuts corners off the hull, least important first, while it has more than the maximum number of points or the next
+     * cut moves the outline no further than the tolerance. A corner's importance is how far the furthest point of the
+     * original hull would end up outside the new side replacing it
+     * @param x x coordinate of each point
+     * @param y y coordinate of each point
+     * @param hull indices of the points on the hull in order
+     * @return indices into the hull of the points kept, in order
+     */
+    private int[] simplify(float[] x, float[] y, int[] hull)
+    {
+        int numKept = hull.length;
+        int[] kept = new int[numKept];
+        for(int i=0; i<numKept; i++) kept[i] = i;
+
+        while(numKept > 3)
+        {
+            int bestCorner = -1;
+            float bestError = Float.MAX_VALUE;
+            for(int i=0; i<numKept; i++)
+            {
+                int previous = kept[(i + numKept - 1) % numKept];
+                int next = kept[(i + 1) % numKept];
+                float cornerError = findCutError(x, y, hull, previous, next);
+                if(cornerError < bestError)
+                {
+                    bestError = cornerError;
+                    bestCorner = i;
+                }
+            }
+
+            boolean tooManyPoints = maxPoints > 0 && numKept > maxPoints;
+            if(!tooManyPoints && bestError > tolerance) break;
+
+            System.arraycopy(kept, bestCorner + 1, kept, bestCorner, numKept - bestCorner - 1);
+            numKept--;
+        }
+
+        error = 0;
+        for(int i=0; i<numKept; i++)
+        {
+            error = Math.max(error, findCutError(x, y, hull, kept[i], kept[(i + 1) % numKept]));
+        }
+        return Arrays.copyOf(kept, numKept);
+    }
+
+    /**
+     * Finds how far the hull points between two kept points are from the side joining them
+     * @param start index into the hull of the first kept point
+     * @param end index into the hull of the second kept point
+     * @return the distance of the furthest point
+     */
+    private static float findCutError(float[] x, float[] y, int[] hull, int start, int end)
+    {
+        float sideX = x[hull[end]] - x[hull[start]];
+        float sideY = y[hull[end]] - y[hull[start]];
+        float length = (float)Math.sqrt((sideX * sideX) + (sideY * sideY));
+        float furthest = 0;
+        for(int i = (start + 1) % hull.length; i != end; i = (i + 1) % hull.length)
+        {
+            float distance = cross(x[hull[start]], y[hull[start]], x[hull[end]], y[hull[end]], x[hull[i]], y[hull[i]]);
+            furthest = Math.max(furthest, Math.abs(distance) / length);
+        }
+        return furthest;
+    }
+
+    /**
+     * Finds the cross product of b - a and c - a
+     */
+    private static float cross(float ax, float ay, float bx, float by, float cx, float cy)
+    {
+        return ((bx - ax) * (cy - ay)) - ((by - ay) * (cx - ax));
+    }
+
+    /**
+     * Sets how close together points must be to be merged into one. Default is 0.01
+     * @param weldDistance
+     */
+    public void setWeldDistance(float weldDistance)
+    {
+        this.weldDistance = Math.max(0, weldDistance);
+    }
+
+    /**
+     * Sets the most points a polygon can have, cutting off the corners that matter least until it fits. Use 0 for no
+     * limit, which is the default. Polygons always keep at least 3 points
+     * @param maxPoints
+     */
+    public void setMaxPoints(int maxPoints)
+    {
+        this.maxPoints = Math.max(0, maxPoints);
+    }
+
+    /**
+     * Sets how far the outline can move inward when cutting off corners that are not needed to fit the maximum number
+     * of points. Default is 0, which only removes points lying on a straight side
+     * @param tolerance
+     */
+    public void setTolerance(float tolerance)
+    {
+        this.tolerance = Math.max(0, tolerance);
+    }
+
+    public float getWeldDistance(){ return weldDistance; }
+    public int getMaxPoints(){ return maxPoints; }
+    public float getTolerance(){ return tolerance; }
+
+    // Report of the last polygon built
+    public int getInputPointCount(){ return inputPointCount; }
+    public int getWeldedPointCount(){ return weldedPointCount; }
+    public int getHullPointCount(){ return hullPointCount; }
+    public int getOutputPointCount(){ return outputPointCount; }
+    public int getRemovedPointCount(){ return inputPointCount - outputPointCount; }
+    public float getError(){ return error; }
+}